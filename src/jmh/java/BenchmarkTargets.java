@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes the code under test to the benchmarks.
+ * <p>
+ * JMH won't generate benchmarks for classes in the default package, and classes in a named package can't refer to
+ * the default package, so the benchmarks look this class up by name and call into the application through the
+ * standard functional interfaces it returns.
+ */
+public class BenchmarkTargets {
+
+    private BenchmarkTargets() {
+    }
+
+    public static Function<File, Optional<byte[]>> checksumFunction(String algorithm, String readMode, int bufferSize) {
+        return new ChecksumReader(HashAlgorithm.valueOf(algorithm), ChecksumReader.ReadMode.valueOf(readMode), bufferSize)::checksum;
+    }
+
+    public static Function<byte[], String> hexEncoder() {
+        return ChecksumBuilder::toHexString;
+    }
+
+    /**
+     * Walks a tree the same way ChecksumBuilder does and counts the files.
+     */
+    public static ToLongFunction<Path> walker() {
+        return root -> {
+            try (var paths = Files.walk(root)) {
+                return paths.map(path -> path.toFile()).filter(file -> !file.isDirectory()).count();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    public static Function<File, String> outputDirectoryResolver(String inputDir, String outputDir, String dateFormat) {
+        return new DateOrganizer(inputDir, outputDir, DateOrganizer.DateFormat.valueOf(dateFormat), true)::resolveOutputDirectory;
+    }
+
+    /**
+     * Works out output directories the way DateOrganizer did before DatePathMatcher, running the date format's
+     * regular expression over the parent path of every file, as the baseline for the scanner.
+     */
+    public static Function<File, String> regexOutputDirectoryResolver(String outputDir, String dateFormat) {
+        var format = DateOrganizer.DateFormat.valueOf(dateFormat);
+        return file -> {
+            var path = Paths.get(file.getPath()).getParent().toString();
+            var matcher = format.getPattern().matcher(path);
+            var folderName = new StringBuilder();
+            folderName.append(outputDir);
+            folderName.append(File.separator);
+            if (matcher.find()) {
+                folderName.append(matcher.group(format.getYearGroup()));
+                folderName.append("-");
+                folderName.append(matcher.group(format.getMonthGroup()));
+                folderName.append("-");
+                folderName.append(matcher.group(format.getDayGroup()));
+                folderName.append(" ");
+                folderName.append(matcher.group(format.getDescriptionGroup()));
+            } else {
+                var date = LocalDateTime.ofEpochSecond(file.lastModified() / 1000, 0, ZoneOffset.UTC);
+                folderName.append(date.getYear());
+                folderName.append("-");
+                folderName.append(String.format("%02d", date.getMonthValue()));
+                folderName.append("-");
+                folderName.append(String.format("%02d", date.getDayOfMonth()));
+            }
+            return folderName.toString();
+        };
+    }
+
+    public static Runnable deduplicate(List<String> inputDirs, String outputDir, boolean preview) {
+        return () -> {
+            try {
+                var checksumBuilder = new ChecksumBuilder(inputDirs, null);
+                checksumBuilder.calculateChecksums();
+                new DeduplicateFiles(outputDir, preview).copyAndDeduplicateFiles(checksumBuilder.getChecksumMap());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    public static Runnable organize(List<String> inputDirs, String outputDir, boolean preview) {
+        return () -> {
+            try {
+                for (String inputDir : inputDirs) {
+                    new DateOrganizer(inputDir, outputDir, DateOrganizer.DateFormat.YYYY_MM_DD, preview).organizeFiles();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Checksum throughput by file size, algorithm and read strategy. Multiply the score by the file size for bytes per
+ * second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChecksumBenchmark {
+
+    @Param({"4096", "1048576", "67108864"})
+    public int fileSize;
+
+    @Param({"MD5", "SHA_256", "MURMUR3_128"})
+    public String algorithm;
+
+    @Param({"STREAM", "CHANNEL", "MAPPED"})
+    public String readMode;
+
+    @Param({"1048576"})
+    public int bufferSize;
+
+    private Path file;
+    private File input;
+    private Function<File, Optional<byte[]>> checksumFunction;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        var contents = new byte[fileSize];
+        new Random(1).nextBytes(contents);
+        file = Files.createTempFile("checksumBenchmark", ".bin");
+        Files.write(file, contents);
+        input = file.toFile();
+        checksumFunction = Targets.get("checksumFunction", algorithm, readMode, bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Optional<byte[]> checksum() {
+        return checksumFunction.apply(input);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Per-file cost of working out the output directory in DateOrganizer, for a tree where half the directories carry
+ * a date in their name and the rest fall back to the modification time. The regex resolver is the way it was done
+ * before DatePathMatcher, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(DateExtractionBenchmark.FILE_COUNT)
+public class DateExtractionBenchmark {
+
+    static final int FILE_COUNT = 2000;
+
+    @Param({"scanner", "regex"})
+    public String matcher;
+
+    private Path root;
+    private File[] files;
+    private Function<File, String> resolver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("dateExtractionBenchmark");
+        var fixture = new FixtureGenerator(1).filesPerDirectory(20).fileSizes(1, 2).generate(root, FILE_COUNT, 0);
+        files = fixture.files().stream().map(Path::toFile).toArray(File[]::new);
+        resolver = matcher.equals("regex")
+                ? Targets.get("regexOutputDirectoryResolver", root.resolve("out").toString(), "YYYY_MM_DD")
+                : Targets.get("outputDirectoryResolver", root.toString(), root.resolve("out").toString(), "YYYY_MM_DD");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FixtureGenerator.delete(root);
+    }
+
+    @Benchmark
+    public void resolveOutputDirectory(Blackhole blackhole) {
+        for (var file : files) {
+            blackhole.consume(resolver.apply(file));
+        }
+    }
+}
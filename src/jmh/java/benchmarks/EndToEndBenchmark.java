@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole deduplicate and organize runs over a generated fixture. In preview mode only the walking, hashing and path
+ * work is measured, otherwise the output is written and removed again between runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class EndToEndBenchmark {
+
+    @Param({"deduplicate", "organize"})
+    public String action;
+
+    @Param({"2000"})
+    public int fileCount;
+
+    @Param({"0.0", "0.5"})
+    public double duplicateRatio;
+
+    @Param({"true", "false"})
+    public boolean preview;
+
+    private Path root;
+    private Path input;
+    private Path output;
+    private Runnable run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("endToEndBenchmark");
+        input = root.resolve("input");
+        output = root.resolve("output");
+        new FixtureGenerator(1).generate(input, fileCount, duplicateRatio);
+        run = Targets.get(action, List.of(input.toString()), output.toString(), preview);
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanOutput() throws IOException {
+        FixtureGenerator.delete(output);
+        Files.createDirectories(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FixtureGenerator.delete(root);
+    }
+
+    @Benchmark
+    public void run() {
+        run.run();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds reproducible trees of files for the benchmarks.
+ * <p>
+ * The same seed always produces the same directory names, file contents, sizes and modification times. A share of
+ * the files, set by the duplicate ratio, are copies of files created earlier in the tree. Every other directory is
+ * named with a YYYY-MM-DD date and a description, so both branches of DateOrganizer get exercised.
+ * <p>
+ * Can also be run on its own to create a fixture for manual testing:
+ * java benchmarks.FixtureGenerator &lt;root&gt; &lt;fileCount&gt; &lt;duplicateRatio&gt; [seed]
+ */
+public class FixtureGenerator {
+
+    // Modification times are spread over the ten years before this instant
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    private static final long TEN_YEARS = 10L * 365 * 24 * 60 * 60 * 1000;
+
+    private final long seed;
+    private int filesPerDirectory = 100;
+    private int minFileSize = 4 * 1024;
+    private int maxFileSize = 256 * 1024;
+
+    public FixtureGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public FixtureGenerator filesPerDirectory(int filesPerDirectory) {
+        this.filesPerDirectory = filesPerDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the range of file sizes. Sizes are picked uniformly from the range.
+     */
+    public FixtureGenerator fileSizes(int minFileSize, int maxFileSize) {
+        this.minFileSize = minFileSize;
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    /**
+     * Creates the files under the root directory.
+     *
+     * @param root The directory to create the tree in.
+     * @param fileCount The number of files to create.
+     * @param duplicateRatio The share of files, from 0 to 1, that are copies of an earlier file.
+     * @return The generated fixture.
+     * @throws IOException if the files couldn't be written.
+     */
+    public Fixture generate(Path root, int fileCount, double duplicateRatio) throws IOException {
+        var rnd = new Random(seed);
+        var uniqueContents = new ArrayList<byte[]>();
+        var files = new ArrayList<Path>();
+
+        Path dir = null;
+        for (int i = 0; i < fileCount; i++) {
+            if (i % filesPerDirectory == 0) {
+                dir = Files.createDirectories(root.resolve(directoryName(rnd, i / filesPerDirectory)));
+            }
+
+            byte[] contents;
+            if (!uniqueContents.isEmpty() && rnd.nextDouble() < duplicateRatio) {
+                contents = uniqueContents.get(rnd.nextInt(uniqueContents.size()));
+            } else {
+                contents = new byte[minFileSize + rnd.nextInt(Math.max(1, maxFileSize - minFileSize))];
+                rnd.nextBytes(contents);
+                uniqueContents.add(contents);
+            }
+
+            var file = Files.write(dir.resolve("IMG_" + i + ".jpg"), contents);
+            file.toFile().setLastModified(BASE_TIME - (long) (rnd.nextDouble() * TEN_YEARS));
+            files.add(file);
+        }
+        return new Fixture(root, files, uniqueContents.size());
+    }
+
+    private static String directoryName(Random rnd, int index) {
+        if (index % 2 == 0) {
+            return String.format("%04d-%02d-%02d Event %d", 2010 + rnd.nextInt(14), 1 + rnd.nextInt(12), 1 + rnd.nextInt(28), index);
+        }
+        return "Folder " + index;
+    }
+
+    /**
+     * Deletes a directory tree.
+     *
+     * @param root The directory to delete.
+     * @throws IOException if the tree couldn't be walked.
+     */
+    public static void delete(Path root) throws IOException {
+        if (Files.exists(root)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * A generated tree of files.
+     *
+     * @param root The directory the files were created in.
+     * @param files Every file that was created, in creation order.
+     * @param uniqueFiles The number of files with distinct contents.
+     */
+    public record Fixture(Path root, List<Path> files, int uniqueFiles) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: FixtureGenerator <root> <fileCount> <duplicateRatio> [seed]");
+            return;
+        }
+        var seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+        var fixture = new FixtureGenerator(seed).generate(Paths.get(args[0]), Integer.parseInt(args[1]), Double.parseDouble(args[2]));
+        System.out.println("Created " + fixture.files().size() + " files, " + fixture.uniqueFiles() + " unique, in " + fixture.root());
+    }
+}
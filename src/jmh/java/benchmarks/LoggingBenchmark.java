@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package benchmarks;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preview deduplicate and organize runs with the default logging configuration, which logs several lines per file
+ * synchronously, against the perf profile, which logs asynchronously and drops the per-file lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class LoggingBenchmark {
+
+    @Param({"deduplicate", "organize"})
+    public String action;
+
+    @Param({"/log4j2.xml", "/log4j2-perf.xml"})
+    public String profile;
+
+    @Param({"2000"})
+    public int fileCount;
+
+    private Path root;
+    private Runnable run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, URISyntaxException {
+        Configurator.reconfigure(LoggingBenchmark.class.getResource(profile).toURI());
+
+        root = Files.createTempDirectory("loggingBenchmark");
+        var input = root.resolve("input");
+        new FixtureGenerator(1).fileSizes(1024, 4096).generate(input, fileCount, 0.25);
+        run = Targets.get(action, List.of(input.toString()), root.resolve("output").toString(), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FixtureGenerator.delete(root);
+    }
+
+    @Benchmark
+    public void run() {
+        run.run();
+    }
+}
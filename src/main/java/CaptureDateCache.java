@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An on-disk cache of the capture dates read from files, keyed by absolute path, size and last modified time, so
+ * files that haven't changed since a previous run don't need to be parsed again. Files without a capture date are
+ * cached too, since finding that out costs as much as finding a date.
+ * <p>
+ * Entries are appended to a RecordLog, and a later entry for the same path replaces an earlier one. When most of
+ * the file is made up of replaced entries it's rewritten on close.
+ */
+public class CaptureDateCache implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(CaptureDateCache.class);
+
+    // Number of new entries after which they're written to disk
+    private static final int FLUSH_INTERVAL = 1000;
+
+    // Stored in place of a date for files that don't have one
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // The file backing the cache
+    private final RecordLog log;
+
+    // Cached dates keyed by absolute path
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    // Number of entries in the file that have been replaced by a later entry
+    private final AtomicLong obsoleteEntries = new AtomicLong();
+
+    // Number of entries appended since the last flush
+    private final AtomicLong unflushedEntries = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for the CaptureDateCache class. Loads any existing entries from the cache file.
+     *
+     * @param file The file backing the cache. It's created if it doesn't exist.
+     * @throws IOException if an I/O error occurs while reading the cache file.
+     */
+    public CaptureDateCache(Path file) throws IOException {
+        this.log = new RecordLog(file, "capture-date-cache");
+
+        var records = log.replay(in -> {
+            var path = in.readUTF();
+            entries.put(path, new CacheEntry(in.readLong(), in.readLong(), in.readLong()));
+        });
+        obsoleteEntries.set(records - entries.size());
+
+        logger.info("Loaded {} cached capture dates from {}", entries.size(), file);
+    }
+
+    /**
+     * Deletes a cache file, so the next run parses every file again.
+     *
+     * @param file The file backing the cache.
+     * @throws IOException if the file couldn't be deleted.
+     */
+    public static void invalidate(Path file) throws IOException {
+        logger.info("Clearing capture date cache {}", file);
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Wraps a capture date function so cached dates are used for files that haven't changed, and new dates are
+     * added to the cache. The returned function can be called from several threads at once.
+     *
+     * @param dateFunction The function used to read dates that aren't cached.
+     * @return The caching date function.
+     */
+    public Function<File, Optional<LocalDateTime>> wrap(Function<File, Optional<LocalDateTime>> dateFunction) {
+        return f -> {
+            var size = f.length();
+            var lastModified = f.lastModified();
+            var path = f.getAbsolutePath();
+
+            var entry = entries.get(path);
+            if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+                hits.incrementAndGet();
+                return entry.date() == NO_DATE ? Optional.empty() : Optional.of(LocalDateTime.ofEpochSecond(entry.date(), 0, ZoneOffset.UTC));
+            }
+
+            misses.incrementAndGet();
+            var date = dateFunction.apply(f);
+            put(path, new CacheEntry(size, lastModified, date.map(d -> d.toEpochSecond(ZoneOffset.UTC)).orElse(NO_DATE)));
+            return date;
+        };
+    }
+
+    /**
+     * Returns the number of files in the cache.
+     *
+     * @return The number of cached dates.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Writes any new entries to disk. If most of the file is made up of replaced entries it's rewritten.
+     *
+     * @throws IOException if an I/O error occurs while writing the cache file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        logger.info("Capture date cache hits: {}, misses: {}", hits.get(), misses.get());
+        if (obsoleteEntries.get() > entries.size()) {
+            log.rewrite(() -> entries.entrySet().stream()
+                    .map(e -> (RecordLog.RecordWriter) out -> writeEntry(out, e.getKey(), e.getValue()))
+                    .iterator());
+            obsoleteEntries.set(0);
+        } else {
+            log.close();
+        }
+    }
+
+    private void put(String absolutePath, CacheEntry entry) {
+        if (entries.put(absolutePath, entry) != null) {
+            obsoleteEntries.incrementAndGet();
+        }
+
+        try {
+            log.append(out -> writeEntry(out, absolutePath, entry));
+            if (unflushedEntries.incrementAndGet() >= FLUSH_INTERVAL) {
+                unflushedEntries.set(0);
+                log.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write capture date cache entry for {}: {}", absolutePath, e.getMessage());
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, String absolutePath, CacheEntry entry) throws IOException {
+        out.writeUTF(absolutePath);
+        out.writeLong(entry.size());
+        out.writeLong(entry.lastModified());
+        out.writeLong(entry.date());
+    }
+
+    /**
+     * A cached date, as seconds since 1970 in the time it was recorded in, along with the file attributes it's
+     * valid for.
+     */
+    private record CacheEntry(long size, long lastModified, long date) {
+    }
+}
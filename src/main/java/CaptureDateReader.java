@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads the date a photo or video was taken from the metadata embedded in the file, which survives downloads and
+ * copies that reset the modification date.
+ * <p>
+ * JPEG and TIFF based raw files are read for the EXIF DateTimeOriginal, falling back to DateTimeDigitized and the
+ * DateTime of the main image. MP4 and MOV files are read for the creation time in the movie header box. Nothing
+ * else of the file is read: JPEG segment headers are skipped until the EXIF segment, only the EXIF directories
+ * that lead to the date are read, and the boxes of a movie, including the media data, are skipped by their sizes
+ * until the movie header is found. That's a handful of small reads however large the file is.
+ * <p>
+ * EXIF dates are the camera's local time. Movie creation times are UTC, and are returned as UTC, which matches how
+ * the modification date is used when organizing.
+ */
+public final class CaptureDateReader {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(CaptureDateReader.class);
+
+    // EXIF tags holding dates, and the tag pointing to the EXIF directory
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_DATE_TIME_DIGITIZED = 0x9004;
+
+    // Bytes in an EXIF date, "YYYY:MM:DD HH:MM:SS"
+    private static final int EXIF_DATE_LENGTH = 19;
+
+    // Limits on how far a damaged file is followed
+    private static final int MAX_JPEG_SEGMENTS = 32;
+    private static final int MAX_IFD_ENTRIES = 1024;
+    private static final int MAX_BOXES = 256;
+
+    // Seconds between the movie epoch of 1904-01-01 and 1970-01-01
+    private static final long MOVIE_EPOCH_OFFSET = 2_082_844_800L;
+
+    // Box types a QuickTime or MP4 file can start with
+    private static final Set<String> FIRST_BOX_TYPES = Set.of("ftyp", "moov", "wide", "free", "skip", "mdat", "pnot");
+
+    private CaptureDateReader() {
+    }
+
+    /**
+     * Reads the date a photo or video was taken.
+     *
+     * @param file The file to read.
+     * @return The capture date, or empty if the file has none or isn't a format that's understood.
+     */
+    public static Optional<LocalDateTime> read(File file) {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel, ByteBuffer.allocate(0));
+        } catch (IOException e) {
+            logger.debug("No capture date in {}: {}", file.getPath(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the date a photo or video was taken from a file that's already open. Bytes within the header are taken
+     * from it, and only anything further on is read from the file.
+     *
+     * @param channel The open file.
+     * @param header The first bytes of the file, from position 0 to its limit. Can be empty.
+     * @return The capture date, or empty if the file has none or isn't a format that's understood.
+     */
+    public static Optional<LocalDateTime> read(FileChannel channel, ByteBuffer header) {
+        var begin = System.nanoTime();
+        try {
+            var source = new Source(channel, header);
+            if (source.size() < 12) {
+                return Optional.empty();
+            }
+
+            var start = source.read(0, 12);
+            if ((start.get(0) & 0xFF) == 0xFF && (start.get(1) & 0xFF) == 0xD8) {
+                return readJpeg(source);
+            }
+            if (isTiffHeader(start)) {
+                return readExif(source, 0);
+            }
+            if (FIRST_BOX_TYPES.contains(boxType(start, 4))) {
+                return readMovie(source);
+            }
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("No capture date: {}", e.getMessage());
+            return Optional.empty();
+        } finally {
+            Metrics.record(Metrics.Stage.DATE, begin);
+        }
+    }
+
+    /**
+     * Skips the JPEG segments until the EXIF segment, and reads the date from it.
+     */
+    private static Optional<LocalDateTime> readJpeg(Source source) throws IOException {
+        long position = 2;
+        for (int i = 0; i < MAX_JPEG_SEGMENTS && position + 4 <= source.size(); i++) {
+            var header = source.read(position, 4);
+            var marker = header.getShort(0) & 0xFFFF;
+            var length = header.getShort(2) & 0xFFFF;
+            if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || length < 2) {
+                // Not a segment, or the start of the image data, which no metadata follows
+                break;
+            }
+
+            if (marker == 0xFFE1 && length >= 14) {
+                var identifier = source.read(position + 4, 6);
+                if (identifier.getInt(0) == 0x45786966 && identifier.getShort(4) == 0) {
+                    // "Exif" followed by two zero bytes, then a TIFF header that offsets are relative to
+                    return readExif(source, position + 10);
+                }
+            }
+            position += 2 + length;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the date from the EXIF directories of a TIFF structure.
+     *
+     * @param source The file.
+     * @param base Where the TIFF header starts, which offsets in the directories are relative to.
+     */
+    private static Optional<LocalDateTime> readExif(Source source, long base) throws IOException {
+        var header = source.read(base, 8);
+        if (!isTiffHeader(header)) {
+            return Optional.empty();
+        }
+        var order = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        header.order(order);
+
+        var mainImage = readDirectory(source, base, header.getInt(4) & 0xFFFFFFFFL, order);
+        if (mainImage == null) {
+            return Optional.empty();
+        }
+
+        var exifOffset = findEntry(mainImage, TAG_EXIF_IFD);
+        if (exifOffset >= 0) {
+            var exif = readDirectory(source, base, mainImage.getInt(exifOffset + 8) & 0xFFFFFFFFL, order);
+            if (exif != null) {
+                for (var tag : new int[]{TAG_DATE_TIME_ORIGINAL, TAG_DATE_TIME_DIGITIZED}) {
+                    var date = readDateEntry(source, base, exif, tag);
+                    if (date.isPresent()) {
+                        return date;
+                    }
+                }
+            }
+        }
+        return readDateEntry(source, base, mainImage, TAG_DATE_TIME);
+    }
+
+    /**
+     * Reads the entries of an EXIF directory, each 12 bytes of tag, type, count and value or offset.
+     *
+     * @return The entries, or null if the directory is outside the file.
+     */
+    private static ByteBuffer readDirectory(Source source, long base, long offset, ByteOrder order) throws IOException {
+        if (offset < 8 || base + offset + 2 > source.size()) {
+            return null;
+        }
+        var count = source.read(base + offset, 2).order(order).getShort(0) & 0xFFFF;
+        if (count > MAX_IFD_ENTRIES) {
+            return null;
+        }
+        return source.read(base + offset + 2, count * 12).order(order);
+    }
+
+    private static int findEntry(ByteBuffer directory, int tag) {
+        for (int offset = 0; offset + 12 <= directory.limit(); offset += 12) {
+            if ((directory.getShort(offset) & 0xFFFF) == tag) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static Optional<LocalDateTime> readDateEntry(Source source, long base, ByteBuffer directory, int tag) throws IOException {
+        var entry = findEntry(directory, tag);
+        if (entry < 0 || directory.getInt(entry + 4) < EXIF_DATE_LENGTH) {
+            return Optional.empty();
+        }
+
+        var valueOffset = directory.getInt(entry + 8) & 0xFFFFFFFFL;
+        var value = source.read(base + valueOffset, EXIF_DATE_LENGTH);
+        return parseExifDate(StandardCharsets.US_ASCII.decode(value).toString());
+    }
+
+    /**
+     * Parses an EXIF date. Cameras without a clock set write zeros or spaces, which aren't a date.
+     *
+     * @param text The date as "YYYY:MM:DD HH:MM:SS".
+     * @return The date, or empty if it isn't valid.
+     */
+    static Optional<LocalDateTime> parseExifDate(String text) {
+        if (text.length() < EXIF_DATE_LENGTH || text.charAt(4) != ':' || text.charAt(7) != ':' || text.charAt(13) != ':') {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(LocalDateTime.of(
+                    Integer.parseInt(text, 0, 4, 10), Integer.parseInt(text, 5, 7, 10), Integer.parseInt(text, 8, 10, 10),
+                    Integer.parseInt(text, 11, 13, 10), Integer.parseInt(text, 14, 16, 10), Integer.parseInt(text, 17, 19, 10)));
+        } catch (NumberFormatException | DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Skips the top level boxes of a movie until the movie box, and reads the creation time from its header.
+     */
+    private static Optional<LocalDateTime> readMovie(Source source) throws IOException {
+        var moov = findBox(source, 0, source.size(), "moov");
+        if (moov == null) {
+            return Optional.empty();
+        }
+        var mvhd = findBox(source, moov.bodyStart(), moov.end(), "mvhd");
+        if (mvhd == null || mvhd.end() - mvhd.bodyStart() < 12) {
+            return Optional.empty();
+        }
+
+        var header = source.read(mvhd.bodyStart(), 12);
+        var creationTime = header.get(0) == 1 ? header.getLong(4) : header.getInt(4) & 0xFFFFFFFFL;
+        if (creationTime <= 0) {
+            // Left unset by the camera
+            return Optional.empty();
+        }
+        return Optional.of(LocalDateTime.ofEpochSecond(creationTime - MOVIE_EPOCH_OFFSET, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Finds a box among the boxes between start and end, skipping the others by their sizes.
+     *
+     * @return The box, or null if it isn't there.
+     */
+    private static Box findBox(Source source, long start, long end, String type) throws IOException {
+        var position = start;
+        for (int i = 0; i < MAX_BOXES && position + 8 <= end; i++) {
+            var header = source.read(position, 8);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            var headerSize = 8;
+            if (size == 1) {
+                // The size didn't fit in 32 bits and follows the type
+                size = source.read(position + 8, 8).getLong(0);
+                headerSize = 16;
+            } else if (size == 0) {
+                // The box runs to the end of the file
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return null;
+            }
+
+            if (boxType(header, 4).equals(type)) {
+                return new Box(position + headerSize, position + size);
+            }
+            position += size;
+        }
+        return null;
+    }
+
+    private static boolean isTiffHeader(ByteBuffer header) {
+        return (header.get(0) == 'I' && header.get(1) == 'I' && header.get(2) == 42 && header.get(3) == 0)
+                || (header.get(0) == 'M' && header.get(1) == 'M' && header.get(2) == 0 && header.get(3) == 42);
+    }
+
+    private static String boxType(ByteBuffer buffer, int offset) {
+        var type = new byte[4];
+        buffer.get(offset, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The bytes of a file, taken from the header that has already been read where possible, otherwise read from
+     * the file.
+     */
+    private static final class Source {
+        private final FileChannel channel;
+        private final ByteBuffer header;
+        private final long size;
+
+        Source(FileChannel channel, ByteBuffer header) throws IOException {
+            this.channel = channel;
+            this.header = header;
+            this.size = channel.size();
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Reads bytes at a position in the file.
+         *
+         * @return A big endian buffer holding exactly the bytes asked for.
+         * @throws EOFException if the file ends first.
+         */
+        ByteBuffer read(long position, int length) throws IOException {
+            var buffer = ByteBuffer.allocate(length);
+            if (position + length <= header.limit()) {
+                return buffer.put(0, header, (int) position, length);
+            }
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * The contents of a box, from the end of its header to the end of the box.
+     */
+    private record Box(long bodyStart, long end) {
+    }
+}
@@ -27,7 +27,6 @@ import org.apache.logging.log4j.Logger;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.util.*;
@@ -54,6 +53,9 @@ public class ChecksumBuilder implements IChecksumBuilder {
     // Function to calculate checksum
     private final Function<File, Optional<byte[]>> checksumFunction;
 
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
     /**
      * Constructor for the ChecksumBuilder class.
      *
@@ -61,8 +63,20 @@ public class ChecksumBuilder implements IChecksumBuilder {
      * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
      */
     public ChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction) {
+        this(directories, checksumFunction, null);
+    }
+
+    /**
+     * Constructor for the ChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public ChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, FileWalker fileWalker) {
         this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
         this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
     }
 
     /**
@@ -85,10 +99,7 @@ public class ChecksumBuilder implements IChecksumBuilder {
     public void calculateChecksums() throws IOException {
         for (String dirName : directories) {
             logger.info("Iterating over files in directory: {}", dirName);
-            Files.walk(Paths.get(dirName))
-                    .map(path -> path.toFile())
-                    .filter(file -> !file.isDirectory())
-                    .forEach(file -> handleFile(dirName, file));
+            this.fileWalker.walk(Paths.get(dirName), file -> handleFile(dirName, file));
         }
     }
 
@@ -100,12 +111,12 @@ public class ChecksumBuilder implements IChecksumBuilder {
      * @param f The file for which the checksum is to be calculated.
      */
     private void handleFile(String inputDirName, File f)  {
-        logger.info("File: {}", f.getAbsolutePath());
+        logger.debug("File: {}", f.getAbsolutePath());
         var checksumBytes = this.checksumFunction.apply(f);
 
         if (checksumBytes.isPresent()) {
             var checksum = toHexString(checksumBytes.get());
-            logger.info("Checksum: {}", checksum);
+            logger.debug("Checksum: {}", checksum);
             checksumMap.computeIfAbsent(checksum, k -> new ArrayList<>()).add(new SimpleEntry<>(inputDirName, f));
         }
     }
@@ -116,7 +127,7 @@ public class ChecksumBuilder implements IChecksumBuilder {
      * @param bytes The byte array to be converted.
      * @return The hexadecimal string representation of the byte array.
      */
-    private static String toHexString(byte[] bytes) {
+    static String toHexString(byte[] bytes) {
         var result = new StringBuilder();
         for(byte b : bytes) {
             result.append(String.format("%02x", b));
@@ -130,7 +141,7 @@ public class ChecksumBuilder implements IChecksumBuilder {
      * @param f The file for which the checksum is to be calculated.
      * @return The calculated checksum as a byte array.
      */
-    private static Optional<byte[]> defaultChecksumFunction(File f)  {
+    static Optional<byte[]> defaultChecksumFunction(File f)  {
         try {
             var md = MessageDigest.getInstance("MD5");
             try (var fis = new FileInputStream(f)) {
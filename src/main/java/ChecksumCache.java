@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * An on-disk cache of file checksums keyed by absolute path, size and last modified time, so files that haven't
+ * changed since a previous run don't need to be read again.
+ * <p>
+ * New checksums are appended to a RecordLog, which discards a partly written entry left behind by a crashed run.
+ * A later entry for the same path replaces an earlier one, and compact() rewrites the file with only the entries
+ * that still match a file on disk.
+ */
+public class ChecksumCache implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ChecksumCache.class);
+
+    // Number of new entries after which they're written to disk
+    private static final int FLUSH_INTERVAL = 1000;
+
+    // Time after which new entries are written to disk, so a run that dies loses little of its hashing
+    private static final long FLUSH_MILLIS = 10_000;
+
+    // The file backing the cache
+    private final RecordLog log;
+
+    // Cached checksums keyed by absolute path
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    // Number of entries in the file that have been replaced by a later entry
+    private final AtomicLong obsoleteEntries = new AtomicLong();
+
+    // Number of entries appended since the last flush, and when the last flush was
+    private final AtomicLong unflushedEntries = new AtomicLong();
+    private final AtomicLong lastFlush = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for the ChecksumCache class. Loads any existing entries from the cache file.
+     *
+     * @param file The file backing the cache. It's created if it doesn't exist.
+     * @param algorithm The name of the checksum algorithm. A cache file written with a different algorithm is discarded.
+     * @throws IOException if an I/O error occurs while reading the cache file.
+     */
+    public ChecksumCache(Path file, String algorithm) throws IOException {
+        this.log = new RecordLog(file, "checksum-cache " + algorithm);
+
+        var records = log.replay(in -> {
+            var path = in.readUTF();
+            var size = in.readLong();
+            var lastModified = in.readLong();
+            var digest = new byte[in.readUnsignedByte()];
+            in.readFully(digest);
+            entries.put(path, new CacheEntry(size, lastModified, digest));
+        });
+        obsoleteEntries.set(records - entries.size());
+
+        logger.info("Loaded {} cached checksums from {}", entries.size(), file);
+    }
+
+    /**
+     * Deletes a cache file, so the next run hashes every file again.
+     *
+     * @param file The file backing the cache.
+     * @throws IOException if the file couldn't be deleted.
+     */
+    public static void invalidate(Path file) throws IOException {
+        logger.info("Clearing checksum cache {}", file);
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Wraps a checksum function so cached checksums are used for files that haven't changed, and new checksums are
+     * added to the cache. The returned function can be called from several threads at once.
+     *
+     * @param checksumFunction The function used to calculate checksums that aren't cached.
+     * @return The caching checksum function.
+     */
+    public Function<File, Optional<byte[]>> wrap(Function<File, Optional<byte[]>> checksumFunction) {
+        return f -> {
+            // Read the attributes before hashing, so a file that changes while it's read is hashed again next time
+            var size = f.length();
+            var lastModified = f.lastModified();
+
+            var cached = get(f.getAbsolutePath(), size, lastModified);
+            if (cached.isPresent()) {
+                hits.incrementAndGet();
+                return cached;
+            }
+
+            misses.incrementAndGet();
+            var checksum = checksumFunction.apply(f);
+            checksum.ifPresent(digest -> put(f.getAbsolutePath(), size, lastModified, digest));
+            return checksum;
+        };
+    }
+
+    /**
+     * Looks up the checksum of a file.
+     *
+     * @param absolutePath The absolute path of the file.
+     * @param size The current size of the file.
+     * @param lastModified The current last modified time of the file.
+     * @return The cached checksum, or empty if the file isn't cached or has changed.
+     */
+    public Optional<byte[]> get(String absolutePath, long size, long lastModified) {
+        var entry = entries.get(absolutePath);
+        if (entry != null && entry.size() == size && entry.lastModified() == lastModified) {
+            return Optional.of(entry.digest());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds the checksum of a file to the cache.
+     *
+     * @param absolutePath The absolute path of the file.
+     * @param size The size of the file when it was hashed.
+     * @param lastModified The last modified time of the file when it was hashed.
+     * @param digest The checksum of the file.
+     */
+    public void put(String absolutePath, long size, long lastModified, byte[] digest) {
+        var entry = new CacheEntry(size, lastModified, digest);
+        if (entries.put(absolutePath, entry) != null) {
+            obsoleteEntries.incrementAndGet();
+        }
+
+        try {
+            log.append(out -> writeEntry(out, absolutePath, entry));
+            var now = System.nanoTime();
+            if (unflushedEntries.incrementAndGet() >= FLUSH_INTERVAL || now - lastFlush.get() >= FLUSH_MILLIS * 1_000_000) {
+                unflushedEntries.set(0);
+                lastFlush.set(now);
+                log.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write checksum cache entry for {}: {}", absolutePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of files in the cache.
+     *
+     * @return The number of cached checksums.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes entries for files that no longer exist or have changed, and rewrites the cache file with only the
+     * remaining entries.
+     *
+     * @throws IOException if an I/O error occurs while writing the cache file.
+     */
+    public synchronized void compact() throws IOException {
+        var before = entries.size();
+        entries.entrySet().removeIf(e -> {
+            var f = new File(e.getKey());
+            return !f.isFile() || f.length() != e.getValue().size() || f.lastModified() != e.getValue().lastModified();
+        });
+        rewrite();
+        logger.info("Compacted checksum cache, removed {} stale entries, kept {}", before - entries.size(), entries.size());
+    }
+
+    /**
+     * Writes any new entries to disk. If most of the file is made up of replaced entries it's rewritten.
+     *
+     * @throws IOException if an I/O error occurs while writing the cache file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        logger.info("Checksum cache hits: {}, misses: {}", hits.get(), misses.get());
+        if (obsoleteEntries.get() > entries.size()) {
+            rewrite();
+        } else {
+            log.close();
+        }
+    }
+
+    private void rewrite() throws IOException {
+        log.rewrite(() -> entries.entrySet().stream()
+                .map(e -> (RecordLog.RecordWriter) out -> writeEntry(out, e.getKey(), e.getValue()))
+                .iterator());
+        obsoleteEntries.set(0);
+    }
+
+    private static void writeEntry(DataOutputStream out, String absolutePath, CacheEntry entry) throws IOException {
+        out.writeUTF(absolutePath);
+        out.writeLong(entry.size());
+        out.writeLong(entry.lastModified());
+        out.writeByte(entry.digest().length);
+        out.write(entry.digest());
+    }
+
+    /**
+     * A cached checksum along with the file attributes it's valid for.
+     */
+    private record CacheEntry(long size, long lastModified, byte[] digest) {
+    }
+}
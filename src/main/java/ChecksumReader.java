@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+/**
+ * Calculates file checksums using a selectable algorithm and read strategy. Use the checksum method as the checksum function
+ * of a checksum builder.
+ * <p>
+ * The strategies are reading through a FileInputStream, reading a FileChannel into a direct ByteBuffer, and
+ * memory mapping the file in segments. AUTO memory maps large files and uses the FileChannel for the rest.
+ * <p>
+ * Java has no way to unmap a file, so a mapped file stays open until its mapping is garbage collected. On Windows an
+ * open file can't be moved or deleted, so use readModeFor to pick a strategy that doesn't map when files are moved.
+ */
+public class ChecksumReader {
+
+    public enum ReadMode {
+        STREAM,
+        CHANNEL,
+        MAPPED,
+        AUTO
+    }
+
+    /**
+     * Receives a file that has just been hashed, before it's closed, along with the first bytes that were read.
+     */
+    public interface ReadListener {
+        void fileRead(FileChannel channel, ByteBuffer header) throws IOException;
+    }
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ChecksumReader.class);
+
+    // Default number of bytes read at a time
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    // Files at least this large are memory mapped in AUTO mode
+    public static final long DEFAULT_MAPPED_THRESHOLD = 64L * 1024 * 1024;
+
+    // Largest part of a file that is mapped at once
+    public static final long DEFAULT_MAPPED_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    // Number of bytes from the start of a file kept for a ReadListener, where file formats put their metadata
+    public static final int HEADER_SIZE = 64 * 1024;
+
+    private final HashAlgorithm algorithm;
+    private final ReadMode readMode;
+    private final int bufferSize;
+    private final long mappedThreshold;
+    private final long mappedSegmentSize;
+
+    // Direct buffers are expensive to allocate, so each thread keeps its own
+    private final ThreadLocal<ByteBuffer> directBuffers;
+
+    /**
+     * Constructor for the ChecksumReader class that calculates MD5 checksums.
+     *
+     * @param readMode The read strategy to use.
+     * @param bufferSize The number of bytes read at a time by the STREAM and CHANNEL strategies.
+     */
+    public ChecksumReader(ReadMode readMode, int bufferSize) {
+        this(HashAlgorithm.MD5, readMode, bufferSize);
+    }
+
+    /**
+     * Constructor for the ChecksumReader class.
+     *
+     * @param algorithm The algorithm used to calculate checksums.
+     * @param readMode The read strategy to use.
+     * @param bufferSize The number of bytes read at a time by the STREAM and CHANNEL strategies.
+     */
+    public ChecksumReader(HashAlgorithm algorithm, ReadMode readMode, int bufferSize) {
+        this(algorithm, readMode, bufferSize, DEFAULT_MAPPED_THRESHOLD, DEFAULT_MAPPED_SEGMENT_SIZE);
+    }
+
+    ChecksumReader(HashAlgorithm algorithm, ReadMode readMode, int bufferSize, long mappedThreshold, long mappedSegmentSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be at least 1");
+        }
+
+        this.algorithm = algorithm;
+        this.readMode = readMode;
+        this.bufferSize = bufferSize;
+        this.mappedThreshold = mappedThreshold;
+        this.mappedSegmentSize = mappedSegmentSize;
+        this.directBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(this.bufferSize));
+    }
+
+    /**
+     * Calculates the checksum for a file.
+     *
+     * @param f The file for which the checksum is to be calculated.
+     * @return The calculated checksum as a byte array, or empty if the file couldn't be read.
+     */
+    public Optional<byte[]> checksum(File f) {
+        return checksum(f, null);
+    }
+
+    /**
+     * Calculates the checksum for a file, then hands the still open file to a listener, so something else can be
+     * taken from the same read. The start of the file is passed along from the bytes that were hashed, and anything
+     * further on is likely still in the page cache.
+     *
+     * @param f The file for which the checksum is to be calculated.
+     * @param listener Receives the file after it's hashed. If null, nothing is passed on.
+     * @return The calculated checksum as a byte array, or empty if the file couldn't be read.
+     */
+    public Optional<byte[]> checksum(File f, ReadListener listener) {
+        try {
+            var md = algorithm.newDigest();
+            switch (modeFor(f.length())) {
+                case STREAM:
+                    readStream(f, md, listener);
+                    break;
+                case CHANNEL:
+                    readChannel(f, md, listener);
+                    break;
+                default:
+                    readMapped(f, md, listener);
+                    break;
+            }
+            return Optional.of(md.digest());
+        } catch (Exception e) {
+            logger.info("Caught exception during checksum: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Determines the read strategy to use for files that will be put in the destination with the given transfer
+     * mode. Files that are moved are read through the FileChannel rather than memory mapped, since their mappings
+     * would keep them open.
+     *
+     * @param readMode The read strategy that was asked for.
+     * @param transferMode How the files are put in the destination.
+     * @return The read strategy to use.
+     */
+    public static ReadMode readModeFor(ReadMode readMode, TransferMode transferMode) {
+        if (transferMode == TransferMode.MOVE && (readMode == ReadMode.MAPPED || readMode == ReadMode.AUTO)) {
+            return ReadMode.CHANNEL;
+        }
+        return readMode;
+    }
+
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Determines the read strategy for a file.
+     *
+     * @param size The size of the file.
+     * @return The read strategy, never AUTO.
+     */
+    ReadMode modeFor(long size) {
+        if (readMode != ReadMode.AUTO) {
+            return readMode;
+        }
+        return size >= mappedThreshold ? ReadMode.MAPPED : ReadMode.CHANNEL;
+    }
+
+    private void readStream(File f, MessageDigest md, ReadListener listener) throws IOException {
+        try (var fis = new FileInputStream(f)) {
+            var header = listener != null ? ByteBuffer.allocate(HEADER_SIZE) : null;
+            var buffer = new byte[bufferSize];
+            int nread;
+            while ((nread = fis.read(buffer)) != -1) {
+                if (header != null && header.hasRemaining()) {
+                    header.put(buffer, 0, Math.min(nread, header.remaining()));
+                }
+                md.update(buffer, 0, nread);
+            }
+            if (listener != null) {
+                listener.fileRead(fis.getChannel(), header.flip());
+            }
+        }
+    }
+
+    private void readChannel(File f, MessageDigest md, ReadListener listener) throws IOException {
+        try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            var header = listener != null ? ByteBuffer.allocate(HEADER_SIZE) : null;
+            var buffer = directBuffers.get();
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                if (header != null && header.hasRemaining()) {
+                    header.put(buffer.duplicate().limit(Math.min(buffer.limit(), header.remaining())));
+                }
+                md.update(buffer);
+                buffer.clear();
+            }
+            if (listener != null) {
+                listener.fileRead(channel, header.flip());
+            }
+        }
+    }
+
+    private void readMapped(File f, MessageDigest md, ReadListener listener) throws IOException {
+        try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            var size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(0);
+            for (long position = 0; position < size; position += mappedSegmentSize) {
+                var segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappedSegmentSize, size - position));
+                if (position == 0) {
+                    // The mapping is already in memory, so the header is just a view of it
+                    header = segment.duplicate().limit(Math.min(segment.limit(), HEADER_SIZE));
+                }
+                md.update(segment);
+            }
+            if (listener != null) {
+                listener.fileRead(channel, header);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A memory efficient set of checksums that also remembers which ones were added more than once, for a single pass
+ * over a library with too many files for a set of hex strings.
+ * <p>
+ * Checksums are stored as fixed-width binary keys in an open addressed table of primitive arrays, like those of
+ * CompactChecksumIndex, so each costs its own bytes plus one byte of state instead of a String and a set entry.
+ * The checksum length is taken from the first checksum added. Not thread safe.
+ */
+public class ChecksumSet {
+
+    // State of a slot in the table
+    private static final byte EMPTY = 0;
+    private static final byte SEEN_ONCE = 1;
+    private static final byte SEEN_AGAIN = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Number of bytes in each checksum, and the number of longs used to store it, or 0 until the first one is added
+    private int digestLength;
+    private int longsPerKey;
+
+    // Open addressed table of checksums, and how often each slot's checksum has been added
+    private long[] keys;
+    private byte[] states;
+    private int capacity;
+    private int size;
+
+    // Reused when looking up a checksum
+    private long[] scratchKey;
+
+    /**
+     * Adds a checksum to the set.
+     *
+     * @param digest The checksum.
+     * @return 0 if the checksum is new, 1 if it had been added once before, and 2 if it had been added more than once.
+     * @throws IllegalArgumentException if the checksum isn't the same length as the first one added.
+     */
+    public int add(byte[] digest) {
+        if (digestLength == 0) {
+            if (digest.length == 0) {
+                throw new IllegalArgumentException("Checksum must not be empty");
+            }
+            digestLength = digest.length;
+            longsPerKey = (digestLength + Long.BYTES - 1) / Long.BYTES;
+            scratchKey = new long[longsPerKey];
+            capacity = INITIAL_CAPACITY;
+            keys = new long[capacity * longsPerKey];
+            states = new byte[capacity];
+        } else if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a " + digestLength + " byte checksum, got " + digest.length);
+        }
+
+        toKey(digest, scratchKey);
+        var slot = findSlot(scratchKey);
+        switch (states[slot]) {
+            case EMPTY:
+                System.arraycopy(scratchKey, 0, keys, slot * longsPerKey, longsPerKey);
+                states[slot] = SEEN_ONCE;
+                if (++size * 4L > capacity * 3L) {
+                    resize();
+                }
+                return 0;
+            case SEEN_ONCE:
+                states[slot] = SEEN_AGAIN;
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Returns the number of distinct checksums in the set.
+     *
+     * @return The number of checksums.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot holding a key, or the free slot where it belongs.
+     */
+    private int findSlot(long[] key) {
+        var mask = capacity - 1;
+        var slot = hash(key) & mask;
+        while (states[slot] != EMPTY && !keyEquals(keys, slot * longsPerKey, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldStates = states;
+        var oldCapacity = capacity;
+
+        capacity = oldCapacity * 2;
+        keys = new long[capacity * longsPerKey];
+        states = new byte[capacity];
+
+        var key = new long[longsPerKey];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (oldStates[slot] != EMPTY) {
+                System.arraycopy(oldKeys, slot * longsPerKey, key, 0, longsPerKey);
+                var newSlot = findSlot(key);
+                System.arraycopy(key, 0, keys, newSlot * longsPerKey, longsPerKey);
+                states[newSlot] = oldStates[slot];
+            }
+        }
+    }
+
+    private static int hash(long[] key) {
+        // Checksums are already well distributed, this only folds the key down to an int
+        var h = key[0];
+        for (int i = 1; i < key.length; i++) {
+            h = h * 31 + key[i];
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static boolean keyEquals(long[] keys, int offset, long[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (keys[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void toKey(byte[] digest, long[] key) {
+        Arrays.fill(key, 0);
+        for (int i = 0; i < digest.length; i++) {
+            key[i / Long.BYTES] |= (digest[i] & 0xffL) << (8 * (Long.BYTES - 1 - i % Long.BYTES));
+        }
+    }
+}
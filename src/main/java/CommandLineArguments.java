@@ -38,6 +38,52 @@ public class CommandLineArguments {
 
     private final DateOrganizer.DateFormat dateFormat;
 
+    private int threads = 1;
+
+    private boolean sizeFirst;
+
+    private String cacheFile;
+    private boolean clearCache;
+    private boolean compactCache;
+
+    private ChecksumReader.ReadMode readMode = ChecksumReader.ReadMode.AUTO;
+    private int bufferSize = ChecksumReader.DEFAULT_BUFFER_SIZE;
+    private HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+    private String index = "map";
+    private String spillDir;
+    private int runSize = ExternalChecksumBuilder.DEFAULT_RUN_SIZE;
+
+    private boolean pipeline;
+    private int copyThreads = 1;
+    private int copiesPerDevice;
+    private TransferMode transferMode = TransferMode.COPY;
+
+    private String journalFile;
+    private boolean clearJournal;
+
+    private boolean readDates;
+    private String dateCacheFile;
+
+    private String logProfile = "default";
+
+    private String metricsFile;
+    private int metricsInterval = 10;
+
+    private String checkpointFile;
+    private boolean resume;
+
+    private String catalogFile;
+
+    private boolean similar;
+    private int maxDistance = NearDuplicateChecksumBuilder.DEFAULT_MAX_DISTANCE;
+
+    private List<String> includes = new ArrayList<>();
+    private List<String> excludes = new ArrayList<>();
+    private int walkThreads = 1;
+
+    private String layout;
+    private List<String> inputPatterns = new ArrayList<>();
+
     public CommandLineArguments(String action, List<String> inputDirs, String outputDir, DateOrganizer.DateFormat dateFormat, boolean preview) {
         this.action = action;
         this.inputDirs = inputDirs;
@@ -66,19 +112,227 @@ public class CommandLineArguments {
         return dateFormat;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isSizeFirst() {
+        return sizeFirst;
+    }
+
+    public String getCacheFile() {
+        return cacheFile;
+    }
+
+    public boolean isClearCache() {
+        return clearCache;
+    }
+
+    public boolean isCompactCache() {
+        return compactCache;
+    }
+
+    public ChecksumReader.ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public String getSpillDir() {
+        return spillDir;
+    }
+
+    public int getRunSize() {
+        return runSize;
+    }
+
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    public int getCopyThreads() {
+        return copyThreads;
+    }
+
+    public int getCopiesPerDevice() {
+        return copiesPerDevice;
+    }
+
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    public String getJournalFile() {
+        return journalFile;
+    }
+
+    public boolean isClearJournal() {
+        return clearJournal;
+    }
+
+    public boolean isReadDates() {
+        return readDates;
+    }
+
+    public String getDateCacheFile() {
+        return dateCacheFile;
+    }
+
+    public String getLogProfile() {
+        return logProfile;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public String getCatalogFile() {
+        return catalogFile;
+    }
+
+    public boolean isSimilar() {
+        return similar;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public int getWalkThreads() {
+        return walkThreads;
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public List<String> getInputPatterns() {
+        return inputPatterns;
+    }
+
     public boolean isValid() {
-        if (action == null || (!action.equals("deduplicate") && !action.equals("organize"))) {
+        if (action == null || (!action.equals("deduplicate") && !action.equals("organize") && !action.equals("benchmark")
+                && !action.equals("catalog") && !action.equals("dedupe-and-organize"))) {
             return false;
         }
         if (inputDirs == null || inputDirs.isEmpty()) {
             return false;
         }
-        if (outputDir == null || outputDir.isEmpty()) {
+        if ((outputDir == null || outputDir.isEmpty()) && !action.equals("benchmark") && !action.equals("catalog")) {
+            return false;
+        }
+        if (threads < 1 || walkThreads < 1) {
+            return false;
+        }
+        if ((clearCache || compactCache) && cacheFile == null) {
+            return false;
+        }
+        if (clearJournal && journalFile == null) {
+            return false;
+        }
+        if (dateCacheFile != null && !readDates && !action.equals("dedupe-and-organize")) {
+            return false;
+        }
+        if (resume && checkpointFile == null) {
+            return false;
+        }
+        if (action.equals("catalog") && catalogFile == null) {
+            return false;
+        }
+        if (sizeFirst && catalogFile != null) {
+            // Files with a unique size are never hashed, so they can't be looked up in the catalog
+            return false;
+        }
+        if (action.equals("dedupe-and-organize") && (pipeline || catalogFile != null || index.equals("external"))) {
+            // Files are organized once every group is known, there's nothing to pipeline or import into. The dates
+            // read while hashing are held in memory until then, which an external index is meant to avoid
+            return false;
+        }
+        if (maxDistance < 0 || maxDistance > 31) {
+            return false;
+        }
+        if (similar && (sizeFirst || pipeline || catalogFile != null || !index.equals("map"))) {
+            // Similar images are only grouped once every file is hashed, and their keys aren't checksums
+            return false;
+        }
+        if (!logProfile.equals("default") && !logProfile.equals("perf")) {
+            return false;
+        }
+        if (metricsInterval < 1) {
+            return false;
+        }
+        if (bufferSize < 1) {
+            return false;
+        }
+        if (!index.equals("map") && !index.equals("compact") && !index.equals("external")) {
+            return false;
+        }
+        if (runSize < 1) {
+            return false;
+        }
+        if (copyThreads < 1 || copiesPerDevice < 0) {
+            return false;
+        }
+        if (pipeline && (sizeFirst || !index.equals("map"))) {
+            // The pipeline copies files as they're hashed, without building an index
+            return false;
+        }
+        if (sizeFirst && !index.equals("map")) {
+            // Size-first keys aren't all checksums, so they can only go in the map
+            return false;
+        }
+        if (!isValidLayout()) {
             return false;
         }
         return true;
     }
 
+    /**
+     * Checks that the layout and input patterns compile.
+     */
+    private boolean isValidLayout() {
+        try {
+            var template = FolderTemplate.compile(layout != null ? layout : dateFormat.getTemplate());
+            if (!inputPatterns.isEmpty()) {
+                new DatePathMatcher(inputPatterns, template, "output");
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            logger.error(e.getMessage());
+            return false;
+        }
+    }
+
     public static Optional<CommandLineArguments> parse(String[] args) {
 
         if (args == null || args.length == 0) {
@@ -92,6 +346,38 @@ public class CommandLineArguments {
         String outputDir = null;
         boolean preview = false;
         DateOrganizer.DateFormat dateFormat = DateOrganizer.DateFormat.YYYY_MM_DD;
+        int threads = 1;
+        boolean sizeFirst = false;
+        String cacheFile = null;
+        boolean clearCache = false;
+        boolean compactCache = false;
+        ChecksumReader.ReadMode readMode = ChecksumReader.ReadMode.AUTO;
+        int bufferSize = ChecksumReader.DEFAULT_BUFFER_SIZE;
+        HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+        String index = "map";
+        String spillDir = null;
+        int runSize = ExternalChecksumBuilder.DEFAULT_RUN_SIZE;
+        boolean pipeline = false;
+        int copyThreads = 1;
+        int copiesPerDevice = 0;
+        TransferMode transferMode = TransferMode.COPY;
+        String journalFile = null;
+        boolean clearJournal = false;
+        boolean readDates = false;
+        String dateCacheFile = null;
+        String logProfile = "default";
+        String metricsFile = null;
+        int metricsInterval = 10;
+        String checkpointFile = null;
+        boolean resume = false;
+        String catalogFile = null;
+        boolean similar = false;
+        int maxDistance = NearDuplicateChecksumBuilder.DEFAULT_MAX_DISTANCE;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        int walkThreads = 1;
+        String layout = null;
+        List<String> inputPatterns = new ArrayList<>();
 
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
@@ -119,6 +405,150 @@ public class CommandLineArguments {
                         dateFormat = getDateFormat(dateFormatArg);
                     }
                     break;
+                case "-t":
+                    if (i + 1 < args.length) {
+                        threads = parseInt(args[++i], 0);
+                    }
+                    break;
+                case "--size-first":
+                    sizeFirst = true;
+                    break;
+                case "--cache":
+                    if (i + 1 < args.length) {
+                        cacheFile = args[++i];
+                    }
+                    break;
+                case "--clear-cache":
+                    clearCache = true;
+                    break;
+                case "--compact-cache":
+                    compactCache = true;
+                    break;
+                case "--read-mode":
+                    if (i + 1 < args.length) {
+                        readMode = getReadMode(args[++i]);
+                    }
+                    break;
+                case "--buffer-size":
+                    if (i + 1 < args.length) {
+                        bufferSize = (int) Math.min(Integer.MAX_VALUE, parseSize(args[++i], 0));
+                    }
+                    break;
+                case "--hash":
+                    if (i + 1 < args.length) {
+                        hashAlgorithm = getHashAlgorithm(args[++i]);
+                    }
+                    break;
+                case "--index":
+                    if (i + 1 < args.length) {
+                        index = args[++i];
+                    }
+                    break;
+                case "--spill-dir":
+                    if (i + 1 < args.length) {
+                        spillDir = args[++i];
+                    }
+                    break;
+                case "--run-size":
+                    if (i + 1 < args.length) {
+                        runSize = parseInt(args[++i], 0);
+                    }
+                    break;
+                case "--pipeline":
+                    pipeline = true;
+                    break;
+                case "--copy-threads":
+                    if (i + 1 < args.length) {
+                        copyThreads = parseInt(args[++i], 0);
+                    }
+                    break;
+                case "--copies-per-device":
+                    if (i + 1 < args.length) {
+                        copiesPerDevice = parseInt(args[++i], -1);
+                    }
+                    break;
+                case "--transfer":
+                    if (i + 1 < args.length) {
+                        transferMode = getTransferMode(args[++i]);
+                    }
+                    break;
+                case "--journal":
+                    if (i + 1 < args.length) {
+                        journalFile = args[++i];
+                    }
+                    break;
+                case "--clear-journal":
+                    clearJournal = true;
+                    break;
+                case "--read-dates":
+                    readDates = true;
+                    break;
+                case "--date-cache":
+                    if (i + 1 < args.length) {
+                        dateCacheFile = args[++i];
+                    }
+                    break;
+                case "--log-profile":
+                    if (i + 1 < args.length) {
+                        logProfile = args[++i];
+                    }
+                    break;
+                case "--metrics-file":
+                    if (i + 1 < args.length) {
+                        metricsFile = args[++i];
+                    }
+                    break;
+                case "--metrics-interval":
+                    if (i + 1 < args.length) {
+                        metricsInterval = parseInt(args[++i], 0);
+                    }
+                    break;
+                case "--checkpoint":
+                    if (i + 1 < args.length) {
+                        checkpointFile = args[++i];
+                    }
+                    break;
+                case "--resume":
+                    resume = true;
+                    break;
+                case "--catalog":
+                    if (i + 1 < args.length) {
+                        catalogFile = args[++i];
+                    }
+                    break;
+                case "--similar":
+                    similar = true;
+                    break;
+                case "--max-distance":
+                    if (i + 1 < args.length) {
+                        maxDistance = parseInt(args[++i], -1);
+                    }
+                    break;
+                case "--include":
+                    if (i + 1 < args.length) {
+                        includes.add(args[++i]);
+                    }
+                    break;
+                case "--exclude":
+                    if (i + 1 < args.length) {
+                        excludes.add(args[++i]);
+                    }
+                    break;
+                case "--walk-threads":
+                    if (i + 1 < args.length) {
+                        walkThreads = parseInt(args[++i], 0);
+                    }
+                    break;
+                case "--layout":
+                    if (i + 1 < args.length) {
+                        layout = args[++i];
+                    }
+                    break;
+                case "--input-pattern":
+                    if (i + 1 < args.length) {
+                        inputPatterns.add(args[++i]);
+                    }
+                    break;
                 case "-h":
                     return Optional.empty();
                 default:
@@ -126,10 +556,125 @@ public class CommandLineArguments {
             }
         }
 
-        return Optional.of(new CommandLineArguments(action, inputDirs, outputDir, dateFormat, preview));
+        var cmdArgs = new CommandLineArguments(action, inputDirs, outputDir, dateFormat, preview);
+        cmdArgs.threads = threads;
+        cmdArgs.sizeFirst = sizeFirst;
+        cmdArgs.cacheFile = cacheFile;
+        cmdArgs.clearCache = clearCache;
+        cmdArgs.compactCache = compactCache;
+        cmdArgs.readMode = readMode;
+        cmdArgs.bufferSize = bufferSize;
+        cmdArgs.hashAlgorithm = hashAlgorithm;
+        cmdArgs.index = index;
+        cmdArgs.spillDir = spillDir;
+        cmdArgs.runSize = runSize;
+        cmdArgs.pipeline = pipeline;
+        cmdArgs.copyThreads = copyThreads;
+        cmdArgs.copiesPerDevice = copiesPerDevice;
+        cmdArgs.transferMode = transferMode;
+        cmdArgs.journalFile = journalFile;
+        cmdArgs.clearJournal = clearJournal;
+        cmdArgs.readDates = readDates;
+        cmdArgs.dateCacheFile = dateCacheFile;
+        cmdArgs.logProfile = logProfile;
+        cmdArgs.metricsFile = metricsFile;
+        cmdArgs.metricsInterval = metricsInterval;
+        cmdArgs.checkpointFile = checkpointFile;
+        cmdArgs.resume = resume;
+        cmdArgs.catalogFile = catalogFile;
+        cmdArgs.similar = similar;
+        cmdArgs.maxDistance = maxDistance;
+        cmdArgs.includes = includes;
+        cmdArgs.excludes = excludes;
+        cmdArgs.walkThreads = walkThreads;
+        cmdArgs.layout = layout;
+        cmdArgs.inputPatterns = inputPatterns;
+        return Optional.of(cmdArgs);
+    }
+
+    private static int parseInt(String value, int invalidValue) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.error("Invalid number: {}", value);
+            return invalidValue;
+        }
     }
 
 
+    /**
+     * Parses a number of bytes, optionally followed by a K, M or G suffix.
+     */
+    private static long parseSize(String value, long invalidValue) {
+        var multiplier = 1L;
+        var number = value.toUpperCase();
+        if (number.endsWith("K")) {
+            multiplier = 1024L;
+        } else if (number.endsWith("M")) {
+            multiplier = 1024L * 1024;
+        } else if (number.endsWith("G")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            number = number.substring(0, number.length() - 1);
+        }
+
+        try {
+            return Long.parseLong(number) * multiplier;
+        } catch (NumberFormatException e) {
+            logger.error("Invalid size: {}", value);
+            return invalidValue;
+        }
+    }
+
+    private static HashAlgorithm getHashAlgorithm(String hashAlgorithmArg) {
+        switch (hashAlgorithmArg) {
+            case "md5":
+                return HashAlgorithm.MD5;
+            case "sha256":
+                return HashAlgorithm.SHA_256;
+            case "murmur3":
+                return HashAlgorithm.MURMUR3_128;
+            default:
+                logger.error("Invalid hash algorithm, using default");
+                return HashAlgorithm.MD5;
+        }
+    }
+
+    private static TransferMode getTransferMode(String transferModeArg) {
+        switch (transferModeArg) {
+            case "copy":
+                return TransferMode.COPY;
+            case "move":
+                return TransferMode.MOVE;
+            case "hardlink":
+                return TransferMode.HARDLINK;
+            case "symlink":
+                return TransferMode.SYMLINK;
+            case "clone":
+                return TransferMode.CLONE;
+            default:
+                logger.error("Invalid transfer mode, using default");
+                return TransferMode.COPY;
+        }
+    }
+
+    private static ChecksumReader.ReadMode getReadMode(String readModeArg) {
+        switch (readModeArg) {
+            case "stream":
+                return ChecksumReader.ReadMode.STREAM;
+            case "channel":
+                return ChecksumReader.ReadMode.CHANNEL;
+            case "mmap":
+                return ChecksumReader.ReadMode.MAPPED;
+            case "auto":
+                return ChecksumReader.ReadMode.AUTO;
+            default:
+                logger.error("Invalid read mode, using default");
+                return ChecksumReader.ReadMode.AUTO;
+        }
+    }
+
     private static DateOrganizer.DateFormat getDateFormat(String dateFormatArg) {
         DateOrganizer.DateFormat dateFormat = DateOrganizer.DateFormat.YYYY_MM_DD;
         switch (dateFormatArg) {
@@ -147,10 +692,42 @@ public class CommandLineArguments {
 
     public static void printHelp() {
         logger.info("Options:");
-        logger.info("\t-a <action>\t\tThe action to perform. Can be either 'organize' or 'deduplicate'.");
+        logger.info("\t-a <action>\t\tThe action to perform. Can be 'organize', 'deduplicate', 'catalog', which adds the checksums of the input files to the catalog, 'dedupe-and-organize', which organizes one copy of each file by the date it was taken while reading every file once, or 'benchmark', which compares the hash algorithms on the input files.");
         logger.info("\t-o <outputDir>\t\tThe output directory.");
         logger.info("\t-i <inputDir>\t\tThe input directory. This option can be specified multiple times for multiple input directories.");
         logger.info("\t-d <dateFormat>\t\tThe date format to use when organizing files. Can be either 'YYYYMMDD' or 'DDMMYYYY'. Defaults to YYYMMDD.");
+        logger.info("\t--layout <template>\tThe folders organized files are put in, for example '{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]'. {yyyy}, {yy}, {MM} and {dd} are the date, {desc} the description from a dated folder name, a part in [] is left out without one, and '/' makes subfolders. Defaults to the layout of the date format.");
+        logger.info("\t--input-pattern <pattern>\tA dated folder name to look for in the path of each file instead of the date format, for example 'IMG_{yyyy}{MM}{dd}' or '{yyyy}-{MM}-{dd} {desc}'. The first match in the path is used. Can be given more than once.");
+        logger.info("\t-t <threads>\t\tThe number of files to hash at once when deduplicating, or to organize at once. Defaults to 1.");
+        logger.info("\t--include <glob>\tOnly handle files matching this pattern, for example '*.jpg'. A pattern with a '/' is matched against the path under the input directory. Can be given more than once.");
+        logger.info("\t--exclude <glob>\tSkip files and directories matching this pattern, for example '.thumbnails'. Can be given more than once.");
+        logger.info("\t--walk-threads <threads>\tThe number of directories to list at once. Defaults to 1.");
+        logger.info("\t--size-first\t\tOnly hash files that share a size with another file, starting with their first and last blocks.");
+        logger.info("\t--similar\t\tAlso treat photos that look the same as duplicates, even at another quality or resolution, and keep the highest resolution copy.");
+        logger.info("\t--max-distance <bits>\tThe number of bits, out of 64, the perceptual hashes of two similar photos can differ in. Defaults to 5.");
+        logger.info("\t--cache <file>\t\tKeep checksums in this file so unchanged files aren't hashed again on the next run.");
+        logger.info("\t--clear-cache\t\tDiscard the checksum cache before running.");
+        logger.info("\t--compact-cache\t\tRemove entries for missing or changed files from the checksum cache after running.");
+        logger.info("\t--read-mode <mode>\tHow files are read when hashing. Can be 'stream', 'channel', 'mmap' or 'auto'. Defaults to auto, which memory maps large files.");
+        logger.info("\t--buffer-size <bytes>\tThe number of bytes read at a time when hashing, for example 1M. Defaults to 1M.");
+        logger.info("\t--hash <algorithm>\tThe checksum algorithm. Can be 'md5', 'sha256' or 'murmur3', a fast non-cryptographic hash. Defaults to md5.");
+        logger.info("\t--index <index>\t\tHow checksums are held in memory. Can be 'map', 'compact', which uses far less memory for large libraries, or 'external', which sorts them on disk and can't be used with dedupe-and-organize. Defaults to map.");
+        logger.info("\t--spill-dir <dir>\tWhere the external index writes its sorted runs. Defaults to the system temporary directory.");
+        logger.info("\t--run-size <records>\tThe number of files the external index sorts in memory at a time. Defaults to 100000.");
+        logger.info("\t--pipeline\t\tStart copying files while the rest of the library is still being hashed.");
+        logger.info("\t--copy-threads <threads>\tThe number of files to copy at once when deduplicating. Defaults to 1.");
+        logger.info("\t--copies-per-device <n>\tThe number of files to copy at once to any one disk. Defaults to the number of copy threads.");
+        logger.info("\t--transfer <mode>\tHow files are put in the output directory. Can be 'copy', 'move', 'hardlink', 'symlink' or 'clone', a copy-on-write copy where the file system supports it. Falls back to copying between disks. Defaults to copy.");
+        logger.info("\t--journal <file>\tRecord organized files in this file so the next organize run only handles new or changed files.");
+        logger.info("\t--clear-journal\t\tDiscard the organize journal before running.");
+        logger.info("\t--read-dates\t\tWhen organizing a file whose folder name has no date, use the date it was taken from its EXIF or movie metadata before its modification date.");
+        logger.info("\t--date-cache <file>\tKeep the dates read with --read-dates or dedupe-and-organize in this file so unchanged files aren't read again on the next run.");
+        logger.info("\t--checkpoint <file>\tRecord the groups copied by a deduplicate run in this file, and the checksums calculated in <file>.checksums unless --cache is given, so the run can be resumed.");
+        logger.info("\t--resume\t\tResume the deduplicate run recorded in the checkpoint file, skipping the files it already hashed and the groups it already copied.");
+        logger.info("\t--catalog <file>\tA catalog of the checksums of the files already in the output directory. Deduplicate only imports files that aren't in it, and adds the ones it imports.");
+        logger.info("\t--log-profile <profile>\tCan be 'default', which logs every file, or 'perf', which logs asynchronously and replaces the per-file lines with a progress line every 10 seconds.");
+        logger.info("\t--metrics-file <file>\tAppend the counters, queue depths and stage latencies to this file as a line of JSON at a fixed interval. They can also be read over JMX.");
+        logger.info("\t--metrics-interval <seconds>\tThe time between lines in the metrics file. Defaults to 10.");
         logger.info("\t-p\t\t\tPreview mode. Do not perform any file operations, only print what would be done.");
         logger.info("\t-h\t\t\tPrint this help message.");
     }
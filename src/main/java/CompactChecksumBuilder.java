@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Class that implements the IChecksumBuilder interface using a CompactChecksumIndex, so libraries with millions of
+ * files can be deduplicated with a small heap.
+ * <p>
+ * Pass the builder to DeduplicateFiles.copyAndDeduplicateFiles(IChecksumBuilder) to read the groups straight from
+ * the index. getChecksumMap() is supported, but it builds the full map and gives up the memory savings.
+ */
+public class CompactChecksumBuilder implements IChecksumBuilder {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(CompactChecksumBuilder.class);
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Function to calculate checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    // Created when the first checksum is known, since that gives the checksum length
+    private CompactChecksumIndex index;
+
+    // Only built if getChecksumMap is called
+    private Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap;
+
+    /**
+     * Constructor for the CompactChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     */
+    public CompactChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads) {
+        this(directories, checksumFunction, threads, null);
+    }
+
+    /**
+     * Constructor for the CompactChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public CompactChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                  FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.threads = threads;
+    }
+
+    /**
+     * Builds a map of checksums and their corresponding files from the index. This holds every file in memory as
+     * objects, so prefer forEachChecksumGroup.
+     *
+     * @return a Map where the key is a checksum (String) and the value is a List of SimpleEntry objects.
+     * Each SimpleEntry contains the directory name (String) and the corresponding File.
+     */
+    @Override
+    public Map<String, List<AbstractMap.SimpleEntry<String, File>>> getChecksumMap() {
+        if (checksumMap == null) {
+            checksumMap = new HashMap<>();
+            forEachChecksumGroup(checksumMap::put);
+        }
+        return checksumMap;
+    }
+
+    /**
+     * Calculates checksums for all files in the directories and adds them to the index.
+     *
+     * @throws IOException if an I/O error occurs during the checksum calculation.
+     */
+    @Override
+    public void calculateChecksums() throws IOException {
+        new OrderedHasher(this.checksumFunction, this.threads, this.fileWalker).hashDirectories(directories, this::handleFile);
+
+        if (index != null) {
+            logger.info("Checksum index holds {} files in {} groups, using about {} MB", index.size(), index.groupCount(),
+                    index.estimatedBytes() / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Passes each group of files that share a checksum to the consumer, one group at a time.
+     *
+     * @param consumer Receives the checksum (String) and the List of SimpleEntry objects with that checksum.
+     */
+    @Override
+    public void forEachChecksumGroup(BiConsumer<String, List<AbstractMap.SimpleEntry<String, File>>> consumer) {
+        if (checksumMap != null) {
+            checksumMap.forEach(consumer);
+        } else if (index != null) {
+            index.forEachGroup(consumer);
+        }
+    }
+
+    /**
+     * Adds the checksum of a file to the index.
+     *
+     * @param inputDirName The name of the directory being scanned.
+     * @param f The file the checksum was calculated for.
+     * @param checksumBytes The checksum, or empty if it couldn't be calculated.
+     */
+    private void handleFile(String inputDirName, File f, Optional<byte[]> checksumBytes) {
+        logger.debug("File: {}", f.getAbsolutePath());
+        if (checksumBytes.isPresent()) {
+            if (index == null) {
+                index = new CompactChecksumIndex(checksumBytes.get().length);
+            }
+            index.add(checksumBytes.get(), inputDirName, f);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.function.BiConsumer;
+
+/**
+ * A memory efficient index of files grouped by checksum, for libraries with too many files for a map of strings.
+ * <p>
+ * Checksums are stored as fixed-width binary keys in an open addressed table of primitive arrays. Each file is a
+ * record in parallel int and long arrays, linked to the previous file with the same checksum. File names are stored
+ * as UTF-8 in a shared byte arena and parent directories are interned, so a file costs a few dozen bytes instead of
+ * the several hundred taken by a String key, an ArrayList, a SimpleEntry and a File.
+ * <p>
+ * Files are only turned back into File objects one group at a time, when the groups are read.
+ */
+public class CompactChecksumIndex {
+
+    // Marks a free slot in the table
+    private static final int EMPTY = -1;
+
+    // Size of each block of the file name arena
+    private static final int NAME_CHUNK_SIZE = 1 << 20;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_RECORDS = 1024;
+
+    // Number of bytes in each checksum, and the number of longs used to store it
+    private final int digestLength;
+    private final int longsPerKey;
+
+    // Open addressed table of checksums, with the newest record of each group
+    private long[] keys;
+    private int[] newestRecord;
+    private int capacity;
+    private int groupCount;
+
+    // One record per file, each linked to the previous file with the same checksum
+    private int[] previousRecord;
+    private int[] recordParent;
+    private long[] recordName;
+    private int recordCount;
+
+    // Interned parent directories and the input directory each one was found in
+    private final List<String> parents = new ArrayList<>();
+    private int[] parentInputDir = new int[16];
+    private final Map<String, Integer> parentIds = new HashMap<>();
+    private final List<String> inputDirs = new ArrayList<>();
+    private final Map<String, Integer> inputDirIds = new HashMap<>();
+
+    // Files are usually added a directory at a time, so remember the last parent looked up
+    private String lastParent;
+    private int lastInputDir = EMPTY;
+    private int lastParentId = EMPTY;
+
+    // File names, stored as a two byte length followed by UTF-8 bytes
+    private final List<byte[]> nameChunks = new ArrayList<>();
+    private int nameChunkPosition = NAME_CHUNK_SIZE;
+
+    // Reused when looking up a checksum
+    private final long[] scratchKey;
+
+    /**
+     * Constructor for the CompactChecksumIndex class.
+     *
+     * @param digestLength The number of bytes in every checksum added to the index.
+     */
+    public CompactChecksumIndex(int digestLength) {
+        if (digestLength < 1) {
+            throw new IllegalArgumentException("Digest length must be at least 1");
+        }
+
+        this.digestLength = digestLength;
+        this.longsPerKey = (digestLength + Long.BYTES - 1) / Long.BYTES;
+        this.scratchKey = new long[longsPerKey];
+
+        this.capacity = INITIAL_CAPACITY;
+        this.keys = new long[capacity * longsPerKey];
+        this.newestRecord = new int[capacity];
+        Arrays.fill(this.newestRecord, EMPTY);
+
+        this.previousRecord = new int[INITIAL_RECORDS];
+        this.recordParent = new int[INITIAL_RECORDS];
+        this.recordName = new long[INITIAL_RECORDS];
+    }
+
+    /**
+     * Adds a file to the index.
+     *
+     * @param digest The checksum of the file.
+     * @param inputDir The input directory the file was found in.
+     * @param file The file.
+     */
+    public synchronized void add(byte[] digest, String inputDir, File file) {
+        if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a " + digestLength + " byte checksum, got " + digest.length);
+        }
+
+        toKey(digest, scratchKey);
+        var slot = findSlot(scratchKey);
+        var isNewGroup = newestRecord[slot] == EMPTY;
+        if (isNewGroup) {
+            System.arraycopy(scratchKey, 0, keys, slot * longsPerKey, longsPerKey);
+        }
+
+        if (recordCount == previousRecord.length) {
+            var newLength = recordCount + (recordCount >> 1);
+            previousRecord = Arrays.copyOf(previousRecord, newLength);
+            recordParent = Arrays.copyOf(recordParent, newLength);
+            recordName = Arrays.copyOf(recordName, newLength);
+        }
+
+        var record = recordCount++;
+        previousRecord[record] = newestRecord[slot];
+        recordParent[record] = internParent(inputDir, Objects.requireNonNullElse(file.getParent(), ""));
+        recordName[record] = storeName(file.getName());
+        newestRecord[slot] = record;
+
+        if (isNewGroup && ++groupCount * 4L > capacity * 3L) {
+            resize();
+        }
+    }
+
+    /**
+     * Returns the number of files in the index.
+     *
+     * @return The number of files.
+     */
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of distinct checksums in the index.
+     *
+     * @return The number of groups.
+     */
+    public synchronized int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Estimates the heap used by the index, not counting the interned directory names.
+     *
+     * @return The approximate size in bytes.
+     */
+    public synchronized long estimatedBytes() {
+        return keys.length * (long) Long.BYTES
+                + newestRecord.length * (long) Integer.BYTES
+                + previousRecord.length * (long) (Integer.BYTES + Integer.BYTES + Long.BYTES)
+                + nameChunks.size() * (long) NAME_CHUNK_SIZE;
+    }
+
+    /**
+     * Passes each group of files with the same checksum to the consumer. The files in a group are in the order they
+     * were added. The lists are built for each call and can be changed by the consumer.
+     *
+     * @param consumer Receives the checksum as a hexadecimal string and the files with that checksum.
+     */
+    public synchronized void forEachGroup(BiConsumer<String, List<SimpleEntry<String, File>>> consumer) {
+        var digest = new byte[digestLength];
+        for (int slot = 0; slot < capacity; slot++) {
+            if (newestRecord[slot] == EMPTY) {
+                continue;
+            }
+
+            var files = new ArrayList<SimpleEntry<String, File>>();
+            for (int record = newestRecord[slot]; record != EMPTY; record = previousRecord[record]) {
+                var parent = recordParent[record];
+                var file = new File(parents.get(parent), readName(recordName[record]));
+                files.add(new SimpleEntry<>(inputDirs.get(parentInputDir[parent]), file));
+            }
+            Collections.reverse(files);
+
+            fromKey(keys, slot * longsPerKey, digest);
+            consumer.accept(ChecksumBuilder.toHexString(digest), files);
+        }
+    }
+
+    /**
+     * Finds the slot holding a key, or the free slot where it belongs.
+     */
+    private int findSlot(long[] key) {
+        var mask = capacity - 1;
+        var slot = hash(key) & mask;
+        while (newestRecord[slot] != EMPTY && !keyEquals(keys, slot * longsPerKey, key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldNewestRecord = newestRecord;
+        var oldCapacity = capacity;
+
+        capacity = oldCapacity * 2;
+        keys = new long[capacity * longsPerKey];
+        newestRecord = new int[capacity];
+        Arrays.fill(newestRecord, EMPTY);
+
+        var key = new long[longsPerKey];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (oldNewestRecord[slot] != EMPTY) {
+                System.arraycopy(oldKeys, slot * longsPerKey, key, 0, longsPerKey);
+                var newSlot = findSlot(key);
+                System.arraycopy(key, 0, keys, newSlot * longsPerKey, longsPerKey);
+                newestRecord[newSlot] = oldNewestRecord[slot];
+            }
+        }
+    }
+
+    private int internParent(String inputDir, String parent) {
+        var inputDirId = inputDirIds.computeIfAbsent(inputDir, k -> {
+            inputDirs.add(k);
+            return inputDirs.size() - 1;
+        });
+        if (inputDirId == lastInputDir && parent.equals(lastParent)) {
+            return lastParentId;
+        }
+
+        var parentId = parentIds.computeIfAbsent(inputDirId + File.pathSeparator + parent, k -> {
+            if (parents.size() == parentInputDir.length) {
+                parentInputDir = Arrays.copyOf(parentInputDir, parents.size() * 2);
+            }
+            parentInputDir[parents.size()] = inputDirId;
+            parents.add(parent);
+            return parents.size() - 1;
+        });
+
+        lastInputDir = inputDirId;
+        lastParent = parent;
+        lastParentId = parentId;
+        return parentId;
+    }
+
+    private long storeName(String name) {
+        var bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("File name is too long: " + name);
+        }
+
+        if (nameChunkPosition + 2 + bytes.length > NAME_CHUNK_SIZE) {
+            nameChunks.add(new byte[NAME_CHUNK_SIZE]);
+            nameChunkPosition = 0;
+        }
+
+        var chunk = nameChunks.get(nameChunks.size() - 1);
+        var offset = (long) (nameChunks.size() - 1) * NAME_CHUNK_SIZE + nameChunkPosition;
+        chunk[nameChunkPosition] = (byte) (bytes.length >>> 8);
+        chunk[nameChunkPosition + 1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, chunk, nameChunkPosition + 2, bytes.length);
+        nameChunkPosition += 2 + bytes.length;
+        return offset;
+    }
+
+    private String readName(long offset) {
+        var chunk = nameChunks.get((int) (offset / NAME_CHUNK_SIZE));
+        var position = (int) (offset % NAME_CHUNK_SIZE);
+        var length = ((chunk[position] & 0xff) << 8) | (chunk[position + 1] & 0xff);
+        return new String(chunk, position + 2, length, StandardCharsets.UTF_8);
+    }
+
+    private int hash(long[] key) {
+        // Checksums are already well distributed, this only folds the key down to an int
+        var h = key[0];
+        for (int i = 1; i < key.length; i++) {
+            h = h * 31 + key[i];
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static boolean keyEquals(long[] keys, int offset, long[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (keys[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void toKey(byte[] digest, long[] key) {
+        Arrays.fill(key, 0);
+        for (int i = 0; i < digest.length; i++) {
+            key[i / Long.BYTES] |= (digest[i] & 0xffL) << (8 * (Long.BYTES - 1 - i % Long.BYTES));
+        }
+    }
+
+    private void fromKey(long[] keys, int offset, byte[] digest) {
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) (keys[offset + i / Long.BYTES] >>> (8 * (Long.BYTES - 1 - i % Long.BYTES)));
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies files on a bounded pool of worker threads so several copies are in flight at once, which keeps SSDs and
+ * network shares busy. The number of copies running against any one destination file system can be limited
+ * separately from the pool size, so a slow device doesn't take every worker.
+ * <p>
+ * copy(String, String, Runnable) is used for copying by DeduplicateFiles. It returns once the copy has been
+ * queued, and waits if too many copies are already queued or the destination file system has no free slot, so the
+ * workers only ever run copies that can start. Failed copies are collected rather than stopping
+ * the run, and close() waits for the queued copies and logs the throughput.
+ */
+public class CopyExecutor implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(CopyExecutor.class);
+
+    // Number of copies each worker may have queued before copy() waits
+    private static final int QUEUED_PER_WORKER = 16;
+
+    private final ExecutorService executor;
+    private final Semaphore queuedCopies;
+
+    // Number of copies that may run against one destination file system at a time
+    private final int copiesPerDevice;
+
+    // How each file is put in its destination
+    private final TransferMode transferMode;
+
+    // The file system of each destination directory, and the copy limit for each file system
+    private final Map<Path, FileStore> directoryStores = new ConcurrentHashMap<>();
+    private final Map<FileStore, Semaphore> deviceLimits = new ConcurrentHashMap<>();
+
+    private final List<CopyFailure> failures = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong copiedFiles = new AtomicLong();
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final long startTime = System.nanoTime();
+
+    /**
+     * A copy that failed, and why.
+     */
+    public record CopyFailure(String source, String destination, IOException error) {
+    }
+
+    /**
+     * Constructor for the CopyExecutor class.
+     *
+     * @param threads Number of copies that may run at once.
+     * @param copiesPerDevice Number of copies that may run at once against one destination file system.
+     */
+    public CopyExecutor(int threads, int copiesPerDevice) {
+        this(threads, copiesPerDevice, TransferMode.COPY);
+    }
+
+    /**
+     * Constructor for the CopyExecutor class.
+     *
+     * @param threads Number of copies that may run at once.
+     * @param copiesPerDevice Number of copies that may run at once against one destination file system.
+     * @param transferMode How each file is put in its destination.
+     */
+    public CopyExecutor(int threads, int copiesPerDevice, TransferMode transferMode) {
+        if (threads < 1 || copiesPerDevice < 1) {
+            throw new IllegalArgumentException("Copy concurrency must be at least 1");
+        }
+
+        var queueSize = threads * QUEUED_PER_WORKER;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.queuedCopies = new Semaphore(queueSize);
+        Metrics.registerQueue("copy", () -> queueSize - queuedCopies.availablePermits());
+        this.copiesPerDevice = copiesPerDevice;
+        this.transferMode = transferMode;
+    }
+
+    /**
+     * Queues a copy, waiting if too many copies are already queued. The destination directory must exist.
+     *
+     * @param path The file to copy.
+     * @param finalPath Where to copy it to.
+     */
+    public void copy(String path, String finalPath) {
+        copy(path, finalPath, null);
+    }
+
+    /**
+     * Queues a copy, waiting if too many copies are already queued. The destination directory must exist.
+     *
+     * @param path The file to copy.
+     * @param finalPath Where to copy it to.
+     * @param onCopied Run on the worker thread once the file has been copied, or null. Not run if the copy fails.
+     */
+    public void copy(String path, String finalPath, Runnable onCopied) {
+        try {
+            queuedCopies.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.add(new CopyFailure(path, finalPath, new IOException("Interrupted while queueing copy", e)));
+            return;
+        }
+
+        // Wait here for the destination file system to have a free slot, so no worker is held up by a busy device
+        Semaphore deviceLimit;
+        try {
+            deviceLimit = deviceLimitFor(Path.of(finalPath));
+            deviceLimit.acquire();
+        } catch (IOException e) {
+            queuedCopies.release();
+            logger.error("Failed to copy: {} to {}: {}", path, finalPath, e.getMessage());
+            failures.add(new CopyFailure(path, finalPath, e));
+            return;
+        } catch (InterruptedException e) {
+            queuedCopies.release();
+            Thread.currentThread().interrupt();
+            failures.add(new CopyFailure(path, finalPath, new IOException("Interrupted while waiting to copy", e)));
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    copyFile(path, finalPath, onCopied);
+                } finally {
+                    deviceLimit.release();
+                    queuedCopies.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            deviceLimit.release();
+            queuedCopies.release();
+            failures.add(new CopyFailure(path, finalPath, new IOException("Copy executor is closed", e)));
+        }
+    }
+
+    /**
+     * Waits for the queued copies to finish and logs how many files and bytes were copied, how fast, and which
+     * copies failed.
+     *
+     * @throws IOException if the thread was interrupted while waiting.
+     */
+    @Override
+    public void close() throws IOException {
+        Metrics.unregisterQueue("copy");
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for copies to finish", e);
+        }
+
+        var seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        logger.info("Copied {} files ({} MB) in {} s, {} MB/s", copiedFiles.get(), String.format("%.1f", copiedBytes.get() / 1e6),
+                String.format("%.1f", seconds), String.format("%.1f", copiedBytes.get() / 1e6 / seconds));
+        if (!failures.isEmpty()) {
+            logger.error("{} files could not be copied:", failures.size());
+            for (var failure : getFailures()) {
+                logger.error("\t{} to {}: {}", failure.source(), failure.destination(), failure.error().getMessage());
+            }
+        }
+    }
+
+    public long getCopiedFiles() {
+        return copiedFiles.get();
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    public List<CopyFailure> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /**
+     * Copies a file. The caller holds a slot on the destination file system.
+     *
+     * @param path The file to copy.
+     * @param finalPath Where to copy it to.
+     * @param onCopied Run once the file has been copied, or null.
+     */
+    private void copyFile(String path, String finalPath, Runnable onCopied) {
+        var destination = Path.of(finalPath);
+        try {
+            transferMode.transfer(Path.of(path), destination);
+            copiedFiles.incrementAndGet();
+            copiedBytes.addAndGet(Files.size(destination));
+            if (onCopied != null) {
+                onCopied.run();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to copy: {} to {}: {}", path, finalPath, e.getMessage());
+            failures.add(new CopyFailure(path, finalPath, e));
+        }
+    }
+
+    /**
+     * Finds the copy limit for the file system the destination is on. Looking up a file system is slow, so it's
+     * done once per destination directory.
+     *
+     * @param destination Where a file is being copied to.
+     * @return The semaphore limiting copies to that file system.
+     * @throws IOException if the file system couldn't be found.
+     */
+    private Semaphore deviceLimitFor(Path destination) throws IOException {
+        var directory = destination.toAbsolutePath().getParent();
+        var store = directoryStores.get(directory);
+        if (store == null) {
+            store = Files.getFileStore(directory);
+            directoryStores.put(directory, store);
+        }
+        return deviceLimits.computeIfAbsent(store, s -> new Semaphore(copiesPerDevice));
+    }
+}
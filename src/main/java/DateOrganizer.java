@@ -32,11 +32,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.Random;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.BiConsumer;
-import java.util.function.BiFunction;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 /**
@@ -47,22 +47,40 @@ public class DateOrganizer implements IFileOrganizer {
 
 
     public enum DateFormat {
-        YYYY_MM_DD("([0-9]{4})-([0-9]{2})-([0-9]{2}) ([,'a-zA-Z0-9 ]*)", 3, 2, 1),
-        DD_MM_YYYY("([0-9]{2})-([0-9]{2})-([0-9]{4}) ([,'a-zA-Z0-9 ]*)", 1, 2, 3);
+        YYYY_MM_DD("([0-9]{4})-([0-9]{2})-([0-9]{2}) ([,'a-zA-Z0-9 ]*)", "{yyyy}-{MM}-{dd} {desc}", "{yyyy}-{MM}-{dd}[ {desc}]", 3, 2, 1),
+        DD_MM_YYYY("([0-9]{2})-([0-9]{2})-([0-9]{4}) ([,'a-zA-Z0-9 ]*)", "{dd}-{MM}-{yyyy} {desc}", "{dd}-{MM}-{yyyy}[ {desc}]", 1, 2, 3);
 
         private final Pattern pattern;
+        // The same folder names as the pattern, for DatePathMatcher
+        private final String inputPattern;
+        // The layout dated folders are given in the destination directory
+        private final String template;
         private final int yearGroup;
         private final int monthGroup;
         private final int dayGroup;
         private final int descriptionGroup = 4;
 
-        DateFormat(String pattern, int dayGroup, int monthGroup, int yearGroup) {
+        DateFormat(String pattern, String inputPattern, String template, int dayGroup, int monthGroup, int yearGroup) {
             this.pattern = Pattern.compile(pattern);
+            this.inputPattern = inputPattern;
+            this.template = template;
             this.dayGroup = dayGroup;
             this.monthGroup = monthGroup;
             this.yearGroup = yearGroup;
         }
 
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        public String getInputPattern() {
+            return inputPattern;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
         public int getYearGroup() {
             return yearGroup;
         }
@@ -83,6 +101,9 @@ public class DateOrganizer implements IFileOrganizer {
     // Logger for logging information and error messages
     private static final Logger logger = LogManager.getLogger(DateOrganizer.class);
 
+    // Layout of the output directories for dates that don't come from a folder name, when no layout is given
+    private static final String DEFAULT_DATE_TEMPLATE = "{yyyy}-{MM}-{dd}";
+
     // Destination directory for organized files
     private final String destinationDirectory;
 
@@ -95,10 +116,31 @@ public class DateOrganizer implements IFileOrganizer {
     // For supporting preview mode
     private final BiConsumer<File, String> doFileCopy;
 
-    private BiFunction<File, Matcher, String> dateFormatter;
+    // Finds the dated folder in the path of each file
+    private final DatePathMatcher datePathMatcher;
+
+    // Renders the output directory for dates read from the file or its modification time
+    private final FolderTemplate dateTemplate;
 
     private final DateFormat dateFormat;
 
+    // Hands out destination paths, shared with other organizers writing to the same destination
+    private final DestinationAllocator destinationAllocator;
+
+    // How files are put in the destination directory
+    private final TransferMode transferMode;
+
+    // Files placed by earlier runs, or null to handle every file
+    private final OrganizeJournal journal;
+
+    private final boolean previewMode;
+
+    // Finds the files in the input directory
+    private final FileWalker fileWalker;
+
+    // Reads the date a file was taken from its metadata, or null to go by the modification date
+    private final Function<File, Optional<LocalDateTime>> captureDates;
+
     /**
      * Constructor for the DateOrganizer class.
      *
@@ -106,6 +148,34 @@ public class DateOrganizer implements IFileOrganizer {
      * @param destinationDirectory Directory where the organized files will be placed.
      */
     public DateOrganizer(String inputDirectory, String destinationDirectory, DateFormat dateformat, boolean previewMode) {
+        this(inputDirectory, destinationDirectory, dateformat, previewMode, OrganizeOptions.defaults());
+    }
+
+    /**
+     * Constructor for the DateOrganizer class with optional settings such as the transfer mode, a journal or a
+     * layout template.
+     *
+     * @param inputDirectory Directory containing files to be organized.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param options The optional settings of the run.
+     * @throws IllegalArgumentException if an input pattern or the layout isn't valid.
+     */
+    public DateOrganizer(String inputDirectory, String destinationDirectory, DateFormat dateformat, boolean previewMode,
+                         OrganizeOptions options) {
+        this(inputDirectory, destinationDirectory, dateformat, previewMode, options,
+                new DestinationAllocator(options.getChecksumFunction()));
+    }
+
+    /**
+     * Constructor for the DateOrganizer class that shares destination paths and directories with other organizers.
+     *
+     * @param inputDirectory Directory containing files to be organized.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param options The optional settings of the run. Its checksum function is left to the allocator.
+     * @param destinationAllocator Hands out destination paths and creates destination directories.
+     */
+    DateOrganizer(String inputDirectory, String destinationDirectory, DateFormat dateformat, boolean previewMode,
+                  OrganizeOptions options, DestinationAllocator destinationAllocator) {
 
         // Check that the inputDirectory and destinationDirectory are not null or empty
         if (inputDirectory == null || inputDirectory.isEmpty() || destinationDirectory == null || destinationDirectory.isEmpty()) {
@@ -115,6 +185,12 @@ public class DateOrganizer implements IFileOrganizer {
         this.inputDirectory = inputDirectory;
         this.destinationDirectory = destinationDirectory;
         this.dateFormat = dateformat;
+        this.destinationAllocator = destinationAllocator;
+        this.transferMode = options.getTransferMode();
+        this.journal = options.getJournal();
+        this.previewMode = previewMode;
+        this.fileWalker = options.getFileWalker();
+        this.captureDates = options.getCaptureDates();
 
         if (previewMode) {
             logger.info("Running in preview mode");
@@ -125,14 +201,13 @@ public class DateOrganizer implements IFileOrganizer {
             this.doFileCopy = this::copyFiles;
         }
 
-        switch(dateformat) {
-            case YYYY_MM_DD:
-                this.dateFormatter = this::handleDateFormatMatchYYYYMMDD;
-                break;
-            case DD_MM_YYYY:
-                this.dateFormatter = this::handleDateFormatMatchDDMMYYYY;
-                break;
-        }
+        // Compile the patterns and templates once, so no file needs any parsing
+        var layout = options.getLayout();
+        var inputPatterns = options.getInputPatterns();
+        var folderTemplate = FolderTemplate.compile(layout != null ? layout : dateformat.getTemplate());
+        this.dateTemplate = layout != null ? folderTemplate : FolderTemplate.compile(DEFAULT_DATE_TEMPLATE);
+        this.datePathMatcher = new DatePathMatcher(inputPatterns == null || inputPatterns.isEmpty() ? List.of(dateformat.getInputPattern()) : inputPatterns,
+                folderTemplate, destinationDirectory);
     }
 
     /**
@@ -142,82 +217,117 @@ public class DateOrganizer implements IFileOrganizer {
      */
     @Override
     public void organizeFiles() throws IOException {
+        organizeFiles(null);
+    }
+
+    /**
+     * Organizes files based on their date, counting each file handled.
+     *
+     * @param progress Counts the files handled. If null, nothing is counted.
+     * @throws IOException if an I/O error occurs during the file organization.
+     */
+    public void organizeFiles(ProgressReporter progress) throws IOException {
 
         // Convert directory name to a path object
         var dir = Paths.get(this.inputDirectory);
 
         // Iterate over each file in the input directory
         // and determine where to copy it
-        Files.walk(dir).forEach(path -> handleFile(path.toFile()));
+        if (progress == null) {
+            this.fileWalker.walk(dir, this::handleFile);
+        } else {
+            this.fileWalker.walk(dir, file -> {
+                // The size is read before a move could take the file away
+                var size = file.length();
+                handleFile(file);
+                progress.fileDone(size);
+            });
+        }
 
     }
 
     /**
      * Handles each file in the directory. If the file is not a directory, it determines the output path for the file.
+     * Safe to call from several threads at once.
      *
      * @param file The file to be handled.
      */
-    private void handleFile(File file) {
+    void handleFile(File file) {
 
         if (!file.isDirectory()) {
-            logger.info("Determining output path for file: {}", file.getPath());
-
-            // First check if the path matches the expected date format,
-            // otherwise use the file modification date
-            var path = Paths.get(file.getPath()).getParent().toString();
-
-            String outputDir;
-            var matcher = this.dateFormat.pattern.matcher(path);
-            if (matcher.find()) {
-                outputDir = this.dateFormatter.apply(file, matcher);
-            } else {
-                // Path didn't work, look at the file modification date
-                logger.info("Using file modification date");
-                outputDir = handleFileModificationDate(file);
+            if (this.journal != null && this.journal.isOrganized(file)) {
+                logger.debug("Already organized: {}", file.getPath());
+                return;
             }
 
+            logger.debug("Determining output path for file: {}", file.getPath());
 
-            // Create the output directories, taking preview mode into account
-            this.doCreateDirectories.accept(outputDir);
+            var outputDir = resolveOutputDirectory(file);
 
-            // Add the file name to the output directory
-            var finalFinalPath = outputDir + File.separator + file.getName();
 
-            if ((new File(finalFinalPath)).exists()) {
-                logger.info("File already exists: {}", finalFinalPath);
-                finalFinalPath = handleExistingFile(file, outputDir);
+            // Create the output directories, taking preview mode into account
+            this.destinationAllocator.ensureDirectory(outputDir, this.doCreateDirectories);
+
+            // Add the file name to the output directory, numbering it if a different file already has that name
+            var allocation = this.destinationAllocator.allocate(outputDir, file);
+            var finalFinalPath = allocation.path();
+            if (allocation.identical()) {
+                logger.debug("Skipping file {}, identical to: {}", file.getName(), finalFinalPath);
+                if (this.journal != null && !this.previewMode) {
+                    this.journal.record(file, file.length(), file.lastModified(), finalFinalPath, null);
+                }
+                return;
             }
 
-            logger.info("Copying file {} to: {}", file.getName(), finalFinalPath);
+            logger.debug("Copying file {} to: {}", file.getName(), finalFinalPath);
 
             // Copy the file, taking preview mode into account
             this.doFileCopy.accept(file, finalFinalPath);
         }
     }
 
-    private void copyFiles(File file, String finalFinalPath) {
-        try {
-            Files.copy(file.toPath(), Path.of(finalFinalPath));
-        } catch (IOException e) {
-            logger.error("Failed to copy: {} to {}: {}", file.getPath(), finalFinalPath, e.getMessage());
-        }
-    }
-
     /**
-     * Handles the case when the file already exists in the destination directory.
-     * Adds an epoch timestamp to the front of the filename.
+     * Determines the output directory for a file. The date format is looked for in the path of the file first,
+     * then the date the file was taken, and otherwise the file modification date is used.
      *
      * @param file The file to be handled.
-     * @param outputDir The output directory.
-     * @return The final path for the file.
+     * @return The output directory for the file.
      */
-    private String handleExistingFile(File file, String outputDir) {
-        String finalFinalPath;
-        var rnd = new Random();
+    String resolveOutputDirectory(File file) {
+        // Files in the same directory share the result, so only the first one scans the path
+        var datedFolder = this.datePathMatcher.outputDirectory(file.getPath());
+        if (datedFolder != null) {
+            logger.debug("Using matching date format, output: {}", datedFolder);
+            return datedFolder;
+        }
+
+        // Path didn't work, look for the date the file was taken
+        if (this.captureDates != null) {
+            var captured = this.captureDates.apply(file);
+            if (captured.isPresent()) {
+                logger.debug("Using capture date");
+                return handleDate(file, captured.get());
+            }
+        }
+
+        // Nothing in the file either, look at the file modification date
+        logger.debug("Using file modification date");
+        return handleFileModificationDate(file);
+    }
 
-        // If the file already exists, add an epoch timestamp and random number to the front of the filename
-        finalFinalPath = outputDir + File.separator + System.currentTimeMillis() + rnd.nextInt(Integer.MAX_VALUE) + "-" + file.getName();
-        return finalFinalPath;
+    private void copyFiles(File file, String finalFinalPath) {
+        try {
+            // Read the attributes first, a move leaves nothing to read afterwards
+            var size = file.length();
+            var lastModified = file.lastModified();
+            this.transferMode.transfer(file.toPath(), Path.of(finalFinalPath));
+            if (this.journal != null) {
+                this.journal.record(file, size, lastModified, finalFinalPath, null);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to copy: {} to {}: {}", file.getPath(), finalFinalPath, e.getMessage());
+            this.destinationAllocator.release(finalFinalPath);
+        }
     }
 
     /**
@@ -226,79 +336,14 @@ public class DateOrganizer implements IFileOrganizer {
      * @param finalPath The final output path where the file will be copied to.
      */
     private void createDirectories(String finalPath) {
+        var begin = System.nanoTime();
         try {
             Files.createDirectories(Path.of(finalPath));
         } catch (IOException e) {
         }
+        Metrics.record(Metrics.Stage.MKDIR, begin);
     }
 
-    /**
-     * Handles the case when the file path matches the date format.
-     * Constructs the output directory based on the matched date.
-     *
-     * @param f The file to be handled.
-     * @param matcher The matcher for the date format.
-     * @return The output directory for the file.
-     */
-    private String handleDateFormatMatchYYYYMMDD(File f, Matcher matcher) {
-
-        logger.info("Using matching date format to make output path");
-        String year = matcher.group(this.dateFormat.getYearGroup());
-        String month = matcher.group(this.dateFormat.getMonthGroup());
-        String day = matcher.group(this.dateFormat.getDayGroup());
-        String description = matcher.group(this.dateFormat.getDescriptionGroup());
-
-        // Create subfolder in output directory named Year-Month-Day Description
-        // and copy file
-        StringBuilder folderName = new StringBuilder();
-        folderName.append(destinationDirectory);
-        folderName.append(File.separator);
-        folderName.append(year);
-        folderName.append("-");
-        folderName.append(month);
-        folderName.append("-");
-        folderName.append(day);
-        folderName.append(" ");
-        folderName.append(description);
-
-        logger.info("Output: {}{}{}", folderName, File.separator, f.getName());
-
-        return folderName.toString();
-    }
-
-    /**
-     * Handles the case when the file path matches the date format.
-     * Constructs the output directory based on the matched date.
-     *
-     * @param f The file to be handled.
-     * @param matcher The matcher for the date format.
-     * @return The output directory for the file.
-     */
-    private String handleDateFormatMatchDDMMYYYY(File f, Matcher matcher) {
-
-        logger.info("Using matching date format to make output path");
-        String year = matcher.group(this.dateFormat.getYearGroup());
-        String month = matcher.group(this.dateFormat.getMonthGroup());
-        String day = matcher.group(this.dateFormat.getDayGroup());
-        String description = matcher.group(this.dateFormat.getDescriptionGroup());
-
-        // Create subfolder in output directory named Year-Month-Day Description
-        // and copy file
-        StringBuilder folderName = new StringBuilder();
-        folderName.append(destinationDirectory);
-        folderName.append(File.separator);
-        folderName.append(day);
-        folderName.append("-");
-        folderName.append(month);
-        folderName.append("-");
-        folderName.append(year);
-        folderName.append(" ");
-        folderName.append(description);
-
-        logger.info("Output: {}{}{}", folderName, File.separator, f.getName());
-
-        return folderName.toString();
-    }
     /**
      * Handles the case when the file path does not match the date format.
      * Constructs the output directory based on the file modification date.
@@ -308,22 +353,27 @@ public class DateOrganizer implements IFileOrganizer {
      */
     private String handleFileModificationDate(File f) {
 
-        logger.info("Using modification time to make output path");
+        logger.debug("Using modification time to make output path");
 
         long modified = f.lastModified();
         var date = LocalDateTime.ofEpochSecond(modified/1000, 0, ZoneOffset.UTC);
 
-        var folderName = new StringBuilder();
-        folderName.append(destinationDirectory);
-        folderName.append(File.separator);
-        folderName.append(date.getYear());
-        folderName.append("-");
-        folderName.append(String.format("%02d", date.getMonthValue()));
-        folderName.append("-");
-        folderName.append(String.format("%02d", date.getDayOfMonth()));
+        return handleDate(f, date);
+    }
+
+    /**
+     * Constructs the output directory for a file from a date.
+     *
+     * @param f The file to be handled.
+     * @param date The date the file belongs to.
+     * @return The output directory for the file.
+     */
+    private String handleDate(File f, LocalDateTime date) {
+
+        var folderName = this.dateTemplate.render(destinationDirectory, date.getYear(), date.getMonthValue(), date.getDayOfMonth(), null);
 
-        logger.info("Output: {}{}{}", folderName, File.separator, f.getName());
+        logger.debug("Output: {}{}{}", folderName, File.separator, f.getName());
 
-        return folderName.toString();
+        return folderName;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the dated folder in the path of a file, like "2024-01-10 Birthday", and works out the output directory it
+ * maps to.
+ * <p>
+ * Folder names are described by input patterns such as "{yyyy}-{MM}-{dd} {desc}". Inside braces, yyyy, MM and dd are
+ * the digits of the year, month and day, and {desc} at the end takes the description that follows, made of letters,
+ * digits, spaces, commas and apostrophes. Anything else has to be there as written. The patterns are compiled
+ * together, and the path is scanned once for the first place any of them matches, the same text a regular
+ * expression would find.
+ * <p>
+ * The result is kept for each parent directory, so the files after the first one in a directory cost a lookup. The
+ * most recent directory is checked first without taking its name out of the file path, as files arrive from the
+ * walk one directory at a time. Safe to use from several threads at once.
+ */
+final class DatePathMatcher {
+
+    // Kept for parent directories without a date, as the map can't hold null
+    private static final String NO_DATE = "";
+
+    // Marks the characters of a compiled pattern that are digits of a date field, rather than literal characters
+    private static final byte LITERAL = 0;
+    private static final byte YEAR = 1;
+    private static final byte MONTH = 2;
+    private static final byte DAY = 3;
+
+    /**
+     * An input pattern compiled to one slot for each character it matches.
+     */
+    private record InputPattern(char[] chars, byte[] fields, boolean description) {
+
+        /**
+         * Matches the pattern at a position in a path.
+         *
+         * @param values Receives the year, month, day, and the end of the match.
+         * @return True if the pattern matches there.
+         */
+        boolean matchAt(CharSequence path, int start, int[] values) {
+            if (start + chars.length > path.length()) {
+                return false;
+            }
+            values[YEAR] = values[MONTH] = values[DAY] = 0;
+            for (int i = 0; i < chars.length; i++) {
+                var c = path.charAt(start + i);
+                var field = fields[i];
+                if (field == LITERAL) {
+                    if (c != chars[i]) {
+                        return false;
+                    }
+                } else if (c >= '0' && c <= '9') {
+                    values[field] = values[field] * 10 + (c - '0');
+                } else {
+                    return false;
+                }
+            }
+
+            var end = start + chars.length;
+            if (description) {
+                while (end < path.length() && isDescriptionChar(path.charAt(end))) {
+                    end++;
+                }
+            }
+            values[0] = end;
+            return true;
+        }
+    }
+
+    // The parent directory looked up last, and its output directory
+    private record Entry(String parent, String outputDirectory) {
+    }
+
+    private final InputPattern[] patterns;
+
+    // The characters a match can start with, and whether one can start with a character outside this range
+    private final boolean[] startChars = new boolean[128];
+    private boolean startsWithOtherChars;
+
+    // Renders the output directory from the date found
+    private final FolderTemplate template;
+
+    // Directory the output directories are created in
+    private final String destinationDirectory;
+
+    // Output directory for each parent directory seen so far, or NO_DATE
+    private final Map<String, String> outputDirectories = new ConcurrentHashMap<>();
+
+    private volatile Entry last;
+
+    /**
+     * Constructor for the DatePathMatcher class that finds the folder names of a date format and keeps their layout.
+     *
+     * @param dateFormat The format of the dates in folder names.
+     * @param destinationDirectory Directory the output directories are created in.
+     */
+    DatePathMatcher(DateOrganizer.DateFormat dateFormat, String destinationDirectory) {
+        this(List.of(dateFormat.getInputPattern()), FolderTemplate.compile(dateFormat.getTemplate()), destinationDirectory);
+    }
+
+    /**
+     * Constructor for the DatePathMatcher class.
+     *
+     * @param inputPatterns The patterns of dated folder names. Where several match at the same place, the first wins.
+     * @param template Renders the output directory from the date found.
+     * @param destinationDirectory Directory the output directories are created in.
+     * @throws IllegalArgumentException if there are no patterns, or one isn't valid.
+     */
+    DatePathMatcher(List<String> inputPatterns, FolderTemplate template, String destinationDirectory) {
+        if (inputPatterns == null || inputPatterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one input pattern must be provided");
+        }
+
+        this.patterns = inputPatterns.stream().map(DatePathMatcher::compile).toArray(InputPattern[]::new);
+        this.template = template;
+        this.destinationDirectory = destinationDirectory;
+
+        for (var pattern : patterns) {
+            if (pattern.fields()[0] != LITERAL) {
+                for (char c = '0'; c <= '9'; c++) {
+                    startChars[c] = true;
+                }
+            } else if (pattern.chars()[0] < startChars.length) {
+                startChars[pattern.chars()[0]] = true;
+            } else {
+                startsWithOtherChars = true;
+            }
+        }
+    }
+
+    /**
+     * Compiles an input pattern.
+     *
+     * @param pattern The pattern, such as "{yyyy}-{MM}-{dd} {desc}".
+     * @return The compiled pattern.
+     * @throws IllegalArgumentException if the pattern isn't valid, or doesn't have a whole year, month and day.
+     */
+    private static InputPattern compile(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Input pattern must not be empty");
+        }
+
+        var chars = new StringBuilder();
+        var fields = new StringBuilder();
+        var description = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            var c = pattern.charAt(i);
+            if (description) {
+                throw new IllegalArgumentException("{desc} must come last in input pattern: " + pattern);
+            }
+            if (c == '}') {
+                throw new IllegalArgumentException("Unmatched '}' in input pattern: " + pattern);
+            }
+            if (c != '{') {
+                chars.append(c);
+                fields.append((char) LITERAL);
+                continue;
+            }
+
+            var close = pattern.indexOf('}', i);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed '{' in input pattern: " + pattern);
+            }
+            var field = pattern.substring(i + 1, close);
+            i = close;
+            if (field.equals("desc")) {
+                description = true;
+                continue;
+            }
+            for (int j = 0; j < field.length(); j++) {
+                var f = field.charAt(j);
+                var kind = switch (f) {
+                    case 'y' -> YEAR;
+                    case 'M' -> MONTH;
+                    case 'd' -> DAY;
+                    default -> {
+                        if (Character.isLetter(f)) {
+                            throw new IllegalArgumentException("Unknown field '" + f + "' in input pattern: " + pattern);
+                        }
+                        yield LITERAL;
+                    }
+                };
+                chars.append(f);
+                fields.append((char) kind);
+            }
+        }
+
+        var counts = new int[4];
+        fields.chars().forEach(f -> counts[f]++);
+        if (counts[YEAR] != 4 || counts[MONTH] != 2 || counts[DAY] != 2) {
+            throw new IllegalArgumentException("Input pattern needs a yyyy, MM and dd: " + pattern);
+        }
+
+        var kinds = new byte[fields.length()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = (byte) fields.charAt(i);
+        }
+        return new InputPattern(chars.toString().toCharArray(), kinds, description);
+    }
+
+    /**
+     * Returns the output directory for a file whose path has a dated folder in it.
+     *
+     * @param filePath The path of the file.
+     * @return The output directory, or null if the parent directory of the file has no date in it.
+     */
+    String outputDirectory(String filePath) {
+        var parentLength = filePath.lastIndexOf(File.separatorChar);
+        if (parentLength < 0) {
+            return null;
+        }
+
+        var entry = this.last;
+        if (entry == null || entry.parent().length() != parentLength || !filePath.startsWith(entry.parent())) {
+            var parent = filePath.substring(0, parentLength);
+            entry = new Entry(parent, outputDirectories.computeIfAbsent(parent, this::resolve));
+            this.last = entry;
+        }
+
+        var outputDirectory = entry.outputDirectory();
+        return outputDirectory.equals(NO_DATE) ? null : outputDirectory;
+    }
+
+    /**
+     * Works out the output directory for a parent directory.
+     *
+     * @param parent The path of the parent directory.
+     * @return The output directory, or NO_DATE.
+     */
+    private String resolve(String parent) {
+        // The end of the match, then the year, month and day
+        var values = new int[4];
+        for (int start = 0; start < parent.length(); start++) {
+            var c = parent.charAt(start);
+            if (c < startChars.length ? !startChars[c] : !startsWithOtherChars) {
+                continue;
+            }
+            for (var pattern : patterns) {
+                if (pattern.matchAt(parent, start, values)) {
+                    var description = pattern.description() ? parent.substring(start + pattern.chars().length, values[0]) : null;
+                    return template.render(destinationDirectory, values[YEAR], values[MONTH], values[DAY], description);
+                }
+            }
+        }
+        return NO_DATE;
+    }
+
+    private static boolean isDescriptionChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == ' ' || c == ',' || c == '\'';
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records which groups of identical files a deduplicate run has copied, so a run that dies part way through can be
+ * resumed without copying them again. The checksums calculated so far are kept by a ChecksumCache, so together
+ * they let a resumed run skip both the hashing and the copying it had already done.
+ * <p>
+ * Each entry records the key of a group and the absolute path, size and last modified time of the file that was
+ * copied for it. Entries are appended to a RecordLog once a copy has finished, and written to disk every
+ * FLUSH_INTERVAL entries or FLUSH_MILLIS, whichever comes first. The header names the output directory and checksum
+ * algorithm, so a checkpoint written for a different run is discarded.
+ */
+public class DeduplicateCheckpoint implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(DeduplicateCheckpoint.class);
+
+    // Number of new entries after which they're written to disk
+    private static final int FLUSH_INTERVAL = 100;
+
+    // Time after which new entries are written to disk, so slow copies of large files are checkpointed too
+    private static final long FLUSH_MILLIS = 10_000;
+
+    // The file backing the checkpoint
+    private final RecordLog log;
+
+    // The copied file for each group, keyed by the group key
+    private final Map<String, CopiedFile> copiedGroups = new ConcurrentHashMap<>();
+
+    // True if entries were loaded from an earlier run
+    private final boolean resumed;
+
+    // Number of entries appended since the last flush, and when the last flush was
+    private final AtomicLong unflushedEntries = new AtomicLong();
+    private final AtomicLong lastFlush = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong skippedGroups = new AtomicLong();
+
+    /**
+     * Constructor for the DeduplicateCheckpoint class. Loads any entries left by an earlier run.
+     *
+     * @param file The file backing the checkpoint. It's created if it doesn't exist.
+     * @param outputDirectory The directory the files are copied to.
+     * @param algorithm The name of the checksum algorithm the group keys are made with.
+     * @throws IOException if an I/O error occurs while reading the checkpoint file.
+     */
+    public DeduplicateCheckpoint(Path file, String outputDirectory, String algorithm) throws IOException {
+        this.log = new RecordLog(file, "deduplicate-checkpoint " + algorithm + " " + Path.of(outputDirectory).toAbsolutePath());
+
+        var records = log.replay(in -> {
+            var key = in.readUTF();
+            var path = in.readUTF();
+            var size = in.readLong();
+            var lastModified = in.readLong();
+            copiedGroups.put(key, new CopiedFile(path, size, lastModified));
+        });
+        this.resumed = records > 0;
+
+        if (resumed) {
+            logger.info("Resuming from {}, {} groups were already copied", file, copiedGroups.size());
+        }
+    }
+
+    /**
+     * Deletes a checkpoint file, so the next run starts over.
+     *
+     * @param file The file backing the checkpoint.
+     * @throws IOException if the file couldn't be deleted.
+     */
+    public static void invalidate(Path file) throws IOException {
+        logger.info("Clearing deduplicate checkpoint {}", file);
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Returns true if entries were loaded from an earlier run, so files in the output directory may have been
+     * left by it.
+     *
+     * @return true if this run is resuming an earlier one.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Checks whether a group was copied by an earlier run, from the same file, and the file hasn't changed since.
+     *
+     * @param key The key of the group.
+     * @param file The file that would be copied for the group.
+     * @return true if the group can be skipped.
+     */
+    public boolean isCopied(String key, File file) {
+        var copied = copiedGroups.get(key);
+        if (copied != null && copied.path().equals(file.getAbsolutePath())
+                && copied.size() == file.length() && copied.lastModified() == file.lastModified()) {
+            skippedGroups.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a copied group to the checkpoint. Can be called from several threads at once.
+     *
+     * @param key The key of the group.
+     * @param file The file that was copied for the group.
+     * @param size The size of the file before it was copied.
+     * @param lastModified The last modified time of the file before it was copied.
+     */
+    public void recordCopied(String key, File file, long size, long lastModified) {
+        var copied = new CopiedFile(file.getAbsolutePath(), size, lastModified);
+        copiedGroups.put(key, copied);
+
+        try {
+            log.append(out -> writeEntry(out, key, copied));
+            var now = System.nanoTime();
+            if (unflushedEntries.incrementAndGet() >= FLUSH_INTERVAL || now - lastFlush.get() >= FLUSH_MILLIS * 1_000_000) {
+                unflushedEntries.set(0);
+                lastFlush.set(now);
+                log.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write deduplicate checkpoint entry for {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of groups in the checkpoint.
+     *
+     * @return The number of copied groups.
+     */
+    public int size() {
+        return copiedGroups.size();
+    }
+
+    public long getSkippedGroups() {
+        return skippedGroups.get();
+    }
+
+    /**
+     * Writes any new entries to disk.
+     *
+     * @throws IOException if an I/O error occurs while writing the checkpoint file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (resumed) {
+            logger.info("Skipped {} groups that were already copied", skippedGroups.get());
+        }
+        log.close();
+    }
+
+    private static void writeEntry(DataOutputStream out, String key, CopiedFile copied) throws IOException {
+        out.writeUTF(key);
+        out.writeUTF(copied.path());
+        out.writeLong(copied.size());
+        out.writeLong(copied.lastModified());
+    }
+
+    /**
+     * The file copied for a group, along with the file attributes the entry is valid for.
+     */
+    private record CopiedFile(String path, long size, long lastModified) {
+    }
+}
@@ -28,9 +28,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.AbstractMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
-import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -44,7 +44,26 @@ public class DeduplicateFiles {
     // Logger for logging information and error messages
     private static final Logger logger = LogManager.getLogger(DeduplicateFiles.class);
     private final Consumer<String> doCreateDirectories;
-    private final BiConsumer<String, String> doFileCopy;
+    private final FileCopier doFileCopy;
+
+    // How files are put in the output directory when they aren't handed to a CopyExecutor
+    private final TransferMode transferMode;
+
+    // Groups copied so far, or null
+    private final DeduplicateCheckpoint checkpoint;
+
+    // Checksums of the files already in the output directory, or null
+    private final MediaCatalog catalog;
+
+    // Whether the output directory is left alone
+    private final boolean previewMode;
+
+    /**
+     * Puts a file in the output directory, then runs onCopied if it was placed.
+     */
+    private interface FileCopier {
+        void copy(String path, String finalPath, Runnable onCopied);
+    }
 
     /**
      * Constructor for the DeduplicateFiles class.
@@ -52,16 +71,32 @@ public class DeduplicateFiles {
      * @param outputDir Directory where the deduplicated files will be copied to.
      */
     public DeduplicateFiles(String outputDir, boolean previewMode) {
+        this(outputDir, previewMode, DeduplicateOptions.defaults());
+    }
+
+    /**
+     * Constructor for the DeduplicateFiles class with optional settings such as a CopyExecutor, a checkpoint or a
+     * catalog of the output directory.
+     *
+     * @param outputDir Directory where the deduplicated files will be copied to.
+     * @param options The optional settings of the run.
+     */
+    public DeduplicateFiles(String outputDir, boolean previewMode, DeduplicateOptions options) {
         this.outputDir = outputDir;
+        this.transferMode = options.getTransferMode();
+        this.checkpoint = options.getCheckpoint();
+        this.catalog = options.getCatalog();
+        this.previewMode = previewMode;
 
         if (previewMode) {
             logger.info("Running in preview mode");
             this.doCreateDirectories = (x) -> {};
-            this.doFileCopy = (x, y) -> {};
+            this.doFileCopy = (x, y, z) -> {};
 
         } else {
+            var copyExecutor = options.getCopyExecutor();
             this.doCreateDirectories = this::createDirectories;
-            this.doFileCopy = this::copyFiles;
+            this.doFileCopy = copyExecutor != null ? copyExecutor::copy : this::copyFiles;
         }
     }
 
@@ -74,43 +109,159 @@ public class DeduplicateFiles {
     public void copyAndDeduplicateFiles(Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap) {
 
         // Iterate over each set of identical files
-        for (Map.Entry<String, List<AbstractMap.SimpleEntry<String, File>>> k : checksumMap.entrySet()) {
-            if (!k.getValue().isEmpty()) {
-
-                // Copy over the first file from the list, ignore the rest
-                var filePair = k.getValue().get(0);
-                var inputDir = filePair.getKey();   // This was the original input directory this file came from
-                var file = filePair.getValue();     // The actual file to copy
+        checksumMap.forEach(this::copyChecksumGroup);
+    }
 
-                // Remove the first item so we can log the files
-                // we skipped
-                k.getValue().remove(0);
-                logSkippedFiles(k.getValue());
+    /**
+     * Copies and deduplicates files based on their checksums, taking the groups of identical files straight from
+     * the checksum builder so builders that don't keep a map in memory never have to build one.
+     *
+     * @param checksumBuilder The checksum builder, after its checksums have been calculated.
+     */
+    public void copyAndDeduplicateFiles(IChecksumBuilder checksumBuilder) {
+        checksumBuilder.forEachChecksumGroup(this::copyChecksumGroup);
+    }
 
-                // Build the output path
-                var path = file.getPath();
+    /**
+     * Copies the first file of a group of identical files and logs the rest as skipped.
+     *
+     * @param checksum The checksum shared by the files.
+     * @param files List of SimpleEntry objects. Each SimpleEntry contains the directory name (String) and the
+     * corresponding File.
+     */
+    private void copyChecksumGroup(String checksum, List<AbstractMap.SimpleEntry<String, File>> files) {
+        if (!files.isEmpty()) {
 
-                // Find the index of the source path substring in the file path
-                var idx = path.indexOf(inputDir);
+            // Copy over the first file from the list, ignore the rest
+            var filePair = files.get(0);
+            var inputDir = filePair.getKey();   // This was the original input directory this file came from
+            var file = filePair.getValue();     // The actual file to copy
 
-                // Remove the source path so we can replace it
-                var substr = path.substring(idx + inputDir.length() + 1);
+            // Remove the first item so we can log the files
+            // we skipped
+            files.remove(0);
+            if (!files.isEmpty()) {
+                Metrics.addDuplicateGroup();
+            }
+            logSkippedFiles(files);
 
-                // Construct the final output path
-                var finalPath = outputDir + File.separator + substr;
+            copyFile(inputDir, file, checksum);
+        }
+    }
 
-                // Ensure the directory tree exists before copying the file
-                this.doCreateDirectories.accept(finalPath);
+    /**
+     * Copies a file to the same place under the output directory as it had under its input directory.
+     *
+     * @param inputDir The input directory the file was found in.
+     * @param file The file to copy.
+     * @param key The key of the group the file is copied for, used to record it in the checkpoint.
+     */
+    void copyFile(String inputDir, File file, String key) {
+        if (this.checkpoint != null && this.checkpoint.isCopied(key, file)) {
+            logger.debug("Already copied: {}", file.getPath());
+            return;
+        }
 
-                logger.info("Copying src:dest {} : {}", path, finalPath);
-                this.doFileCopy.accept(path, finalPath);
+        byte[] digest = null;
+        if (this.catalog != null) {
+            // Keys are the hex checksums, which is what the catalog holds
+            digest = HexFormat.of().parseHex(key);
+            if (this.catalog.contains(digest)) {
+                logger.info("Already in the catalog: {}", file.getPath());
+                Metrics.addDuplicateFile();
+                return;
             }
         }
+
+        // Build the output path
+        var path = file.getPath();
+
+        // Find the index of the source path substring in the file path
+        var idx = path.indexOf(inputDir);
+
+        // Remove the source path so we can replace it
+        var substr = path.substring(idx + inputDir.length() + 1);
+
+        // Construct the final output path
+        var finalPath = outputDir + File.separator + substr;
+
+        // Ensure the directory tree exists before copying the file
+        this.doCreateDirectories.accept(finalPath);
+
+        Runnable onCopied = null;
+        if (this.checkpoint != null) {
+            // Read the attributes first, a move leaves nothing to read afterwards
+            var size = file.length();
+            var lastModified = file.lastModified();
+            onCopied = () -> this.checkpoint.recordCopied(key, file, size, lastModified);
+        }
+        if (digest != null) {
+            var catalogDigest = digest;
+            var recordCopied = onCopied;
+            onCopied = () -> {
+                this.catalog.add(catalogDigest);
+                if (recordCopied != null) {
+                    recordCopied.run();
+                }
+            };
+        }
+        if (this.checkpoint != null && this.checkpoint.isResumed() && !this.previewMode && !replaceInterruptedCopy(file, finalPath, onCopied)) {
+            return;
+        }
+
+        logger.debug("Copying src:dest {} : {}", path, finalPath);
+        this.doFileCopy.copy(path, finalPath, onCopied);
+    }
+
+    /**
+     * Deals with a file an earlier run left in the output directory without recording it in the checkpoint. A file
+     * with the same contents as the source was copied just before the run died, so it's kept and recorded. A file
+     * holding the start of the source is a copy that was cut off, and it's deleted so the file can be copied again.
+     * Anything else belongs to another group with the same relative path, or was there before, and is left alone.
+     *
+     * @param file The file to copy.
+     * @param finalPath Where it's copied to.
+     * @param onCopied Records the file in the checkpoint.
+     * @return true if the file still needs to be copied.
+     */
+    private boolean replaceInterruptedCopy(File file, String finalPath, Runnable onCopied) {
+        var existing = new File(finalPath);
+        if (!existing.isFile()) {
+            return true;
+        }
+
+        long mismatch;
+        try {
+            mismatch = Files.mismatch(existing.toPath(), file.toPath());
+        } catch (IOException e) {
+            logger.error("Failed to compare {} with {}: {}", finalPath, file.getPath(), e.getMessage());
+            return false;
+        }
+
+        if (mismatch == -1) {
+            logger.debug("Copied by the earlier run: {}", finalPath);
+            onCopied.run();
+            return false;
+        }
+        if (mismatch != existing.length()) {
+            logger.error("Failed to copy: {} to {}: a different file is already there", file.getPath(), finalPath);
+            return false;
+        }
+
+        logger.warn("Replacing partly copied file: {}", finalPath);
+        if (!existing.delete()) {
+            logger.error("Failed to delete partly copied file: {}", finalPath);
+            return false;
+        }
+        return true;
     }
 
-    private void copyFiles(String path, String finalPath) {
+    private void copyFiles(String path, String finalPath, Runnable onCopied) {
         try {
-            Files.copy(Path.of(path), Path.of(finalPath));
+            this.transferMode.transfer(Path.of(path), Path.of(finalPath));
+            if (onCopied != null) {
+                onCopied.run();
+            }
         } catch (IOException e) {
             logger.error("Failed to copy: " + path + " to " + finalPath + ": " + e.getMessage());
         }
@@ -124,17 +275,28 @@ public class DeduplicateFiles {
     private void logSkippedFiles(List<AbstractMap.SimpleEntry<String, File>> files) {
 
         for(var f : files) {
-            logger.info("Skipping file: {}", f.getValue().getPath());
+            skipFile(f.getValue());
         }
 
     }
 
+    /**
+     * Logs a file that was skipped because an identical file has already been copied.
+     *
+     * @param file The file that was skipped.
+     */
+    void skipFile(File file) {
+        logger.debug("Skipping file: {}", file.getPath());
+        Metrics.addDuplicateFile();
+    }
+
     /**
      * Creates the necessary directories for the output path.
      *
      * @param finalPath The final output path where the file will be copied to.
      */
     private void createDirectories(String finalPath) {
+        var begin = System.nanoTime();
         try {
             // Create the directory tree for the output path
             // Exceptions are throw if the directory exists, so just
@@ -143,6 +305,7 @@ public class DeduplicateFiles {
             Files.createDirectories(Path.of(parentDir));
         } catch (IOException e) {
         }
+        Metrics.record(Metrics.Stage.MKDIR, begin);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+/**
+ * The optional settings of a DeduplicateFiles run. Built with a Builder, where anything that isn't set keeps its
+ * default.
+ */
+public final class DeduplicateOptions {
+
+    // Runs the copies, or null to copy one file at a time on the calling thread
+    private final CopyExecutor copyExecutor;
+
+    // How files are put in the output directory when there's no CopyExecutor
+    private final TransferMode transferMode;
+
+    // Groups copied so far, or null to copy every group
+    private final DeduplicateCheckpoint checkpoint;
+
+    // Checksums of the files already in the output directory, or null to copy every group
+    private final MediaCatalog catalog;
+
+    private DeduplicateOptions(Builder builder) {
+        this.copyExecutor = builder.copyExecutor;
+        this.transferMode = builder.transferMode;
+        this.checkpoint = builder.checkpoint;
+        this.catalog = builder.catalog;
+    }
+
+    /**
+     * Returns a builder with every setting at its default.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns options with every setting at its default: files are copied one at a time and every group is copied.
+     *
+     * @return The default options.
+     */
+    public static DeduplicateOptions defaults() {
+        return new Builder().build();
+    }
+
+    public CopyExecutor getCopyExecutor() {
+        return copyExecutor;
+    }
+
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    public DeduplicateCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public MediaCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Collects the settings of a DeduplicateFiles run.
+     */
+    public static final class Builder {
+
+        private CopyExecutor copyExecutor;
+        private TransferMode transferMode = TransferMode.COPY;
+        private DeduplicateCheckpoint checkpoint;
+        private MediaCatalog catalog;
+
+        private Builder() {
+        }
+
+        /**
+         * @param copyExecutor Runs the copies so several run at once, using its own transfer mode. If null, files are
+         * copied one at a time on the calling thread.
+         */
+        public Builder copyExecutor(CopyExecutor copyExecutor) {
+            this.copyExecutor = copyExecutor;
+            return this;
+        }
+
+        /**
+         * @param transferMode How files are put in the output directory when there's no CopyExecutor. Defaults to
+         * COPY.
+         */
+        public Builder transferMode(TransferMode transferMode) {
+            this.transferMode = transferMode != null ? transferMode : TransferMode.COPY;
+            return this;
+        }
+
+        /**
+         * @param checkpoint Groups copied so far. Groups an earlier run copied are skipped, and the groups copied are
+         * added to it. If null, every group is copied.
+         */
+        public Builder checkpoint(DeduplicateCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * @param catalog Checksums of the files already in the output directory. Only groups whose checksum isn't in
+         * it are copied, and their checksums are added to it. If null, every group is copied.
+         */
+        public Builder catalog(MediaCatalog catalog) {
+            this.catalog = catalog;
+            return this;
+        }
+
+        public DeduplicateOptions build() {
+            return new DeduplicateOptions(this);
+        }
+    }
+}
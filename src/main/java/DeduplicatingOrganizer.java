@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Deduplicates the files from several input directories and organizes one copy of each by date.
+ * Implements the IFileOrganizer interface.
+ * <p>
+ * The checksums are calculated first, and then the first file of every group of identical files is handed to the
+ * DateOrganizer for its input directory while the rest are skipped. The organizers share one DestinationAllocator,
+ * like those of ParallelDateOrganizer. Used with a FusedMediaReader, the dates the files were taken are read along
+ * with their checksums so no file is read twice.
+ */
+public class DeduplicatingOrganizer implements IFileOrganizer {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(DeduplicatingOrganizer.class);
+
+    // Finds the groups of identical files
+    private final IChecksumBuilder checksumBuilder;
+
+    // One organizer for each input directory
+    private final Map<String, DateOrganizer> organizers = new HashMap<>();
+
+    // Called for every file once it's been organized or skipped
+    private final Consumer<File> release;
+
+    /**
+     * Constructor for the DeduplicatingOrganizer class.
+     *
+     * @param checksumBuilder Finds the groups of identical files in the input directories.
+     * @param inputDirectories Directories containing files to be organized, the same ones the checksum builder reads.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param options The optional settings of the run. Its file walker isn't used, the checksum builder finds the
+     * files.
+     */
+    public DeduplicatingOrganizer(IChecksumBuilder checksumBuilder, List<String> inputDirectories, String destinationDirectory,
+                                  DateOrganizer.DateFormat dateFormat, boolean previewMode, OrganizeOptions options) {
+        this(checksumBuilder, inputDirectories, destinationDirectory, dateFormat, previewMode, options, null);
+    }
+
+    /**
+     * Constructor for the DeduplicatingOrganizer class that tells the caller when each file has been dealt with, so
+     * anything read for it ahead of time, like the dates held by a FusedMediaReader, can be dropped.
+     *
+     * @param checksumBuilder Finds the groups of identical files in the input directories.
+     * @param inputDirectories Directories containing files to be organized, the same ones the checksum builder reads.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param options The optional settings of the run. Its file walker isn't used, the checksum builder finds the
+     * files.
+     * @param release Called for every file once it's been organized or skipped. May be null.
+     */
+    public DeduplicatingOrganizer(IChecksumBuilder checksumBuilder, List<String> inputDirectories, String destinationDirectory,
+                                  DateOrganizer.DateFormat dateFormat, boolean previewMode, OrganizeOptions options,
+                                  Consumer<File> release) {
+        if (inputDirectories == null || inputDirectories.isEmpty()) {
+            throw new IllegalArgumentException("Input directories must be provided");
+        }
+
+        this.checksumBuilder = checksumBuilder;
+        this.release = release != null ? release : f -> { };
+
+        var destinationAllocator = new DestinationAllocator(options.getChecksumFunction());
+        for (var inputDirectory : inputDirectories) {
+            organizers.put(inputDirectory, new DateOrganizer(inputDirectory, destinationDirectory, dateFormat, previewMode,
+                    options, destinationAllocator));
+        }
+    }
+
+    /**
+     * Calculates the checksums and organizes one file from each group of identical files.
+     *
+     * @throws IOException if an I/O error occurs while calculating the checksums.
+     */
+    @Override
+    public void organizeFiles() throws IOException {
+        this.checksumBuilder.calculateChecksums();
+        this.checksumBuilder.forEachChecksumGroup(this::organizeChecksumGroup);
+    }
+
+    /**
+     * Organizes the first file of a group of identical files and logs the rest as skipped.
+     *
+     * @param checksum The checksum shared by the files.
+     * @param files List of SimpleEntry objects. Each SimpleEntry contains the directory name (String) and the
+     * corresponding File.
+     */
+    private void organizeChecksumGroup(String checksum, List<AbstractMap.SimpleEntry<String, File>> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        if (files.size() > 1) {
+            Metrics.addDuplicateGroup();
+            for (var f : files.subList(1, files.size())) {
+                logger.debug("Skipping file: {}", f.getValue().getPath());
+                Metrics.addDuplicateFile();
+                this.release.accept(f.getValue());
+            }
+        }
+
+        // A file in a dated folder is organized without asking for its capture date
+        var first = files.get(0);
+        this.organizers.get(first.getKey()).handleFile(first.getValue());
+        this.release.accept(first.getValue());
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hands out destination paths and creates destination directories for organizers that may run on several threads
+ * at once, so two files with the same name going to the same folder can't both be given the same path.
+ * <p>
+ * When a name is already taken, the file already using it is compared with the new one, first by size and then by
+ * checksum. An identical file means the new one doesn't need to be placed at all. Otherwise the next name in the
+ * sequence "name (1).ext", "name (2).ext" is tried, so repeated runs produce the same names instead of new ones.
+ * The names in each destination directory are listed once, and the sizes and checksums of the files there are
+ * cached, so the same targets aren't read again for every collision. Files are hashed outside the directory's lock,
+ * and a name whose file couldn't be placed is released so it's handed out again.
+ */
+class DestinationAllocator {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(DestinationAllocator.class);
+
+    // Function to calculate checksum, used to compare files with the same name and size
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Names and cached checksums for each destination directory
+    private final Map<String, DestinationDirectory> destinationDirectories = new ConcurrentHashMap<>();
+
+    // Directories that have already been created
+    private final Map<String, Boolean> createdDirectories = new ConcurrentHashMap<>();
+
+    /**
+     * A destination for a file. If identical is true, a file with the same contents is already at the path and the
+     * file doesn't need to be placed.
+     */
+    record Allocation(String path, boolean identical) {
+    }
+
+    /**
+     * Constructor for the DestinationAllocator class, comparing files with the default checksum function.
+     */
+    DestinationAllocator() {
+        this(Metrics.wrap(ChecksumBuilder::defaultChecksumFunction));
+    }
+
+    /**
+     * Constructor for the DestinationAllocator class.
+     *
+     * @param checksumFunction Function to calculate checksum, used to compare files with the same name and size. If
+     * null, the default checksum function is used.
+     */
+    DestinationAllocator(Function<File, Optional<byte[]>> checksumFunction) {
+        this.checksumFunction = checksumFunction != null ? checksumFunction : Metrics.wrap(ChecksumBuilder::defaultChecksumFunction);
+    }
+
+    /**
+     * Creates a directory the first time it's asked for. Other threads asking for the same directory wait until
+     * it has been created.
+     *
+     * @param directory The directory to create.
+     * @param createDirectories Creates the directory tree.
+     */
+    void ensureDirectory(String directory, Consumer<String> createDirectories) {
+        createdDirectories.computeIfAbsent(directory, d -> {
+            createDirectories.accept(d);
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Finds a destination path for a file. The file's own name is used unless another file already has it, in
+     * which case the path of an identical file or the next free name in the sequence is returned.
+     *
+     * @param outputDir The directory the file is going to.
+     * @param file The file being placed.
+     * @return The path to place the file at, or the path of an identical file that's already there.
+     */
+    Allocation allocate(String outputDir, File file) {
+        var directory = directoryFor(new File(outputDir).getPath());
+        List<Target> collisions;
+        synchronized (directory) {
+            collisions = directory.sameSizeTargets(file);
+            if (collisions.isEmpty()) {
+                return directory.allocate(file, null);
+            }
+        }
+
+        // Hash outside the lock, so other files going to this directory aren't held up behind a full read
+        var fileChecksum = checksumFunction.apply(file).orElse(null);
+        collisions.forEach(Target::checksum);
+        synchronized (directory) {
+            return directory.allocate(file, fileChecksum);
+        }
+    }
+
+    /**
+     * Gives up a path handed out by allocate, because the file couldn't be placed there. A later file with the same
+     * name gets the path again instead of being compared with a file that was never written.
+     *
+     * @param path The path that was allocated.
+     */
+    void release(String path) {
+        var destination = new File(path);
+        var directory = destinationDirectories.get(destination.getParent());
+        if (directory != null) {
+            synchronized (directory) {
+                directory.release(destination.getName());
+            }
+        }
+    }
+
+    private DestinationDirectory directoryFor(String outputDir) {
+        // List the directory outside the map, so other directories aren't held up while it's read
+        var directory = destinationDirectories.get(outputDir);
+        if (directory == null) {
+            var listed = new DestinationDirectory(outputDir);
+            directory = Objects.requireNonNullElse(destinationDirectories.putIfAbsent(outputDir, listed), listed);
+        }
+        return directory;
+    }
+
+    /**
+     * Adds a sequence number to a file name, before the extension.
+     *
+     * @param name The file name.
+     * @param sequence The sequence number.
+     * @return The numbered name, for example "photo (2).jpg".
+     */
+    static String numberedName(String name, int sequence) {
+        var dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return name + " (" + sequence + ")";
+        }
+        return name.substring(0, dot) + " (" + sequence + ")" + name.substring(dot);
+    }
+
+    /**
+     * The names used in one destination directory.
+     */
+    private class DestinationDirectory {
+
+        private final String path;
+
+        // The file behind each name, either already on disk or reserved by this run
+        private final Map<String, Target> targets = new HashMap<>();
+
+        DestinationDirectory(String path) {
+            this.path = path;
+
+            // List the directory once instead of checking each name as it's used
+            var existing = new File(path).list();
+            if (existing != null) {
+                for (var name : existing) {
+                    var target = new File(path, name);
+                    targets.put(name, new Target(target, target));
+                }
+            }
+        }
+
+        /**
+         * Returns the files already using the file's name, or a numbered form of it, that are the same size as it,
+         * up to the first free name.
+         */
+        List<Target> sameSizeTargets(File file) {
+            var name = file.getName();
+            var collisions = new ArrayList<Target>();
+            for (int sequence = 0; ; sequence++) {
+                var target = targets.get(sequence == 0 ? name : numberedName(name, sequence));
+                if (target == null) {
+                    return collisions;
+                }
+                if (target.size() == file.length()) {
+                    collisions.add(target);
+                }
+            }
+        }
+
+        /**
+         * Reserves the first free name for a file, unless an identical file already has one of its names.
+         *
+         * @param fileChecksum The checksum of the file, or null if there's no file of the same size or it couldn't
+         * be read.
+         */
+        Allocation allocate(File file, byte[] fileChecksum) {
+            var name = file.getName();
+            for (int sequence = 0; ; sequence++) {
+                var candidate = sequence == 0 ? name : numberedName(name, sequence);
+                var destination = new File(this.path, candidate);
+                var target = targets.get(candidate);
+                if (target == null) {
+                    targets.put(candidate, new Target(destination, file));
+                    return new Allocation(destination.getPath(), false);
+                }
+
+                logger.debug("File already exists: {}", destination.getPath());
+                if (fileChecksum != null && target.size() == file.length() && Arrays.equals(fileChecksum, target.checksum())) {
+                    return new Allocation(destination.getPath(), true);
+                }
+            }
+        }
+
+        void release(String name) {
+            // Only names reserved by this run are given up, files that were already on disk keep theirs
+            var target = targets.get(name);
+            if (target != null && target.source != target.destination) {
+                targets.remove(name);
+            }
+        }
+    }
+
+    /**
+     * A file that has a name in a destination directory. Names reserved by this run may not have been written yet,
+     * so their contents are read from the source file while it's still there.
+     */
+    private class Target {
+
+        private final File destination;
+        private final File source;
+        private long size = -1;
+        private byte[] checksum;
+
+        Target(File destination, File source) {
+            this.destination = destination;
+            this.source = source;
+        }
+
+        private File contents() {
+            return source.exists() ? source : destination;
+        }
+
+        long size() {
+            if (size < 0) {
+                size = contents().length();
+            }
+            return size;
+        }
+
+        synchronized byte[] checksum() {
+            if (checksum == null) {
+                checksum = checksumFunction.apply(contents()).orElse(null);
+            }
+            return checksum;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Class that implements the IChecksumBuilder interface without keeping the files in memory, for libraries whose
+ * index wouldn't fit in the heap.
+ * <p>
+ * Checksum records (checksum, walk order, input directory and path) are collected into fixed size runs, sorted, and
+ * written to run files in a spill directory. Groups of identical files are produced by a k-way merge of the runs, so
+ * the heap only ever holds one run, one record per run file and the group being handed over. Runs are merged in
+ * several passes if there are too many to open at once.
+ * <p>
+ * Pass the builder to DeduplicateFiles.copyAndDeduplicateFiles(IChecksumBuilder) to stream the groups. The run
+ * files are deleted when the builder is closed.
+ */
+public class ExternalChecksumBuilder implements IChecksumBuilder {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ExternalChecksumBuilder.class);
+
+    // Default number of records sorted in memory before they're written to a run file
+    public static final int DEFAULT_RUN_SIZE = 100_000;
+
+    // Largest number of run files merged at once
+    static final int MAX_FAN_IN = 64;
+
+    // Buffer size for each run file
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Function to calculate checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    // Directory the run files are written under, and the number of records in each run
+    private final Path spillRoot;
+    private final int runSize;
+
+    // Created on the first spill, removed on close
+    private Path spillDir;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<ChecksumRecord> currentRun = new ArrayList<>();
+    private int digestLength;
+    private long sequence;
+
+    // Only built if getChecksumMap is called
+    private Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap;
+
+    /**
+     * Constructor for the ExternalChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     * @param spillRoot Directory the run files are written under. If null, the system temporary directory is used.
+     * @param runSize Number of records sorted in memory before they're written to a run file.
+     */
+    public ExternalChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                   Path spillRoot, int runSize) {
+        this(directories, checksumFunction, threads, spillRoot, runSize, null);
+    }
+
+    /**
+     * Constructor for the ExternalChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     * @param spillRoot Directory the run files are written under. If null, the system temporary directory is used.
+     * @param runSize Number of records sorted in memory before they're written to a run file.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public ExternalChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                   Path spillRoot, int runSize, FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Run size must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.threads = threads;
+        this.spillRoot = Objects.requireNonNullElseGet(spillRoot, () -> Path.of(System.getProperty("java.io.tmpdir")));
+        this.runSize = runSize;
+    }
+
+    /**
+     * Builds a map of checksums and their corresponding files by merging the runs. This holds every file in memory,
+     * so prefer forEachChecksumGroup.
+     *
+     * @return a Map where the key is a checksum (String) and the value is a List of SimpleEntry objects.
+     * Each SimpleEntry contains the directory name (String) and the corresponding File.
+     */
+    @Override
+    public Map<String, List<AbstractMap.SimpleEntry<String, File>>> getChecksumMap() {
+        if (checksumMap == null) {
+            var map = new HashMap<String, List<AbstractMap.SimpleEntry<String, File>>>();
+            forEachChecksumGroup(map::put);
+            checksumMap = map;
+        }
+        return checksumMap;
+    }
+
+    /**
+     * Calculates checksums for all files in the directories and writes them to sorted run files.
+     *
+     * @throws IOException if an I/O error occurs during the checksum calculation or while writing the runs.
+     */
+    @Override
+    public void calculateChecksums() throws IOException {
+        new OrderedHasher(this.checksumFunction, this.threads, this.fileWalker).hashDirectories(directories, this::handleFile);
+        if (!currentRun.isEmpty()) {
+            spillRun();
+        }
+
+        while (runs.size() > MAX_FAN_IN) {
+            var merged = mergeRuns(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            runs.add(merged);
+        }
+        logger.info("Wrote {} records to {} sorted runs", sequence, runs.size());
+    }
+
+    /**
+     * Merges the sorted runs and passes each group of files that share a checksum to the consumer. Each group is
+     * read from disk when it's reached, so only one group is held in memory at a time.
+     *
+     * @param consumer Receives the checksum (String) and the List of SimpleEntry objects with that checksum.
+     */
+    @Override
+    public void forEachChecksumGroup(BiConsumer<String, List<AbstractMap.SimpleEntry<String, File>>> consumer) {
+        if (checksumMap != null) {
+            checksumMap.forEach(consumer);
+            return;
+        }
+
+        try (var merger = new RunMerger(runs)) {
+            var group = new ArrayList<AbstractMap.SimpleEntry<String, File>>();
+            byte[] groupDigest = null;
+            ChecksumRecord record;
+            while ((record = merger.next()) != null) {
+                if (groupDigest != null && !Arrays.equals(groupDigest, record.digest())) {
+                    consumer.accept(ChecksumBuilder.toHexString(groupDigest), group);
+                    group = new ArrayList<>();
+                }
+                groupDigest = record.digest();
+                group.add(new AbstractMap.SimpleEntry<>(directories.get(record.inputDir()), new File(record.path())));
+            }
+            if (groupDigest != null) {
+                consumer.accept(ChecksumBuilder.toHexString(groupDigest), group);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to merge checksum runs", e);
+        }
+    }
+
+    /**
+     * Deletes the run files.
+     *
+     * @throws IOException if the run files couldn't be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        for (var run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        if (spillDir != null) {
+            Files.deleteIfExists(spillDir);
+            spillDir = null;
+        }
+    }
+
+    /**
+     * Adds the checksum of a file to the current run, writing the run out once it's full.
+     *
+     * @param inputDirName The name of the directory being scanned.
+     * @param f The file the checksum was calculated for.
+     * @param checksumBytes The checksum, or empty if it couldn't be calculated.
+     */
+    private void handleFile(String inputDirName, File f, Optional<byte[]> checksumBytes) throws IOException {
+        logger.debug("File: {}", f.getAbsolutePath());
+        if (checksumBytes.isEmpty()) {
+            return;
+        }
+
+        var digest = checksumBytes.get();
+        if (digestLength == 0) {
+            digestLength = digest.length;
+        } else if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Expected a " + digestLength + " byte checksum, got " + digest.length);
+        }
+
+        currentRun.add(new ChecksumRecord(digest, sequence++, directories.indexOf(inputDirName), f.getPath()));
+        if (currentRun.size() >= runSize) {
+            spillRun();
+        }
+    }
+
+    /**
+     * Sorts the current run and writes it to a new run file.
+     *
+     * @throws IOException if the run file couldn't be written.
+     */
+    private void spillRun() throws IOException {
+        currentRun.sort(ChecksumRecord.ORDER);
+        var run = createRun();
+        runs.add(run);
+        try (var out = openRun(run)) {
+            for (var record : currentRun) {
+                record.write(out);
+            }
+        }
+        currentRun.clear();
+    }
+
+    /**
+     * Merges several runs into a single new run, deleting the merged runs. The new run isn't added to the list of
+     * runs.
+     *
+     * @param batch The runs to merge.
+     * @return The path of the merged run.
+     * @throws IOException if the runs couldn't be read or written.
+     */
+    private Path mergeRuns(List<Path> batch) throws IOException {
+        var merged = createRun();
+        try (var merger = new RunMerger(batch); var out = openRun(merged)) {
+            ChecksumRecord record;
+            while ((record = merger.next()) != null) {
+                record.write(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(merged);
+            throw e;
+        }
+        for (var run : batch) {
+            Files.delete(run);
+        }
+        return merged;
+    }
+
+    /**
+     * Creates a new, empty run file in the spill directory.
+     *
+     * @return The path of the run file.
+     * @throws IOException if the file couldn't be created.
+     */
+    private Path createRun() throws IOException {
+        if (spillDir == null) {
+            Files.createDirectories(spillRoot);
+            spillDir = Files.createTempDirectory(spillRoot, "checksum-runs");
+        }
+        return Files.createTempFile(spillDir, "run", ".bin");
+    }
+
+    /**
+     * Opens a run file for writing.
+     *
+     * @param run The run file.
+     * @return A stream to write the records to.
+     * @throws IOException if the file couldn't be opened.
+     */
+    private DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.toFile()), RUN_BUFFER_SIZE));
+    }
+
+    /**
+     * Reads records from several sorted runs in sorted order.
+     */
+    private class RunMerger implements Closeable {
+
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private final PriorityQueue<RunHead> heads = new PriorityQueue<>((a, b) -> ChecksumRecord.ORDER.compare(a.record(), b.record()));
+
+        RunMerger(List<Path> runFiles) throws IOException {
+            try {
+                for (var run : runFiles) {
+                    var in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.toFile()), RUN_BUFFER_SIZE));
+                    inputs.add(in);
+                    advance(in);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the next record in sorted order, or null once every run has been read.
+         */
+        ChecksumRecord next() throws IOException {
+            var head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            advance(head.in());
+            return head.record();
+        }
+
+        private void advance(DataInputStream in) throws IOException {
+            var record = ChecksumRecord.read(in, digestLength);
+            if (record != null) {
+                heads.add(new RunHead(record, in));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (var in : inputs) {
+                in.close();
+            }
+        }
+    }
+
+    private record RunHead(ChecksumRecord record, DataInputStream in) {
+    }
+
+    /**
+     * A single file in a run. Runs are sorted by checksum and then by walk order, so the files in each group come
+     * out in the order they were found.
+     */
+    private record ChecksumRecord(byte[] digest, long sequence, int inputDir, String path) {
+
+        static final Comparator<ChecksumRecord> ORDER = (a, b) -> {
+            var compare = Arrays.compareUnsigned(a.digest(), b.digest());
+            return compare != 0 ? compare : Long.compare(a.sequence(), b.sequence());
+        };
+
+        void write(DataOutputStream out) throws IOException {
+            out.write(digest);
+            out.writeLong(sequence);
+            out.writeInt(inputDir);
+            out.writeUTF(path);
+        }
+
+        static ChecksumRecord read(DataInputStream in, int digestLength) throws IOException {
+            var digest = new byte[digestLength];
+            try {
+                in.readFully(digest);
+            } catch (EOFException e) {
+                return null;
+            }
+            return new ChecksumRecord(digest, in.readLong(), in.readInt(), in.readUTF());
+        }
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks directory trees with Files.walkFileTree, which reads the attributes of each entry along with the directory
+ * listing. The files are handed on as Files that answer length(), lastModified(), isDirectory() and isFile() from
+ * those attributes, so the stages after the walk don't each stat every file again. That matters most on NAS
+ * shares, where every stat is a network round trip.
+ * <p>
+ * Only files are passed to the handler, in the same order as Files.walk would find them. Include and exclude glob
+ * patterns can restrict which files are handled. A pattern without a '/' is matched against the file name, for
+ * example "*.jpg", otherwise against the path relative to the directory being walked, for example "raw/**".
+ * Excluded directories aren't walked at all.
+ * <p>
+ * With more than one thread, directories are listed on a fork-join pool. Each directory listed forks a task for
+ * each of its subdirectories, and idle threads steal those tasks, so many directory listings are in flight at
+ * once. That hides the round trip of each listing on a NAS share. The files are still passed to the handler in
+ * walk order on the calling thread, as soon as the listing they're in and those before it are done, so hashing
+ * or organizing starts while the rest of the tree is still being listed. Only a fixed number of listings per thread
+ * can be ahead of the handler, so memory use doesn't grow with the size of the tree.
+ */
+public class FileWalker {
+
+    /**
+     * Receives each file that's found.
+     */
+    public interface FileHandler {
+        void accept(File file) throws IOException;
+    }
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(FileWalker.class);
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final List<Boolean> includeByName = new ArrayList<>();
+    private final List<Boolean> excludeByName = new ArrayList<>();
+
+    // Number of directory listings each thread may have done or in flight ahead of the handler
+    private static final int LISTINGS_PER_THREAD = 16;
+
+    // Number of directories listed at once
+    private final int threads;
+
+    /**
+     * Constructor for the FileWalker class that walks every file on the calling thread.
+     */
+    public FileWalker() {
+        this(List.of(), List.of(), 1);
+    }
+
+    /**
+     * Constructor for the FileWalker class.
+     *
+     * @param includes Glob patterns for the files to handle. If empty, every file that isn't excluded is handled.
+     * @param excludes Glob patterns for the files and directories to skip.
+     * @param threads Number of directories listed at once.
+     */
+    public FileWalker(List<String> includes, List<String> excludes, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        for (var pattern : includes) {
+            this.includes.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            this.includeByName.add(!pattern.contains("/"));
+        }
+        for (var pattern : excludes) {
+            this.excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            this.excludeByName.add(!pattern.contains("/"));
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Walks a directory tree, passing each file to the handler on the calling thread.
+     *
+     * @param root The directory to walk.
+     * @param handler Receives each file, in walk order.
+     * @throws IOException if the directory couldn't be walked, or the handler failed.
+     */
+    public void walk(Path root, FileHandler handler) throws IOException {
+        if (threads == 1) {
+            walkTree(root, root, handler);
+            return;
+        }
+
+        var pool = new ForkJoinPool(threads);
+        var permits = new Semaphore(threads * LISTINGS_PER_THREAD);
+        Metrics.registerQueue("walk", pool::getQueuedTaskCount);
+        try {
+            var listing = new Listing(root, root, permits);
+            listing.start(pool, false);
+            deliver(pool, listing, handler);
+        } finally {
+            Metrics.unregisterQueue("walk");
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Passes the files of a directory listing to the handler in walk order, waiting for each subdirectory's
+     * listing as it's reached. The pool keeps listing directories further on in the meantime. Subdirectories that
+     * weren't started for lack of permits are started once they're reached, along with as many of the ones after
+     * them as there are permits for. Each listing is dropped once it's delivered.
+     */
+    private void deliver(ForkJoinPool pool, Listing listing, FileHandler handler) throws IOException {
+        try {
+            listing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while walking " + listing.directory, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to walk " + listing.directory, e.getCause());
+        }
+        if (listing.failure != null) {
+            throw listing.failure;
+        }
+
+        var subdirectories = listing.subdirectories;
+        var subdirectory = 0;
+        for (var entry : listing.entries) {
+            if (entry.file() != null) {
+                handler.accept(entry.file());
+                continue;
+            }
+
+            // Start this listing if it's waiting, it's needed now, and the ones after it while there are permits
+            subdirectories.get(subdirectory).start(pool, false);
+            var prefetch = subdirectory + 1;
+            while (prefetch < subdirectories.size() && subdirectories.get(prefetch).start(pool, true)) {
+                prefetch++;
+            }
+
+            var next = subdirectories.set(subdirectory++, null);
+            deliver(pool, next, handler);
+        }
+        listing.finish();
+    }
+
+    /**
+     * Walks a directory tree, passing each file to the handler as it's found. Links to directories aren't followed.
+     */
+    private void walkTree(Path root, Path start, FileHandler handler) throws IOException {
+        walkTree(root, start, Integer.MAX_VALUE, entry -> {
+            if (entry.file() != null) {
+                handler.accept(entry.file());
+            }
+        });
+    }
+
+    /**
+     * Walks a directory tree to the given depth. Files are passed to the handler as they're found, and
+     * directories at the maximum depth are passed on without being walked.
+     *
+     * @param root The directory relative paths are matched from.
+     * @param start The directory to walk.
+     * @param maxDepth The number of levels to walk.
+     * @param handler Receives each file, and each directory that isn't walked.
+     */
+    private void walkTree(Path root, Path start, int maxDepth, EntryHandler handler) throws IOException {
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<>() {
+
+            // When the previous entry was finished with, the time until the next one is the cost of the walk
+            private long begin = System.nanoTime();
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                Metrics.record(Metrics.Stage.WALK, begin);
+                var result = !dir.equals(start) && isExcluded(root.relativize(dir)) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                begin = System.nanoTime();
+                return result;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Metrics.record(Metrics.Stage.WALK, begin);
+                if (attrs.isSymbolicLink()) {
+                    // Links aren't followed, so a link to a directory is neither a file to handle nor a directory to list
+                    attrs = readLinkTarget(file, attrs);
+                    if (attrs.isDirectory()) {
+                        begin = System.nanoTime();
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+
+                var relative = root.relativize(file);
+                if (attrs.isDirectory()) {
+                    if (!isExcluded(relative)) {
+                        handler.accept(new Entry(null, file));
+                    }
+                } else if (isIncluded(relative)) {
+                    handler.accept(new Entry(new WalkedFile(file, attrs), null));
+                }
+                begin = System.nanoTime();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (file.equals(start)) {
+                    throw e;
+                }
+
+                // One unreadable directory on a share shouldn't stop the whole walk
+                logger.error("Can't read {}: {}", file, e.getMessage());
+                begin = System.nanoTime();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Reads the attributes of the file a symbolic link points to, or keeps the link's own if it's broken.
+     */
+    private static BasicFileAttributes readLinkTarget(Path link, BasicFileAttributes linkAttrs) {
+        var begin = System.nanoTime();
+        try {
+            return Files.readAttributes(link, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return linkAttrs;
+        } finally {
+            Metrics.record(Metrics.Stage.STAT, begin);
+        }
+    }
+
+    private boolean isIncluded(Path relative) {
+        return (includes.isEmpty() || matches(includes, includeByName, relative)) && !isExcluded(relative);
+    }
+
+    private boolean isExcluded(Path relative) {
+        return matches(excludes, excludeByName, relative);
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, List<Boolean> byName, Path relative) {
+        for (int i = 0; i < matchers.size(); i++) {
+            var path = byName.get(i) ? relative.getFileName() : relative;
+            if (path != null && matchers.get(i).matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Receives each entry that's found.
+     */
+    private interface EntryHandler {
+        void accept(Entry entry) throws IOException;
+    }
+
+    /**
+     * Either a file that was found, or a directory that's still to be walked.
+     */
+    private record Entry(File file, Path directory) {
+    }
+
+    /**
+     * Lists one directory, then forks a listing for each of its subdirectories. Idle threads steal the
+     * subdirectories that haven't been listed yet, so wide and deep trees both keep every thread busy.
+     */
+    @SuppressWarnings("serial") // Tasks only live for one walk and are never serialized
+    private final class Listing extends RecursiveAction {
+        private final Path root;
+        private final Path directory;
+
+        // Limits the listings that are done or in flight ahead of the handler
+        private final Semaphore permits;
+
+        // Files and subdirectories in walk order, and the listings of the subdirectories in the same order
+        private List<Entry> entries = new ArrayList<>();
+        private List<Listing> subdirectories = new ArrayList<>();
+
+        // Set if the directory being walked couldn't be read
+        private IOException failure;
+
+        // Whether the listing has been handed to the pool, and whether it holds a permit
+        private final AtomicBoolean started = new AtomicBoolean();
+        private boolean holdsPermit;
+
+        Listing(Path root, Path directory, Semaphore permits) {
+            this.root = root;
+            this.directory = directory;
+            this.permits = permits;
+        }
+
+        /**
+         * Hands the listing to the pool unless it's already been started. Called by the thread delivering the files.
+         *
+         * @param pool The pool to run the listing on.
+         * @param needsPermit Whether to only start it if a permit is free.
+         * @return False if it wasn't started for lack of a permit.
+         */
+        boolean start(ForkJoinPool pool, boolean needsPermit) {
+            if (started.get()) {
+                return true;
+            }
+            if (needsPermit && !permits.tryAcquire()) {
+                return false;
+            }
+            if (!started.compareAndSet(false, true)) {
+                if (needsPermit) {
+                    permits.release();
+                }
+                return true;
+            }
+
+            holdsPermit = needsPermit;
+            pool.execute(this);
+            return true;
+        }
+
+        /**
+         * Drops the listing once its files have been delivered and gives back its permit.
+         */
+        void finish() {
+            entries = null;
+            subdirectories = null;
+            if (holdsPermit) {
+                permits.release();
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (getPool().isShutdown()) {
+                // The walk was given up, so nobody will read this listing
+                return;
+            }
+
+            try {
+                walkTree(root, directory, 1, entries::add);
+            } catch (IOException e) {
+                if (directory.equals(root)) {
+                    failure = e;
+                    return;
+                }
+
+                // As with a single thread, an unreadable subdirectory is skipped
+                logger.error("Can't read {}: {}", directory, e.getMessage());
+                entries.clear();
+                return;
+            }
+
+            for (var entry : entries) {
+                if (entry.file() == null) {
+                    subdirectories.add(new Listing(root, entry.directory(), permits));
+                }
+            }
+
+            // The last task forked is the next one this thread runs, so fork in reverse to list the
+            // subdirectory that's needed first soonest. Other threads steal from the other end. Those there's no
+            // permit for wait until the handler reaches them.
+            var forkable = 0;
+            while (forkable < subdirectories.size() && permits.tryAcquire()) {
+                forkable++;
+            }
+            for (int i = forkable - 1; i >= 0; i--) {
+                var subdirectory = subdirectories.get(i);
+                subdirectory.holdsPermit = true;
+                subdirectory.started.set(true);
+                subdirectory.fork();
+            }
+        }
+    }
+
+    /**
+     * A file along with the attributes that were read when it was found. exists() still checks the file system,
+     * since a file that has been moved no longer exists.
+     */
+    static final class WalkedFile extends File {
+        private static final long serialVersionUID = 1L;
+
+        private final long length;
+        private final long lastModified;
+        private final boolean directory;
+        private final boolean regularFile;
+
+        WalkedFile(Path path, BasicFileAttributes attrs) {
+            super(path.toString());
+            this.length = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+            this.directory = attrs.isDirectory();
+            this.regularFile = attrs.isRegularFile();
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        @Override
+        public boolean isFile() {
+            return regularFile;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A layout for the output directories of organized files, such as "{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]".
+ * <p>
+ * Inside braces, runs of y, M and d are the year ({yyyy} or {yy}), month ({MM}) and day ({dd}), and any other
+ * characters are written as they are, so {yyyy-MM-dd} is a whole date. {desc} is the description that followed the
+ * date in the name of the folder the file came from. A part in square brackets is only written when the description
+ * it holds is known, and a '/' starts a subdirectory. Without a description, the spaces a {desc} outside brackets
+ * would leave at the ends of a directory name are trimmed. The template is compiled once into a list of segments, so
+ * rendering a directory for a file is a matter of appending strings and numbers.
+ */
+public final class FolderTemplate {
+
+    /**
+     * Writes one part of an output directory.
+     */
+    @FunctionalInterface
+    private interface Segment {
+
+        /**
+         * @return False if the segment needs a description and there is none.
+         */
+        boolean write(StringBuilder out, int year, int month, int day, String description);
+    }
+
+    // The template the segments were compiled from
+    private final String template;
+
+    private final List<Segment> segments;
+
+    private FolderTemplate(String template, List<Segment> segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param template The template.
+     * @return The compiled template.
+     * @throws IllegalArgumentException if the template is empty or isn't valid.
+     */
+    public static FolderTemplate compile(String template) {
+        if (template == null || template.isEmpty()) {
+            throw new IllegalArgumentException("Folder template must not be empty");
+        }
+
+        var segments = new ArrayList<Segment>();
+        List<Segment> optional = null;
+        var literal = new StringBuilder();
+        for (int i = 0; i < template.length(); i++) {
+            var c = template.charAt(i);
+            var current = optional != null ? optional : segments;
+            switch (c) {
+                case '{' -> {
+                    var close = template.indexOf('}', i);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("Unclosed '{' in folder template: " + template);
+                    }
+                    addLiteral(current, literal);
+                    compileField(template, template.substring(i + 1, close), current);
+                    i = close;
+                }
+                case '[' -> {
+                    if (optional != null) {
+                        throw new IllegalArgumentException("Optional parts can't be nested in folder template: " + template);
+                    }
+                    addLiteral(current, literal);
+                    optional = new ArrayList<>();
+                }
+                case ']' -> {
+                    if (optional == null) {
+                        throw new IllegalArgumentException("Unmatched ']' in folder template: " + template);
+                    }
+                    addLiteral(optional, literal);
+                    segments.add(optionalSegment(List.copyOf(optional)));
+                    optional = null;
+                }
+                case '}' -> throw new IllegalArgumentException("Unmatched '}' in folder template: " + template);
+                case '/' -> literal.append(File.separator);
+                default -> literal.append(c);
+            }
+        }
+        if (optional != null) {
+            throw new IllegalArgumentException("Unclosed '[' in folder template: " + template);
+        }
+        addLiteral(segments, literal);
+        return new FolderTemplate(template, List.copyOf(segments));
+    }
+
+    /**
+     * Compiles the contents of a pair of braces.
+     */
+    private static void compileField(String template, String field, List<Segment> segments) {
+        if (field.equals("desc")) {
+            segments.add((out, year, month, day, description) -> {
+                if (description == null) {
+                    return false;
+                }
+                out.append(description);
+                return true;
+            });
+            return;
+        }
+
+        var literal = new StringBuilder();
+        for (int i = 0; i < field.length(); ) {
+            var c = field.charAt(i);
+            var end = i;
+            while (end < field.length() && field.charAt(end) == c) {
+                end++;
+            }
+            var run = field.substring(i, end);
+            Segment number = switch (run) {
+                case "yyyy" -> (out, year, month, day, description) -> appendDigits(out, year, 4);
+                case "yy" -> (out, year, month, day, description) -> appendDigits(out, year % 100, 2);
+                case "MM" -> (out, year, month, day, description) -> appendDigits(out, month, 2);
+                case "dd" -> (out, year, month, day, description) -> appendDigits(out, day, 2);
+                default -> null;
+            };
+            if (number != null) {
+                addLiteral(segments, literal);
+                segments.add(number);
+            } else if (Character.isLetter(c)) {
+                throw new IllegalArgumentException("Unknown field '" + run + "' in folder template: " + template);
+            } else {
+                literal.append(run.replace("/", File.separator));
+            }
+            i = end;
+        }
+        addLiteral(segments, literal);
+    }
+
+    private static void addLiteral(List<Segment> segments, StringBuilder literal) {
+        if (!literal.isEmpty()) {
+            var text = literal.toString();
+            segments.add((out, year, month, day, description) -> {
+                out.append(text);
+                return true;
+            });
+            literal.setLength(0);
+        }
+    }
+
+    private static Segment optionalSegment(List<Segment> parts) {
+        return (out, year, month, day, description) -> {
+            var length = out.length();
+            for (var part : parts) {
+                if (!part.write(out, year, month, day, description)) {
+                    out.setLength(length);
+                    break;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static boolean appendDigits(StringBuilder out, int value, int digits) {
+        // Pad with zeros, without going through String.format
+        for (int i = 1, limit = 10; i < digits; i++, limit *= 10) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        out.append(value);
+        return true;
+    }
+
+    /**
+     * Renders the output directory for a date.
+     *
+     * @param destinationDirectory Directory the output directories are created in.
+     * @param year The year.
+     * @param month The month, from 1.
+     * @param day The day of the month.
+     * @param description The description from the folder name the date came from, or null if it didn't come from one.
+     * @return The output directory.
+     */
+    public String render(String destinationDirectory, int year, int month, int day, String description) {
+        var out = new StringBuilder(destinationDirectory.length() + 32);
+        out.append(destinationDirectory);
+        out.append(File.separator);
+        var start = out.length();
+        for (var segment : segments) {
+            segment.write(out, year, month, day, description);
+        }
+
+        // A {desc} outside square brackets leaves the text around it behind when there's no description
+        if (description == null) {
+            return trimNames(out, start);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Strips the spaces around each directory name rendered after the given position, and drops names left empty,
+     * since Windows and SMB shares don't handle names that start or end with a space.
+     */
+    private static String trimNames(StringBuilder out, int start) {
+        var trimmed = new StringBuilder(out.length());
+        trimmed.append(out, 0, start);
+        for (int from = start; from <= out.length(); ) {
+            var end = out.indexOf(File.separator, from);
+            if (end < 0) {
+                end = out.length();
+            }
+            var name = out.substring(from, end).strip();
+            if (!name.isEmpty()) {
+                if (trimmed.length() > start) {
+                    trimmed.append(File.separator);
+                }
+                trimmed.append(name);
+            }
+            from = end + File.separator.length();
+        }
+        return trimmed.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hashes files and reads the dates they were taken in the same pass over each file, so a run that both
+ * deduplicates and organizes by date reads every file once instead of twice.
+ * <p>
+ * The checksum is calculated by a ChecksumReader, which hands the file to CaptureDateReader once it's hashed. The
+ * date is parsed from the first bytes that were hashed, and anything it needs further on, such as a movie header at
+ * the end of the file, has just been read and is still in the page cache. The dates are kept until they're asked
+ * for. Files that weren't hashed in this run, for example because their checksum was cached, have their date read
+ * by a fallback function instead. Dates that are never asked for, such as those of skipped duplicates, should be
+ * discarded once the file is dealt with.
+ */
+public class FusedMediaReader {
+
+    // Calculates the checksums
+    private final ChecksumReader checksumReader;
+
+    // Reads the dates of files that weren't hashed in this run
+    private final Function<File, Optional<LocalDateTime>> fallback;
+
+    // Dates read while hashing, keyed by path, until they're asked for
+    private final Map<String, Optional<LocalDateTime>> dates = new ConcurrentHashMap<>();
+
+    private final AtomicLong fusedReads = new AtomicLong();
+    private final AtomicLong separateReads = new AtomicLong();
+
+    /**
+     * Constructor for the FusedMediaReader class.
+     *
+     * @param checksumReader Calculates the checksums.
+     * @param fallback Reads the dates of files that weren't hashed in this run. If null, CaptureDateReader is used.
+     */
+    public FusedMediaReader(ChecksumReader checksumReader, Function<File, Optional<LocalDateTime>> fallback) {
+        this.checksumReader = checksumReader;
+        this.fallback = fallback != null ? fallback : CaptureDateReader::read;
+    }
+
+    /**
+     * Calculates the checksum of a file, and reads its capture date from the same read. Can be called from several
+     * threads at once.
+     *
+     * @param f The file to hash.
+     * @return The checksum, or empty if the file couldn't be read.
+     */
+    public Optional<byte[]> checksum(File f) {
+        return this.checksumReader.checksum(f, (channel, header) -> dates.put(f.getPath(), CaptureDateReader.read(channel, header)));
+    }
+
+    /**
+     * Returns the capture date of a file, from when it was hashed if it was, otherwise by reading it. Each file's
+     * date is handed out once.
+     *
+     * @param f The file.
+     * @return The capture date, or empty if the file has none.
+     */
+    public Optional<LocalDateTime> captureDate(File f) {
+        var date = dates.remove(f.getPath());
+        if (date != null) {
+            fusedReads.incrementAndGet();
+            return date;
+        }
+        separateReads.incrementAndGet();
+        return this.fallback.apply(f);
+    }
+
+    /**
+     * Drops the date read for a file while hashing, if it wasn't asked for. Called once the file has been organized
+     * or skipped.
+     *
+     * @param f The file.
+     */
+    public void discard(File f) {
+        dates.remove(f.getPath());
+    }
+
+    /**
+     * Returns the number of dates read while hashing that haven't been asked for or discarded yet.
+     *
+     * @return The number of dates held.
+     */
+    public int getHeldDates() {
+        return dates.size();
+    }
+
+    /**
+     * Returns the number of dates that were read along with the checksum.
+     *
+     * @return The number of dates that needed no read of their own.
+     */
+    public long getFusedReads() {
+        return fusedReads.get();
+    }
+
+    /**
+     * Returns the number of dates that were read by the fallback function.
+     *
+     * @return The number of dates read separately.
+     */
+    public long getSeparateReads() {
+        return separateReads.get();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The algorithms that can be used to calculate file checksums.
+ */
+public enum HashAlgorithm {
+    MD5("MD5"),
+    SHA_256("SHA-256"),
+    MURMUR3_128(Murmur3Digest.ALGORITHM);
+
+    private final String name;
+
+    HashAlgorithm(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the algorithm. Stored alongside saved checksums so checksums calculated with different
+     * algorithms are never compared.
+     *
+     * @return The name of the algorithm.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates a new digest for this algorithm.
+     *
+     * @return A new MessageDigest.
+     * @throws NoSuchAlgorithmException if the JDK doesn't provide the algorithm.
+     */
+    public MessageDigest newDigest() throws NoSuchAlgorithmException {
+        if (this == MURMUR3_128) {
+            return new Murmur3Digest();
+        }
+        return MessageDigest.getInstance(name);
+    }
+}
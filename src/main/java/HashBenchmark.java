@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Measures checksum throughput of each hash algorithm over the files in the input directories, so an algorithm can
+ * be chosen based on the real mix of file sizes.
+ * <p>
+ * Every algorithm hashes all the files once before timing starts, which also reads them into the page cache, so point
+ * it at a sample that fits in memory if the intent is to compare the algorithms rather than the disks. The timed
+ * rounds take turns between the algorithms and the fastest round of each is reported, so none of them is favoured by
+ * running first or last.
+ */
+public class HashBenchmark {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(HashBenchmark.class);
+
+    // Upper bounds of the file size buckets that are reported
+    private static final long[] SIZE_BUCKETS = {64L * 1024, 1024L * 1024, 16L * 1024 * 1024, 256L * 1024 * 1024, Long.MAX_VALUE};
+
+    // Number of timed rounds over the files for each algorithm
+    private static final int ROUNDS = 3;
+
+    // List of directories to read files from
+    private final List<String> directories;
+
+    private final ChecksumReader.ReadMode readMode;
+    private final int bufferSize;
+
+    /**
+     * Constructor for the HashBenchmark class.
+     *
+     * @param directories List of directories to read files from.
+     * @param readMode The read strategy used for every algorithm.
+     * @param bufferSize The number of bytes read at a time.
+     */
+    public HashBenchmark(List<String> directories, ChecksumReader.ReadMode readMode, int bufferSize) {
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.readMode = readMode;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Hashes every file with each algorithm and logs the throughput.
+     *
+     * @return The results, in the order the algorithms were measured.
+     * @throws IOException if an I/O error occurs while walking the directories.
+     */
+    public List<Result> run() throws IOException {
+        var files = new ArrayList<File>();
+        for (String dirName : directories) {
+            try (var paths = Files.walk(Paths.get(dirName))) {
+                paths.map(path -> path.toFile()).filter(File::isFile).forEach(files::add);
+            }
+        }
+        logSizeDistribution(files);
+
+        // Warm up the page cache and the JIT for each algorithm before anything is timed
+        var algorithms = HashAlgorithm.values();
+        var readers = new ChecksumReader[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            readers[i] = new ChecksumReader(algorithms[i], readMode, bufferSize);
+            files.forEach(readers[i]::checksum);
+        }
+
+        // Take turns between the algorithms and keep the fastest round of each
+        var fastest = new Result[algorithms.length];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < algorithms.length; i++) {
+                var result = time(algorithms[i], readers[i], files);
+                if (fastest[i] == null || result.nanos() < fastest[i].nanos()) {
+                    fastest[i] = result;
+                }
+            }
+        }
+
+        var results = new ArrayList<Result>();
+        for (var result : fastest) {
+            logger.info("{}: {} files, {} MB in {} ms, {} MB/s", result.algorithm().getName(), result.files(),
+                    result.bytes() / (1024 * 1024), result.nanos() / 1_000_000, String.format("%.1f", result.megabytesPerSecond()));
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Hashes every file once with an algorithm.
+     *
+     * @param algorithm The algorithm being measured.
+     * @param reader Calculates the checksums with the algorithm.
+     * @param files The files being measured.
+     * @return How long it took.
+     */
+    private static Result time(HashAlgorithm algorithm, ChecksumReader reader, List<File> files) {
+        long bytes = 0;
+        var start = System.nanoTime();
+        for (var file : files) {
+            if (reader.checksum(file).isPresent()) {
+                bytes += file.length();
+            }
+        }
+        return new Result(algorithm, files.size(), bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Logs how many files, and how many bytes, fall into each size bucket.
+     *
+     * @param files The files being measured.
+     */
+    private void logSizeDistribution(List<File> files) {
+        var counts = new long[SIZE_BUCKETS.length];
+        var bytes = new long[SIZE_BUCKETS.length];
+        for (var file : files) {
+            var size = file.length();
+            var bucket = 0;
+            while (size >= SIZE_BUCKETS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            bytes[bucket] += size;
+        }
+
+        long lower = 0;
+        for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+            if (SIZE_BUCKETS[i] == Long.MAX_VALUE) {
+                logger.info("Files from {} KB: {} files, {} MB", lower / 1024, counts[i], bytes[i] / (1024 * 1024));
+            } else {
+                logger.info("Files from {} KB to {} KB: {} files, {} MB", lower / 1024, SIZE_BUCKETS[i] / 1024, counts[i], bytes[i] / (1024 * 1024));
+            }
+            lower = SIZE_BUCKETS[i];
+        }
+    }
+
+    /**
+     * The throughput of one algorithm.
+     */
+    public record Result(HashAlgorithm algorithm, long files, long bytes, long nanos) {
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+        }
+    }
+}
@@ -1,14 +1,16 @@
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 
 /**
  * Interface for classes that build checksums for files.
  */
-public interface IChecksumBuilder {
+public interface IChecksumBuilder extends Closeable {
 
     /**
      * Retrieves a map of checksums and their corresponding files.
@@ -24,4 +26,23 @@ public interface IChecksumBuilder {
      * @throws IOException if an I/O error occurs during the checksum calculation.
      */
     void calculateChecksums() throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * Passes each group of files that share a checksum to the consumer. Implementations that don't keep the whole
+     * map in memory hand over one group at a time instead of building the map.
+     *
+     * @param consumer Receives the checksum (String) and the List of SimpleEntry objects with that checksum.
+     */
+    default void forEachChecksumGroup(BiConsumer<String, List<AbstractMap.SimpleEntry<String, File>>> consumer) {
+        getChecksumMap().forEach(consumer);
+    }
+
+    /**
+     * Releases anything held by the builder, such as temporary files. Does nothing by default.
+     *
+     * @throws IOException if the resources couldn't be released.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
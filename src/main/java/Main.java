@@ -24,8 +24,17 @@
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
@@ -34,6 +43,9 @@ public class Main {
 
     private static final Logger logger = LogManager.getLogger(Main.class);
 
+    // Time between progress lines with the perf logging profile
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000;
+
     public static void main(String[] args) {
 
         var cmdArgsReturn = CommandLineArguments.parse(args);
@@ -43,26 +55,304 @@ public class Main {
         }
 
         var cmdArgs = cmdArgsReturn.get();
+        if (cmdArgs.getLogProfile().equals("perf")) {
+            useLogProfile("/log4j2-perf.xml");
+        }
+        Metrics.registerMBeans();
+        var fileWalker = new FileWalker(cmdArgs.getIncludes(), cmdArgs.getExcludes(), cmdArgs.getWalkThreads());
+
+        // Writes the metrics until the run is over
+        MetricsReporter metricsReporter = null;
         try {
+            metricsReporter = createMetricsReporter(cmdArgs);
             if (cmdArgs.isPreview()) {
                 logger.info("Running in preview mode. No files will be modified.");
             }
 
             if (cmdArgs.getAction().equals("deduplicate")) {
-                var checksumBuilder = new ChecksumBuilder(cmdArgs.getInputDirs(), null);
-                checksumBuilder.calculateChecksums();
-                var checksumMap = checksumBuilder.getChecksumMap();
-                var deduplicator = new DeduplicateFiles(cmdArgs.getOutputDir(), cmdArgs.isPreview());
-                deduplicator.copyAndDeduplicateFiles(checksumMap);
+                try (var checksumCache = openChecksumCache(cmdArgs); var catalog = openCatalog(cmdArgs)) {
+                    var checksumFunction = createChecksumFunction(cmdArgs, checksumCache);
+
+                    try (var checkpoint = openCheckpoint(cmdArgs); var progress = createProgressReporter(cmdArgs, "Hashed");
+                         var copyExecutor = createCopyExecutor(cmdArgs)) {
+                        if (progress != null) {
+                            checksumFunction = progress.wrap(checksumFunction);
+                        }
+
+                        var deduplicator = new DeduplicateFiles(cmdArgs.getOutputDir(), cmdArgs.isPreview(), DeduplicateOptions.builder()
+                                .copyExecutor(copyExecutor)
+                                .transferMode(cmdArgs.getTransferMode())
+                                .checkpoint(checkpoint)
+                                .catalog(catalog)
+                                .build());
+                        if (cmdArgs.isPipeline()) {
+                            logger.info("Copying files while hashing");
+                            new PipelinedDeduplicator(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), deduplicator, fileWalker).run();
+                        } else {
+                            try (var checksumBuilder = createChecksumBuilder(cmdArgs, checksumFunction, fileWalker)) {
+                                checksumBuilder.calculateChecksums();
+                                deduplicator.copyAndDeduplicateFiles(checksumBuilder);
+                            }
+                        }
+                    }
+
+                    if (catalog != null) {
+                        logger.info("{} files were already in the catalog", catalog.getFound());
+                    }
+                    if (checksumCache != null && cmdArgs.isCompactCache()) {
+                        checksumCache.compact();
+                    }
+                }
+
+            } else if (cmdArgs.getAction().equals("catalog")) {
+                try (var checksumCache = openChecksumCache(cmdArgs); var catalog = openCatalog(cmdArgs);
+                     var checksumBuilder = createChecksumBuilder(cmdArgs, createChecksumFunction(cmdArgs, checksumCache), fileWalker)) {
+                    checksumBuilder.calculateChecksums();
+
+                    var added = new AtomicLong();
+                    checksumBuilder.forEachChecksumGroup((checksum, files) -> {
+                        if (catalog.add(HexFormat.of().parseHex(checksum))) {
+                            added.incrementAndGet();
+                        }
+                    });
+                    logger.info("Added {} checksums to the catalog", added.get());
+                }
+
+            } else if (cmdArgs.getAction().equals("benchmark")) {
+                var benchmark = new HashBenchmark(cmdArgs.getInputDirs(), cmdArgs.getReadMode(), cmdArgs.getBufferSize());
+                benchmark.run();
 
             } else if (cmdArgs.getAction().equals("organize")) {
-                for (String inputDir : cmdArgs.getInputDirs()) {
-                    var dateOrganizer = new DateOrganizer(inputDir, cmdArgs.getOutputDir(), cmdArgs.getDateFormat(), cmdArgs.isPreview());
-                    dateOrganizer.organizeFiles();
+                try (var journal = openJournal(cmdArgs); var dateCache = openDateCache(cmdArgs);
+                     var progress = createProgressReporter(cmdArgs, "Organized")) {
+                    Function<File, Optional<LocalDateTime>> captureDates = null;
+                    if (cmdArgs.isReadDates()) {
+                        captureDates = CaptureDateReader::read;
+                        if (dateCache != null) {
+                            captureDates = dateCache.wrap(captureDates);
+                        }
+                    }
+
+                    // Files whose names collide in the destination are compared with the configured algorithm
+                    var checksumReader = createChecksumReader(cmdArgs);
+                    var options = OrganizeOptions.builder()
+                            .transferMode(cmdArgs.getTransferMode())
+                            .journal(journal)
+                            .fileWalker(fileWalker)
+                            .captureDates(captureDates)
+                            .inputPatterns(cmdArgs.getInputPatterns())
+                            .layout(cmdArgs.getLayout())
+                            .checksumFunction(Metrics.wrap(checksumReader::checksum))
+                            .build();
+
+                    if (cmdArgs.getThreads() > 1) {
+                        logger.info("Organizing with {} threads", cmdArgs.getThreads());
+                        var dateOrganizer = new ParallelDateOrganizer(cmdArgs.getInputDirs(), cmdArgs.getOutputDir(), cmdArgs.getDateFormat(), cmdArgs.isPreview(), cmdArgs.getThreads(), progress, options);
+                        dateOrganizer.organizeFiles();
+                    } else {
+                        var destinationAllocator = new DestinationAllocator(options.getChecksumFunction());
+                        for (String inputDir : cmdArgs.getInputDirs()) {
+                            var dateOrganizer = new DateOrganizer(inputDir, cmdArgs.getOutputDir(), cmdArgs.getDateFormat(), cmdArgs.isPreview(), options, destinationAllocator);
+                            dateOrganizer.organizeFiles(progress);
+                        }
+                    }
+                }
+
+            } else if (cmdArgs.getAction().equals("dedupe-and-organize")) {
+                try (var checksumCache = openChecksumCache(cmdArgs); var dateCache = openDateCache(cmdArgs);
+                     var progress = createProgressReporter(cmdArgs, "Hashed")) {
+                    // Read the capture dates while hashing, a date cache only serves the files whose checksums were cached
+                    logger.info("Using {} checksums", cmdArgs.getHashAlgorithm().getName());
+                    var checksumReader = createChecksumReader(cmdArgs);
+                    var fusedReader = new FusedMediaReader(checksumReader, null);
+                    Function<File, Optional<byte[]>> checksumFunction = Metrics.wrap(fusedReader::checksum);
+                    if (checksumCache != null) {
+                        checksumFunction = checksumCache.wrap(checksumFunction);
+                    }
+                    if (progress != null) {
+                        checksumFunction = progress.wrap(checksumFunction);
+                    }
+                    Function<File, Optional<LocalDateTime>> captureDates = fusedReader::captureDate;
+                    if (dateCache != null) {
+                        captureDates = dateCache.wrap(captureDates);
+                    }
+
+                    try (var checksumBuilder = createChecksumBuilder(cmdArgs, checksumFunction, fileWalker)) {
+                        var organizer = new DeduplicatingOrganizer(checksumBuilder, cmdArgs.getInputDirs(), cmdArgs.getOutputDir(), cmdArgs.getDateFormat(), cmdArgs.isPreview(), OrganizeOptions.builder()
+                                .transferMode(cmdArgs.getTransferMode())
+                                .captureDates(captureDates)
+                                .inputPatterns(cmdArgs.getInputPatterns())
+                                .layout(cmdArgs.getLayout())
+                                .checksumFunction(Metrics.wrap(checksumReader::checksum))
+                                .build(), fusedReader::discard);
+                        organizer.organizeFiles();
+                    }
+                    logger.info("Read {} capture dates while hashing, {} separately", fusedReader.getFusedReads(), fusedReader.getSeparateReads());
+
+                    if (checksumCache != null && cmdArgs.isCompactCache()) {
+                        checksumCache.compact();
+                    }
                 }
             }
         } catch (IOException e) {
             logger.error("An error occurred while processing files: {}", e.getMessage());
+        } finally {
+            closeMetricsReporter(metricsReporter);
+        }
+    }
+
+    private static void closeMetricsReporter(MetricsReporter metricsReporter) {
+        if (metricsReporter == null) {
+            return;
+        }
+        try {
+            metricsReporter.close();
+        } catch (IOException e) {
+            logger.error("Couldn't write the last metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Switches to another logging configuration on the classpath.
+     */
+    private static void useLogProfile(String resource) {
+        try {
+            Configurator.reconfigure(Main.class.getResource(resource).toURI());
+        } catch (URISyntaxException | NullPointerException e) {
+            logger.error("Couldn't load logging profile {}: {}", resource, e.getMessage());
+        }
+    }
+
+    /**
+     * With the perf logging profile there's no line for every file, so progress is logged periodically instead.
+     */
+    private static ProgressReporter createProgressReporter(CommandLineArguments cmdArgs, String action) {
+        if (!cmdArgs.getLogProfile().equals("perf")) {
+            return null;
+        }
+
+        // The totals aren't known without walking the input directories twice, so no time left is estimated
+        return new ProgressReporter(action, null, PROGRESS_INTERVAL_MILLIS);
+    }
+
+    private static MetricsReporter createMetricsReporter(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getMetricsFile() == null) {
+            return null;
+        }
+
+        logger.info("Writing metrics to {}", cmdArgs.getMetricsFile());
+        return new MetricsReporter(Path.of(cmdArgs.getMetricsFile()), cmdArgs.getMetricsInterval() * 1000L);
+    }
+
+    private static ChecksumCache openChecksumCache(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getCacheFile() == null && cmdArgs.getCheckpointFile() != null) {
+            // Without a cache, the checksums calculated so far are checkpointed next to the copied groups
+            var cacheFile = Path.of(cmdArgs.getCheckpointFile() + ".checksums");
+            if (!cmdArgs.isResume() && !cmdArgs.isPreview()) {
+                ChecksumCache.invalidate(cacheFile);
+            }
+            return new ChecksumCache(cacheFile, cmdArgs.getHashAlgorithm().getName());
+        }
+        if (cmdArgs.getCacheFile() == null) {
+            return null;
+        }
+
+        var cacheFile = Path.of(cmdArgs.getCacheFile());
+        if (cmdArgs.isClearCache()) {
+            ChecksumCache.invalidate(cacheFile);
+        }
+        return new ChecksumCache(cacheFile, cmdArgs.getHashAlgorithm().getName());
+    }
+
+    private static ChecksumReader createChecksumReader(CommandLineArguments cmdArgs) {
+        var readMode = ChecksumReader.readModeFor(cmdArgs.getReadMode(), cmdArgs.getTransferMode());
+        if (readMode != cmdArgs.getReadMode() && cmdArgs.getReadMode() == ChecksumReader.ReadMode.MAPPED) {
+            logger.info("Reading files through a FileChannel, mapped files couldn't be moved until they're unmapped");
+        }
+        return new ChecksumReader(cmdArgs.getHashAlgorithm(), readMode, cmdArgs.getBufferSize());
+    }
+
+    private static Function<File, Optional<byte[]>> createChecksumFunction(CommandLineArguments cmdArgs, ChecksumCache checksumCache) {
+        logger.info("Using {} checksums", cmdArgs.getHashAlgorithm().getName());
+        var checksumReader = createChecksumReader(cmdArgs);
+        Function<File, Optional<byte[]>> checksumFunction = Metrics.wrap(checksumReader::checksum);
+        if (checksumCache != null) {
+            checksumFunction = checksumCache.wrap(checksumFunction);
+        }
+        return checksumFunction;
+    }
+
+    private static MediaCatalog openCatalog(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getCatalogFile() == null) {
+            return null;
+        }
+        return new MediaCatalog(Path.of(cmdArgs.getCatalogFile()), cmdArgs.getHashAlgorithm().getName());
+    }
+
+    private static DeduplicateCheckpoint openCheckpoint(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getCheckpointFile() == null || (cmdArgs.isPreview() && !cmdArgs.isResume())) {
+            return null;
+        }
+
+        var checkpointFile = Path.of(cmdArgs.getCheckpointFile());
+        if (!cmdArgs.isResume()) {
+            DeduplicateCheckpoint.invalidate(checkpointFile);
+        }
+        return new DeduplicateCheckpoint(checkpointFile, cmdArgs.getOutputDir(), cmdArgs.getHashAlgorithm().getName());
+    }
+
+    private static OrganizeJournal openJournal(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getJournalFile() == null) {
+            return null;
+        }
+
+        var journalFile = Path.of(cmdArgs.getJournalFile());
+        if (cmdArgs.isClearJournal()) {
+            OrganizeJournal.invalidate(journalFile);
+        }
+        return new OrganizeJournal(journalFile, cmdArgs.getOutputDir(), cmdArgs.getDateFormat(), cmdArgs.getInputPatterns(), cmdArgs.getLayout());
+    }
+
+    private static CaptureDateCache openDateCache(CommandLineArguments cmdArgs) throws IOException {
+        if (cmdArgs.getDateCacheFile() == null) {
+            return null;
+        }
+        return new CaptureDateCache(Path.of(cmdArgs.getDateCacheFile()));
+    }
+
+    private static CopyExecutor createCopyExecutor(CommandLineArguments cmdArgs) {
+        if (cmdArgs.isPreview()) {
+            return null;
+        }
+
+        var copiesPerDevice = cmdArgs.getCopiesPerDevice() > 0 ? cmdArgs.getCopiesPerDevice() : cmdArgs.getCopyThreads();
+        logger.info("Copying up to {} files at once, {} per disk", cmdArgs.getCopyThreads(), copiesPerDevice);
+        return new CopyExecutor(cmdArgs.getCopyThreads(), copiesPerDevice, cmdArgs.getTransferMode());
+    }
+
+    private static IChecksumBuilder createChecksumBuilder(CommandLineArguments cmdArgs, Function<File, Optional<byte[]>> checksumFunction,
+                                                          FileWalker fileWalker) {
+        if (cmdArgs.isSimilar()) {
+            logger.info("Grouping similar photos, up to {} bits apart", cmdArgs.getMaxDistance());
+            return new NearDuplicateChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), cmdArgs.getMaxDistance(), fileWalker);
+        }
+        if (cmdArgs.getIndex().equals("external")) {
+            logger.info("Sorting checksums on disk");
+            var spillDir = cmdArgs.getSpillDir() == null ? null : Path.of(cmdArgs.getSpillDir());
+            return new ExternalChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), spillDir, cmdArgs.getRunSize(), fileWalker);
+        }
+        if (cmdArgs.getIndex().equals("compact")) {
+            logger.info("Using the compact checksum index");
+            return new CompactChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), fileWalker);
+        }
+        if (cmdArgs.isSizeFirst()) {
+            logger.info("Comparing file sizes before hashing");
+            return new SizeFilteredChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), fileWalker);
+        }
+        if (cmdArgs.getThreads() > 1) {
+            logger.info("Hashing with {} threads", cmdArgs.getThreads());
+            return new ParallelChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, cmdArgs.getThreads(), fileWalker);
         }
+        return new ChecksumBuilder(cmdArgs.getInputDirs(), checksumFunction, fileWalker);
     }
 }
\ No newline at end of file
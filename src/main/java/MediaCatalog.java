@@ -0,0 +1,488 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A persistent catalog of the checksums of the files already in the organized output, so new files can be checked
+ * against the archive without hashing the archive again.
+ * <p>
+ * The catalog is kept in a file of fixed-width checksums in sorted order, followed by a Bloom filter of the same
+ * checksums. The sorted checksums are memory mapped and looked up with a binary search, and the Bloom filter rules
+ * out most checksums that aren't in the catalog without touching the sorted checksums at all, so a lookup stays
+ * cheap with tens of millions of entries. Checksums added during a run are appended to a RecordLog next to the
+ * catalog, named after it with ".added" on the end, and kept in memory. The log is kept between runs as a delta to
+ * the sorted file until it holds more than an eighth of the catalog, or 100000 checksums, and only then are they
+ * merged into a new sorted file and the log deleted, so a run that adds a few files doesn't rewrite the whole
+ * catalog.
+ * <p>
+ * The new sorted file is written next to the catalog and renamed to ".pending" once it's complete, and then renamed
+ * over the catalog. Some systems don't allow a mapped file to be replaced, and a mapping is only released when it's
+ * garbage collected, so if that last rename fails the pending file is installed by the next run before the catalog
+ * is mapped, and the log is kept until then.
+ * <p>
+ * The header names the checksum algorithm, so a catalog written with a different algorithm is discarded.
+ */
+public class MediaCatalog implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(MediaCatalog.class);
+
+    // Marks the start of a catalog file
+    private static final int MAGIC = 0x4D4F4443;
+
+    // Version of the catalog file format
+    private static final int VERSION = 1;
+
+    // Bloom filter bits for each checksum and bits set by each checksum, which gives about 1% false positives
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    // Largest part of the sorted checksums mapped by a single buffer
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    // Buffer size used when reading and writing the catalog file
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Number of new entries after which they're written to disk
+    private static final int FLUSH_INTERVAL = 1000;
+
+    // The added checksums are merged into the sorted file once they're more than this fraction of it, or this many
+    private static final int DELTA_FRACTION = 8;
+    private static final int MAX_DELTA_ENTRIES = 100_000;
+
+    // The file holding the sorted checksums
+    private final Path file;
+
+    // Name of the checksum algorithm the catalog was built with
+    private final String algorithm;
+
+    // Checksums added since the sorted file was written
+    private final RecordLog log;
+    private final Set<ByteBuffer> added = new HashSet<>();
+    private int unflushedEntries;
+
+    // Number of bytes in each checksum, or 0 until the first one is seen
+    private int digestLength;
+
+    // The sorted checksums, mapped in segments of whole checksums
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long sortedCount;
+    private int checksumsPerSegment;
+
+    // Bloom filter of the sorted checksums
+    private long[] bloom = new long[0];
+
+    private long lookups;
+    private long found;
+    private long bloomRejects;
+
+    /**
+     * Constructor for the MediaCatalog class. Maps the catalog file and loads any checksums added by a run that
+     * didn't close the catalog.
+     *
+     * @param file The catalog file. It's created when the first checksums are added.
+     * @param algorithm The name of the checksum algorithm. A catalog built with a different algorithm is discarded.
+     * @throws IOException if an I/O error occurs while reading the catalog.
+     */
+    public MediaCatalog(Path file, String algorithm) throws IOException {
+        this.file = file;
+        this.algorithm = algorithm;
+        this.log = new RecordLog(file.resolveSibling(file.getFileName() + ".added"), "media-catalog " + algorithm);
+
+        installPending();
+        load();
+        log.replay(in -> {
+            var digest = new byte[in.readUnsignedByte()];
+            in.readFully(digest);
+
+            // A merge whose log wasn't deleted, by a crash or a catalog that couldn't be replaced, leaves checksums that are already sorted
+            if (checkLength(digest) && !containsSorted(digest)) {
+                added.add(ByteBuffer.wrap(digest));
+            }
+        });
+
+        logger.info("Loaded {} checksums from catalog {}", size(), file);
+    }
+
+    /**
+     * Deletes a catalog, so it can be built again from scratch.
+     *
+     * @param file The catalog file.
+     * @throws IOException if the files couldn't be deleted.
+     */
+    public static void invalidate(Path file) throws IOException {
+        logger.info("Clearing catalog {}", file);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".added"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".pending"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+    }
+
+    /**
+     * Checks whether a file with the given checksum is already in the catalog.
+     *
+     * @param digest The checksum of the file.
+     * @return true if the checksum is in the catalog.
+     */
+    public synchronized boolean contains(byte[] digest) {
+        lookups++;
+        if (isKnown(digest)) {
+            found++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a checksum to the catalog. Can be called from several threads at once.
+     *
+     * @param digest The checksum of a file in the organized output.
+     * @return true if the checksum wasn't in the catalog yet.
+     */
+    public synchronized boolean add(byte[] digest) {
+        if (digestLength == 0) {
+            digestLength = digest.length;
+        } else if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Checksum must be " + digestLength + " bytes");
+        }
+        if (isKnown(digest)) {
+            return false;
+        }
+
+        var copy = digest.clone();
+        added.add(ByteBuffer.wrap(copy));
+        try {
+            log.append(out -> {
+                out.writeByte(copy.length);
+                out.write(copy);
+            });
+            if (++unflushedEntries >= FLUSH_INTERVAL) {
+                unflushedEntries = 0;
+                log.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write catalog entry: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of checksums in the catalog.
+     *
+     * @return The number of checksums.
+     */
+    public synchronized long size() {
+        return sortedCount + added.size();
+    }
+
+    /**
+     * Returns the number of lookups that found their checksum in the catalog.
+     *
+     * @return The number of known files.
+     */
+    public synchronized long getFound() {
+        return found;
+    }
+
+    /**
+     * Returns the number of lookups the Bloom filter answered without searching the sorted checksums.
+     *
+     * @return The number of lookups ruled out by the Bloom filter.
+     */
+    public synchronized long getBloomRejects() {
+        return bloomRejects;
+    }
+
+    /**
+     * Merges the added checksums into the sorted file if there are enough of them, and otherwise keeps them in the
+     * log for the next run.
+     *
+     * @throws IOException if an I/O error occurs while writing the catalog.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        logger.info("Catalog lookups: {}, found: {}, ruled out by the Bloom filter: {}", lookups, found, bloomRejects);
+        log.close();
+        if (added.size() > Math.min(sortedCount / DELTA_FRACTION, MAX_DELTA_ENTRIES)) {
+            merge();
+            if (installPending()) {
+                Files.deleteIfExists(log.getFile());
+            }
+        } else if (!added.isEmpty()) {
+            logger.info("Keeping {} added checksums in {} until there are enough to merge", added.size(), log.getFile());
+        }
+    }
+
+    private boolean isKnown(byte[] digest) {
+        return added.contains(ByteBuffer.wrap(digest)) || containsSorted(digest);
+    }
+
+    private boolean containsSorted(byte[] digest) {
+        if (sortedCount == 0 || digest.length != digestLength) {
+            return false;
+        }
+        if (!mightContain(bloom, digest)) {
+            bloomRejects++;
+            return false;
+        }
+
+        long low = 0;
+        long high = sortedCount - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var cmp = compareSorted(mid, digest);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the sorted checksum at the given index with a checksum, treating the bytes as unsigned.
+     */
+    private int compareSorted(long index, byte[] digest) {
+        var segment = segments.get((int) (index / checksumsPerSegment));
+        var offset = (int) (index % checksumsPerSegment) * digestLength;
+        for (int i = 0; i < digestLength; i++) {
+            var cmp = Byte.compareUnsigned(segment.get(offset + i), digest[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private boolean checkLength(byte[] digest) {
+        if (digestLength == 0) {
+            digestLength = digest.length;
+        }
+        return digest.length == digestLength;
+    }
+
+    /**
+     * Maps the sorted checksums and reads the Bloom filter. A catalog with a different header is discarded.
+     */
+    private void load() throws IOException {
+        segments.clear();
+        sortedCount = 0;
+        bloom = new long[0];
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            long count;
+            int bloomWords;
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !algorithm.equals(in.readUTF())) {
+                    logger.warn("Discarding {}, it was written with a different format", file);
+                    return;
+                }
+                digestLength = in.readInt();
+                count = in.readLong();
+                bloomWords = in.readInt();
+            } catch (IOException e) {
+                logger.warn("Discarding {}, the header is unreadable", file);
+                return;
+            }
+
+            var checksumsStart = headerLength(count, bloomWords);
+            var bloomStart = checksumsStart + count * digestLength;
+            if (channel.size() != bloomStart + (long) bloomWords * Long.BYTES) {
+                logger.warn("Discarding {}, it's incomplete", file);
+                return;
+            }
+
+            checksumsPerSegment = SEGMENT_BYTES / digestLength;
+            for (long first = 0; first < count; first += checksumsPerSegment) {
+                var checksums = Math.min(checksumsPerSegment, count - first);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, checksumsStart + first * digestLength, checksums * digestLength));
+            }
+
+            channel.position(bloomStart);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            bloom = new long[bloomWords];
+            for (int i = 0; i < bloomWords; i++) {
+                bloom[i] = in.readLong();
+            }
+            sortedCount = count;
+        }
+    }
+
+    /**
+     * Writes the sorted checksums together with the added ones to a new catalog file, which becomes the pending file
+     * once it's complete, so a crash leaves either the old or the new catalog.
+     */
+    private void merge() throws IOException {
+        var newChecksums = new ArrayList<byte[]>(added.size());
+        for (var digest : added) {
+            newChecksums.add(digest.array());
+        }
+        newChecksums.sort(Arrays::compareUnsigned);
+
+        var count = sortedCount + newChecksums.size();
+        var bloomWords = (int) Math.max(1, (count * BLOOM_BITS_PER_ENTRY + 63) / 64);
+        var newBloom = new long[bloomWords];
+
+        var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var fos = new FileOutputStream(temp.toFile())) {
+            var out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+            writeHeader(out, count, bloomWords);
+
+            // Both lists are sorted and share no checksums, so a single merge pass keeps them in order
+            var sorted = new byte[digestLength];
+            long next = 0;
+            for (var digest : newChecksums) {
+                while (next < sortedCount && compareSorted(next, digest) < 0) {
+                    readSorted(next++, sorted);
+                    writeChecksum(out, sorted, newBloom);
+                }
+                writeChecksum(out, digest, newBloom);
+            }
+            while (next < sortedCount) {
+                readSorted(next++, sorted);
+                writeChecksum(out, sorted, newBloom);
+            }
+
+            for (var word : newBloom) {
+                out.writeLong(word);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        // Nothing is mapped from the pending file, so this rename can't be refused
+        segments.clear();
+        Files.move(temp, pendingFile(), StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Added {} checksums to catalog {}, which now holds {}", newChecksums.size(), file, count);
+        added.clear();
+    }
+
+    /**
+     * Replaces the catalog with a complete sorted file written by a merge, if there is one.
+     *
+     * @return true if there was no pending file left afterwards.
+     */
+    private boolean installPending() throws IOException {
+        var pending = pendingFile();
+        if (!Files.exists(pending)) {
+            return true;
+        }
+        try {
+            try {
+                Files.move(pending, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(pending, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (FileSystemException e) {
+            // The old catalog is still mapped, the next run installs the new one
+            logger.info("Couldn't replace {} yet, it's replaced on the next run: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private Path pendingFile() {
+        return file.resolveSibling(file.getFileName() + ".pending");
+    }
+
+    private void readSorted(long index, byte[] digest) {
+        var segment = segments.get((int) (index / checksumsPerSegment));
+        segment.get((int) (index % checksumsPerSegment) * digestLength, digest);
+    }
+
+    private static void writeChecksum(DataOutputStream out, byte[] digest, long[] bloom) throws IOException {
+        out.write(digest);
+        var bits = (long) bloom.length * 64;
+        var h1 = hash(digest, 0);
+        var h2 = hash(digest, 8);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            var bit = Math.floorMod(h1 + i * h2, bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static boolean mightContain(long[] bloom, byte[] digest) {
+        var bits = (long) bloom.length * 64;
+        var h1 = hash(digest, 0);
+        var h2 = hash(digest, 8);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            var bit = Math.floorMod(h1 + i * h2, bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads eight bytes of a checksum as a long. Checksums are already evenly distributed, so their bytes serve as
+     * the Bloom filter hashes directly. Shorter checksums wrap around.
+     */
+    private static long hash(byte[] digest, int offset) {
+        long h = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            h = (h << 8) | (digest[(offset + i) % digest.length] & 0xFF);
+        }
+        return h;
+    }
+
+    private void writeHeader(DataOutputStream out, long count, int bloomWords) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(algorithm);
+        out.writeInt(digestLength);
+        out.writeLong(count);
+        out.writeInt(bloomWords);
+    }
+
+    private long headerLength(long count, int bloomWords) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(bytes), count, bloomWords);
+        return bytes.size();
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, latency histograms and queue depths for the stages of a run, shared by every class that does the work.
+ * They can be read over JMX (see registerMBeans()) or written to a file by a MetricsReporter, to see which stage
+ * is holding a run up.
+ * <p>
+ * Timing a stage costs two calls to System.nanoTime() and a few atomic adds, which is small next to the file
+ * system call being timed.
+ */
+public final class Metrics {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(Metrics.class);
+
+    // Domain of the JMX object names
+    private static final String JMX_DOMAIN = "MediaOrganizer";
+
+    /**
+     * The stages of a run that are timed.
+     */
+    public enum Stage {
+        WALK,
+        STAT,
+        HASH,
+        MKDIR,
+        COPY,
+        DATE;
+
+        String getName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Map<Stage, Histogram> latencies = new EnumMap<>(Stage.class);
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static final LongAdder duplicateGroups = new LongAdder();
+    private static final LongAdder duplicateFiles = new LongAdder();
+
+    // Queues that are in use, by name
+    private static final Map<String, LongSupplier> queues = new ConcurrentHashMap<>();
+
+    private static volatile long startTime = System.nanoTime();
+
+    static {
+        for (var stage : Stage.values()) {
+            latencies.put(stage, new Histogram());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Records how long a stage took for one file or directory.
+     *
+     * @param stage The stage.
+     * @param startNanos The value of System.nanoTime() when the stage started.
+     */
+    public static void record(Stage stage, long startNanos) {
+        latencies.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    public static void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public static void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Counts a group of identical files.
+     */
+    public static void addDuplicateGroup() {
+        duplicateGroups.increment();
+    }
+
+    /**
+     * Counts a file that was skipped because an identical file was already copied.
+     */
+    public static void addDuplicateFile() {
+        duplicateFiles.increment();
+    }
+
+    /**
+     * Reports the depth of a queue until it's unregistered. A queue registered under a name that's in use replaces
+     * the old one.
+     *
+     * @param name The name of the queue, for example "copy".
+     * @param depth Returns the number of items in the queue. Called from other threads.
+     */
+    public static void registerQueue(String name, LongSupplier depth) {
+        queues.put(name, depth);
+    }
+
+    public static void unregisterQueue(String name) {
+        queues.remove(name);
+    }
+
+    /**
+     * Wraps a checksum function so every call is timed as a hash and the file size is counted as bytes read. Wrap
+     * the function that reads the files, inside any cache, so cache hits aren't counted.
+     *
+     * @param checksumFunction The function to wrap.
+     * @return The timed checksum function.
+     */
+    public static Function<File, Optional<byte[]>> wrap(Function<File, Optional<byte[]>> checksumFunction) {
+        return f -> {
+            var begin = System.nanoTime();
+            var checksum = checksumFunction.apply(f);
+            record(Stage.HASH, begin);
+            addBytesRead(f.length());
+            return checksum;
+        };
+    }
+
+    /**
+     * Registers the metrics as platform MXBeans: one MediaOrganizer:type=Run with the counters and queue depths,
+     * and one MediaOrganizer:type=Stage,name=stage for the latencies of each stage. Does nothing if they're already
+     * registered.
+     */
+    public static synchronized void registerMBeans() {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            var runName = new ObjectName(JMX_DOMAIN + ":type=Run");
+            if (server.isRegistered(runName)) {
+                return;
+            }
+
+            server.registerMBean(new Run(), runName);
+            for (var stage : Stage.values()) {
+                server.registerMBean(new StageLatency(stage), new ObjectName(JMX_DOMAIN + ":type=Stage,name=" + stage.getName()));
+            }
+        } catch (JMException e) {
+            logger.warn("Couldn't register metrics with JMX: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Builds a JSON object with the current metrics, on one line. Latencies are in microseconds, for example
+     * {"time":"...","elapsedMillis":1200,"bytesRead":...,"queues":{"copy":12},"stages":{"walk":{"count":...}}}
+     *
+     * @return The metrics as JSON.
+     */
+    public static String toJson() {
+        var json = new StringBuilder("{");
+        json.append("\"time\":\"").append(Instant.now()).append('"');
+        json.append(",\"elapsedMillis\":").append((System.nanoTime() - startTime) / 1_000_000);
+        json.append(",\"bytesRead\":").append(bytesRead.sum());
+        json.append(",\"bytesWritten\":").append(bytesWritten.sum());
+        json.append(",\"duplicateGroups\":").append(duplicateGroups.sum());
+        json.append(",\"duplicateFiles\":").append(duplicateFiles.sum());
+
+        json.append(",\"queues\":{");
+        var first = true;
+        for (var queue : getQueueDepths().entrySet()) {
+            json.append(first ? "" : ",").append('"').append(queue.getKey()).append("\":").append(queue.getValue());
+            first = false;
+        }
+
+        json.append("},\"stages\":{");
+        first = true;
+        for (var stage : Stage.values()) {
+            var histogram = latencies.get(stage);
+            json.append(first ? "" : ",").append('"').append(stage.getName()).append("\":{");
+            json.append("\"count\":").append(histogram.count());
+            json.append(",\"totalMillis\":").append(histogram.totalNanos() / 1_000_000);
+            json.append(",\"p50Micros\":").append(histogram.percentile(0.5) / 1000);
+            json.append(",\"p99Micros\":").append(histogram.percentile(0.99) / 1000);
+            json.append(",\"maxMicros\":").append(histogram.max() / 1000);
+            json.append('}');
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    static long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    static long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    static long getDuplicateGroups() {
+        return duplicateGroups.sum();
+    }
+
+    static long getDuplicateFiles() {
+        return duplicateFiles.sum();
+    }
+
+    static Histogram getLatency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    static Map<String, Long> getQueueDepths() {
+        var depths = new TreeMap<String, Long>();
+        queues.forEach((name, depth) -> depths.put(name, depth.getAsLong()));
+        return depths;
+    }
+
+    /**
+     * Clears every metric. Used by tests.
+     */
+    static void reset() {
+        latencies.values().forEach(Histogram::reset);
+        bytesRead.reset();
+        bytesWritten.reset();
+        duplicateGroups.reset();
+        duplicateFiles.reset();
+        queues.clear();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Latencies in nanoseconds, counted in power of two buckets. Percentiles are the upper bound of the bucket
+     * they fall in, so they're within a factor of two of the real value.
+     */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            count.increment();
+            totalNanos.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            max.set(0);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * Finds the latency that a fraction of the calls took no longer than.
+         *
+         * @param fraction The fraction, for example 0.99.
+         * @return The latency in nanoseconds, or 0 if nothing has been recorded.
+         */
+        long percentile(double fraction) {
+            var target = (long) Math.ceil(count() * fraction);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= Math.max(target, 1)) {
+                    return Math.min(i == 62 ? Long.MAX_VALUE : (2L << i) - 1, max());
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Counters and queue depths for the whole run.
+     */
+    public interface RunMXBean {
+        long getElapsedMillis();
+
+        long getBytesRead();
+
+        long getBytesWritten();
+
+        long getDuplicateGroups();
+
+        long getDuplicateFiles();
+
+        Map<String, Long> getQueueDepths();
+    }
+
+    /**
+     * Latencies of one stage, in microseconds.
+     */
+    public interface StageMXBean {
+        long getCount();
+
+        long getTotalMillis();
+
+        double getMeanMicros();
+
+        long getP50Micros();
+
+        long getP90Micros();
+
+        long getP99Micros();
+
+        long getMaxMicros();
+    }
+
+    private static final class Run implements RunMXBean {
+        @Override
+        public long getElapsedMillis() {
+            return (System.nanoTime() - startTime) / 1_000_000;
+        }
+
+        @Override
+        public long getBytesRead() {
+            return Metrics.getBytesRead();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return Metrics.getBytesWritten();
+        }
+
+        @Override
+        public long getDuplicateGroups() {
+            return Metrics.getDuplicateGroups();
+        }
+
+        @Override
+        public long getDuplicateFiles() {
+            return Metrics.getDuplicateFiles();
+        }
+
+        @Override
+        public Map<String, Long> getQueueDepths() {
+            return Metrics.getQueueDepths();
+        }
+    }
+
+    private record StageLatency(Stage stage) implements StageMXBean {
+        @Override
+        public long getCount() {
+            return getLatency(stage).count();
+        }
+
+        @Override
+        public long getTotalMillis() {
+            return getLatency(stage).totalNanos() / 1_000_000;
+        }
+
+        @Override
+        public double getMeanMicros() {
+            var histogram = getLatency(stage);
+            return histogram.count() == 0 ? 0 : histogram.totalNanos() / 1000.0 / histogram.count();
+        }
+
+        @Override
+        public long getP50Micros() {
+            return getLatency(stage).percentile(0.5) / 1000;
+        }
+
+        @Override
+        public long getP90Micros() {
+            return getLatency(stage).percentile(0.9) / 1000;
+        }
+
+        @Override
+        public long getP99Micros() {
+            return getLatency(stage).percentile(0.99) / 1000;
+        }
+
+        @Override
+        public long getMaxMicros() {
+            return getLatency(stage).max() / 1000;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends the current Metrics to a file at a fixed interval, one JSON object per line, so a run can be followed
+ * by a monitoring tool or compared with other runs afterwards.
+ */
+public class MetricsReporter implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(MetricsReporter.class);
+
+    private final Path file;
+    private final BufferedWriter writer;
+    private final ScheduledExecutorService timer;
+
+    // Set after the first failed write, so a full disk doesn't log an error every interval
+    private boolean failed;
+
+    /**
+     * Constructor for the MetricsReporter class. Opens the file, appending to it if it exists, and starts writing
+     * straight away.
+     *
+     * @param file The file to write the metrics to.
+     * @param intervalMillis Time between lines.
+     * @throws IOException if the file couldn't be opened.
+     */
+    public MetricsReporter(Path file, long intervalMillis) throws IOException {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Metrics interval must be at least 1 ms");
+        }
+
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timer, writes a last line with the final metrics and closes the file.
+     *
+     * @throws IOException if the file couldn't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        try {
+            timer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        write();
+        writer.close();
+    }
+
+    /**
+     * Writes a line with the current metrics. Only called from the timer thread, or once the timer has stopped.
+     */
+    private synchronized void write() {
+        try {
+            writer.write(Metrics.toJson());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            if (!failed) {
+                logger.error("Couldn't write metrics to {}: {}", file, e.getMessage());
+                failed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * A MessageDigest implementing the 128-bit x64 variant of MurmurHash3 with a seed of 0.
+ * <p>
+ * MurmurHash3 isn't a cryptographic hash, but it spreads its output well enough to tell files apart, and is several
+ * times faster than MD5. The digest is h1 followed by h2, each written in little endian order, which matches the
+ * output of other common implementations.
+ */
+public class Murmur3Digest extends MessageDigest {
+
+    public static final String ALGORITHM = "MURMUR3-128";
+
+    // Size of the blocks the hash consumes
+    private static final int BLOCK_SIZE = 16;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    // Reads little endian longs from a byte array
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private long h1;
+    private long h2;
+
+    // Total number of bytes hashed
+    private long length;
+
+    // Bytes that don't yet make up a full block
+    private final byte[] pending = new byte[BLOCK_SIZE];
+    private int pendingLength;
+
+    public Murmur3Digest() {
+        super(ALGORITHM);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 16;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        pending[pendingLength++] = input;
+        length++;
+        if (pendingLength == BLOCK_SIZE) {
+            mixBlock(pending, 0);
+            pendingLength = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        length += len;
+        var end = offset + len;
+
+        // Complete a partly filled block first
+        if (pendingLength > 0) {
+            var n = Math.min(BLOCK_SIZE - pendingLength, len);
+            System.arraycopy(input, offset, pending, pendingLength, n);
+            pendingLength += n;
+            offset += n;
+            if (pendingLength < BLOCK_SIZE) {
+                return;
+            }
+            mixBlock(pending, 0);
+            pendingLength = 0;
+        }
+
+        while (end - offset >= BLOCK_SIZE) {
+            mixBlock(input, offset);
+            offset += BLOCK_SIZE;
+        }
+
+        pendingLength = end - offset;
+        System.arraycopy(input, offset, pending, 0, pendingLength);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        if (input.hasArray()) {
+            var len = input.remaining();
+            engineUpdate(input.array(), input.arrayOffset() + input.position(), len);
+            input.position(input.position() + len);
+            return;
+        }
+
+        // Fill the partial block so whole blocks can be read straight out of the buffer
+        while (pendingLength > 0 && input.hasRemaining()) {
+            engineUpdate(input.get());
+        }
+
+        var littleEndian = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        var position = input.position();
+        var blocksEnd = position + (input.remaining() / BLOCK_SIZE) * BLOCK_SIZE;
+        while (position < blocksEnd) {
+            mix(littleEndian.getLong(position), littleEndian.getLong(position + 8));
+            position += BLOCK_SIZE;
+        }
+        length += blocksEnd - input.position();
+        input.position(blocksEnd);
+
+        while (input.hasRemaining()) {
+            engineUpdate(input.get());
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = pendingLength - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (pending[i] & 0xffL);
+        }
+        for (int i = Math.min(pendingLength, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (pending[i] & 0xffL);
+        }
+        if (pendingLength > 8) {
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        }
+        if (pendingLength > 0) {
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        var digest = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+        pendingLength = 0;
+    }
+
+    private void mixBlock(byte[] block, int offset) {
+        mix((long) LONG_LE.get(block, offset), (long) LONG_LE.get(block, offset + 8));
+    }
+
+    private void mix(long k1, long k2) {
+        h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.function.Function;
+
+/**
+ * Class that implements the IChecksumBuilder interface and groups photos that look the same, even when they were
+ * re-encoded at another quality or resolution, as well as files that are byte for byte identical.
+ * <p>
+ * Each image is given a perceptual hash by PerceptualHasher, and the hashes are grouped by a NearDuplicateIndex.
+ * Files that aren't images, or can't be decoded, get a checksum as usual. The files in each group of similar images
+ * are ordered by resolution, largest first, so DeduplicateFiles keeps the highest resolution copy and skips the
+ * rest. Image groups are keyed by "image:" and the perceptual hash of the file that's kept, so those keys are not
+ * content checksums.
+ */
+public class NearDuplicateChecksumBuilder implements IChecksumBuilder {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(NearDuplicateChecksumBuilder.class);
+
+    // Default number of bits two perceptual hashes can differ in and still be the same photo
+    public static final int DEFAULT_MAX_DISTANCE = 5;
+
+    // Extensions of the files given a perceptual hash, the formats the JDK can decode
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp", "wbmp");
+
+    // Marks the kind of result in the bytes handed back by the hashing workers
+    private static final byte IMAGE_RESULT = 1;
+    private static final byte CHECKSUM_RESULT = 0;
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Map to store the groups of files and their keys
+    private final Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap = new LinkedHashMap<>();
+
+    // Function to calculate the checksum of files that aren't images
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    // Groups the perceptual hashes, and the image behind each entry
+    private final NearDuplicateIndex index;
+    private final List<Image> images = new ArrayList<>();
+
+    /**
+     * Constructor for the NearDuplicateChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate the checksum of files that aren't images. If null,
+     * default checksum function is used. The function is called from several threads at once.
+     * @param threads Number of worker threads used for hashing.
+     * @param maxDistance The number of bits two perceptual hashes can differ in and still be grouped, from 0 to 31.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public NearDuplicateChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                        int maxDistance, FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.threads = threads;
+        this.index = new NearDuplicateIndex(maxDistance);
+    }
+
+    /**
+     * Retrieves a map of keys and the groups of files that share them.
+     *
+     * @return a Map where the key is a checksum or image key (String) and the value is a List of SimpleEntry objects.
+     * Each SimpleEntry contains the directory name (String) and the corresponding File.
+     */
+    @Override
+    public Map<String, List<AbstractMap.SimpleEntry<String, File>>> getChecksumMap() {
+        return this.checksumMap;
+    }
+
+    /**
+     * Hashes every file in the directories, then groups the similar images.
+     *
+     * @throws IOException if an I/O error occurs during the checksum calculation.
+     */
+    @Override
+    public void calculateChecksums() throws IOException {
+        new OrderedHasher(this::fingerprint, this.threads, this.fileWalker).hashDirectories(directories, this::handleFile);
+        groupImages();
+    }
+
+    /**
+     * Calculates the perceptual hash of an image, or the checksum of any other file. Runs on the hashing workers, so
+     * the result is handed back as bytes starting with the kind of result.
+     *
+     * @param f The file to hash.
+     * @return The tagged result, or empty if the file couldn't be read.
+     */
+    private Optional<byte[]> fingerprint(File f) {
+        if (isImage(f)) {
+            var imageHash = PerceptualHasher.hash(f);
+            if (imageHash.isPresent()) {
+                var hash = imageHash.get();
+                return Optional.of(ByteBuffer.allocate(1 + Long.BYTES + 2 * Integer.BYTES)
+                        .put(IMAGE_RESULT).putLong(hash.hash()).putInt(hash.width()).putInt(hash.height()).array());
+            }
+        }
+
+        return this.checksumFunction.apply(f).map(checksum -> {
+            var result = new byte[checksum.length + 1];
+            result[0] = CHECKSUM_RESULT;
+            System.arraycopy(checksum, 0, result, 1, checksum.length);
+            return result;
+        });
+    }
+
+    /**
+     * Indexes the perceptual hash of an image, or adds any other file to the checksum map.
+     *
+     * @param inputDirName The name of the directory being scanned.
+     * @param f The file that was hashed.
+     * @param result The tagged result, or empty if the file couldn't be read.
+     */
+    private void handleFile(String inputDirName, File f, Optional<byte[]> result) {
+        logger.debug("File: {}", f.getAbsolutePath());
+        if (result.isEmpty()) {
+            return;
+        }
+
+        var buffer = ByteBuffer.wrap(result.get());
+        if (buffer.get() == IMAGE_RESULT) {
+            var hash = new PerceptualHasher.ImageHash(buffer.getLong(), buffer.getInt(), buffer.getInt());
+            logger.debug("Perceptual hash: {}", Long.toHexString(hash.hash()));
+            index.add(hash.hash());
+            images.add(new Image(new SimpleEntry<>(inputDirName, f), hash));
+        } else {
+            var checksum = new byte[buffer.remaining()];
+            buffer.get(checksum);
+            var key = ChecksumBuilder.toHexString(checksum);
+            logger.debug("Checksum: {}", key);
+            checksumMap.computeIfAbsent(key, k -> new ArrayList<>()).add(new SimpleEntry<>(inputDirName, f));
+        }
+    }
+
+    /**
+     * Adds the groups of similar images to the checksum map, each ordered with the highest resolution first.
+     */
+    private void groupImages() {
+        var groups = new LinkedHashMap<Integer, List<Image>>();
+        for (int id = 0; id < images.size(); id++) {
+            groups.computeIfAbsent(index.group(id), k -> new ArrayList<>()).add(images.get(id));
+        }
+
+        // The sort is stable, so copies with the same resolution stay in walk order
+        var byResolution = Comparator.comparingLong((Image image) -> image.hash().pixels())
+                .thenComparingLong(image -> image.file().getValue().length())
+                .reversed();
+        for (var group : groups.values()) {
+            group.sort(byResolution);
+            var files = new ArrayList<SimpleEntry<String, File>>(group.size());
+            for (var image : group) {
+                files.add(image.file());
+            }
+            checksumMap.put("image:" + String.format("%016x", group.get(0).hash().hash()), files);
+        }
+        logger.info("Found {} images in {} groups of similar images", images.size(), groups.size());
+    }
+
+    private static boolean isImage(File f) {
+        var name = f.getName();
+        var dot = name.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * An image along with its perceptual hash and resolution.
+     */
+    private record Image(SimpleEntry<String, File> file, PerceptualHasher.ImageHash hash) {
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups 64 bit perceptual hashes that are within a Hamming distance of each other, without comparing every pair.
+ * <p>
+ * Each hash is split into maxDistance + 1 bands of bits. Two hashes that differ in at most maxDistance bits can't
+ * differ in every band, so they share the exact value of at least one band. Each band is indexed by its value, and
+ * a new hash is only compared with the hashes in its buckets, which is a small fraction of all of them. Hashes that
+ * are close enough are joined with a union-find, so a group is every hash reachable through a chain of close pairs.
+ */
+class NearDuplicateIndex {
+
+    // Hashes that differ in at most this many bits are near duplicates
+    private final int maxDistance;
+
+    // First bit of each band, with an extra entry for the end of the last band
+    private final int[] bandStart;
+
+    // For each band, the distinct hashes with each value of the band's bits
+    private final List<Map<Long, List<Integer>>> buckets = new ArrayList<>();
+
+    // The first hash added with each value, identical hashes are joined to it instead of being indexed again
+    private final Map<Long, Integer> exact = new HashMap<>();
+
+    // The hash and union-find parent of each entry
+    private long[] hashes = new long[1024];
+    private int[] parent = new int[1024];
+    private int size;
+
+    /**
+     * Constructor for the NearDuplicateIndex class.
+     *
+     * @param maxDistance The largest number of bits two near duplicate hashes can differ in, from 0 to 31.
+     */
+    NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 31) {
+            throw new IllegalArgumentException("Distance must be between 0 and 31");
+        }
+
+        this.maxDistance = maxDistance;
+        var bands = maxDistance + 1;
+        this.bandStart = new int[bands + 1];
+        for (int i = 0; i <= bands; i++) {
+            bandStart[i] = i * Long.SIZE / bands;
+        }
+        for (int i = 0; i < bands; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Adds a hash and joins it with the near duplicates already added.
+     *
+     * @param hash The perceptual hash.
+     * @return The id of the entry, numbered from 0 in the order the hashes were added.
+     */
+    int add(long hash) {
+        var id = size++;
+        if (id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            parent = Arrays.copyOf(parent, id * 2);
+        }
+        hashes[id] = hash;
+        parent[id] = id;
+
+        var same = exact.putIfAbsent(hash, id);
+        if (same != null) {
+            union(same, id);
+            return id;
+        }
+
+        for (int band = 0; band < buckets.size(); band++) {
+            var bucket = buckets.get(band).computeIfAbsent(bandValue(hash, band), k -> new ArrayList<>());
+            for (var other : bucket) {
+                if (find(other) != find(id) && PerceptualHasher.distance(hash, hashes[other]) <= maxDistance) {
+                    union(other, id);
+                }
+            }
+            bucket.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the group an entry belongs to. Entries in the same group return the same value.
+     *
+     * @param id The id of the entry.
+     * @return The id of the group.
+     */
+    int group(int id) {
+        return find(id);
+    }
+
+    /**
+     * Returns the number of hashes added.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    private long bandValue(long hash, int band) {
+        var bits = bandStart[band + 1] - bandStart[band];
+        return (hash >>> bandStart[band]) & (bits == Long.SIZE ? -1L : (1L << bits) - 1);
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void union(int a, int b) {
+        var rootA = find(a);
+        var rootB = find(b);
+        if (rootA != rootB) {
+            // Keep the earliest entry as the root, so groups are numbered in walk order
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
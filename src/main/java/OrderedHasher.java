@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
+
+/**
+ * Walks input directories and hashes the files on a pool of worker threads, handing the results back on the calling
+ * thread in the order the files were walked. Used by the checksum builders that support several threads.
+ */
+class OrderedHasher {
+
+    /**
+     * Receives the checksum of each file, in walk order.
+     */
+    interface ResultHandler {
+        void accept(String inputDirName, File file, Optional<byte[]> checksum) throws IOException;
+    }
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(OrderedHasher.class);
+
+    // Number of checksums each worker may have outstanding before the directory walk waits for results
+    private static final int PENDING_PER_WORKER = 64;
+
+    // Function to calculate checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    /**
+     * Constructor for the OrderedHasher class.
+     *
+     * @param checksumFunction Function to calculate checksum. Called from several threads at once.
+     * @param threads Number of worker threads used for hashing. With one thread files are hashed on the calling thread.
+     * @param fileWalker Finds the files in the directories.
+     */
+    OrderedHasher(Function<File, Optional<byte[]>> checksumFunction, int threads, FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.checksumFunction = checksumFunction;
+        this.threads = threads;
+        this.fileWalker = fileWalker;
+    }
+
+    /**
+     * Hashes every file in the directories.
+     *
+     * @param directories The directories to walk.
+     * @param handler Receives the checksum of each file, in walk order.
+     * @throws IOException if an I/O error occurs while walking, or the handler fails.
+     */
+    void hashDirectories(List<String> directories, ResultHandler handler) throws IOException {
+        ThreadPoolExecutor executor = this.threads > 1 ? (ThreadPoolExecutor) Executors.newFixedThreadPool(this.threads) : null;
+        if (executor != null) {
+            // Files waiting for a free hash worker
+            Metrics.registerQueue("hash", () -> executor.getQueue().size());
+        }
+        try {
+            var pending = new ArrayDeque<PendingChecksum>();
+            var maxPending = this.threads * PENDING_PER_WORKER;
+
+            for (String dirName : directories) {
+                logger.info("Iterating over files in directory: {}", dirName);
+                this.fileWalker.walk(Paths.get(dirName), file -> {
+                    if (executor == null) {
+                        handler.accept(dirName, file, this.checksumFunction.apply(file));
+                        return;
+                    }
+
+                    pending.add(new PendingChecksum(dirName, file, executor.submit(() -> this.checksumFunction.apply(file))));
+
+                    // Bound the number of outstanding results so a large tree doesn't queue up every file
+                    if (pending.size() >= maxPending) {
+                        complete(pending.poll(), handler);
+                    }
+                });
+            }
+
+            while (!pending.isEmpty()) {
+                complete(pending.poll(), handler);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                Metrics.unregisterQueue("hash");
+            }
+        }
+    }
+
+    /**
+     * Waits for a pending checksum and passes it to the handler.
+     *
+     * @param pendingChecksum The pending checksum.
+     * @param handler Receives the checksum.
+     * @throws IOException if the thread was interrupted, the checksum function failed or the handler failed.
+     */
+    private static void complete(PendingChecksum pendingChecksum, ResultHandler handler) throws IOException {
+        Optional<byte[]> checksum;
+        try {
+            checksum = pendingChecksum.checksum().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calculating checksums", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to calculate checksum for " + pendingChecksum.file().getPath(), e.getCause());
+        }
+        handler.accept(pendingChecksum.inputDirName(), pendingChecksum.file(), checksum);
+    }
+
+    /**
+     * A file whose checksum is being calculated by a worker thread.
+     */
+    private record PendingChecksum(String inputDirName, File file, Future<Optional<byte[]>> checksum) {
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A journal of the files an organize run has placed, so later runs only handle files that are new or have changed.
+ * <p>
+ * Each entry records the absolute path, size and last modified time of a source file, the destination it was given
+ * and, when one was calculated, its checksum. Entries are appended to a RecordLog as files are placed, so a run
+ * that's interrupted keeps the entries for the files it finished. The header names the destination directory, date
+ * format, layout and input patterns, so a journal written for a different output is discarded rather than used to
+ * skip files.
+ */
+public class OrganizeJournal implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(OrganizeJournal.class);
+
+    // Number of new entries after which they're written to disk
+    private static final int FLUSH_INTERVAL = 1000;
+
+    // The file backing the journal
+    private final RecordLog log;
+
+    // Journal entries keyed by the absolute path of the source file
+    private final Map<String, JournalEntry> entries = new ConcurrentHashMap<>();
+
+    // Number of entries in the file that have been replaced by a later entry
+    private final AtomicLong obsoleteEntries = new AtomicLong();
+
+    // Number of entries appended since the last flush
+    private final AtomicLong unflushedEntries = new AtomicLong();
+
+    private final AtomicLong skippedFiles = new AtomicLong();
+
+    /**
+     * Constructor for the OrganizeJournal class. Loads any existing entries from the journal file.
+     *
+     * @param file The file backing the journal. It's created if it doesn't exist.
+     * @param destinationDirectory The directory files are organized into.
+     * @param dateFormat The date format used to name the destination folders.
+     * @throws IOException if an I/O error occurs while reading the journal file.
+     */
+    public OrganizeJournal(Path file, String destinationDirectory, DateOrganizer.DateFormat dateFormat) throws IOException {
+        this(file, destinationDirectory, dateFormat, null, null);
+    }
+
+    /**
+     * Constructor for the OrganizeJournal class for a run with its own layout or dated folder patterns. Loads any
+     * existing entries from the journal file, unless it was written with a different layout or patterns.
+     *
+     * @param file The file backing the journal. It's created if it doesn't exist.
+     * @param destinationDirectory The directory files are organized into.
+     * @param dateFormat The date format used to name the destination folders.
+     * @param inputPatterns Patterns of dated folder names, or null if the date format's pattern is used.
+     * @param layout Template for the output directories, or null if the date format's layout is used.
+     * @throws IOException if an I/O error occurs while reading the journal file.
+     */
+    public OrganizeJournal(Path file, String destinationDirectory, DateOrganizer.DateFormat dateFormat,
+                           List<String> inputPatterns, String layout) throws IOException {
+        var header = new StringBuilder("organize-journal ").append(dateFormat).append(' ').append(Path.of(destinationDirectory).toAbsolutePath());
+        if (layout != null) {
+            header.append(" layout ").append(layout);
+        }
+        if (inputPatterns != null && !inputPatterns.isEmpty()) {
+            header.append(" patterns ").append(inputPatterns);
+        }
+        this.log = new RecordLog(file, header.toString());
+
+        var records = log.replay(in -> {
+            var path = in.readUTF();
+            var size = in.readLong();
+            var lastModified = in.readLong();
+            var destination = in.readUTF();
+            var checksum = new byte[in.readUnsignedByte()];
+            in.readFully(checksum);
+            entries.put(path, new JournalEntry(size, lastModified, destination, checksum));
+        });
+        obsoleteEntries.set(records - entries.size());
+
+        logger.info("Loaded {} organized files from {}", entries.size(), file);
+    }
+
+    /**
+     * Deletes a journal file, so the next run handles every file again.
+     *
+     * @param file The file backing the journal.
+     * @throws IOException if the file couldn't be deleted.
+     */
+    public static void invalidate(Path file) throws IOException {
+        logger.info("Clearing organize journal {}", file);
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Checks whether a file was placed by an earlier run and hasn't changed since.
+     *
+     * @param file The source file.
+     * @return true if the file can be skipped.
+     */
+    public boolean isOrganized(File file) {
+        var entry = entries.get(file.getAbsolutePath());
+        if (entry != null && entry.size() == file.length() && entry.lastModified() == file.lastModified()) {
+            skippedFiles.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks up where a file was placed.
+     *
+     * @param file The source file.
+     * @return The destination path, or empty if the file isn't in the journal.
+     */
+    public Optional<String> getDestination(File file) {
+        return Optional.ofNullable(entries.get(file.getAbsolutePath())).map(JournalEntry::destination);
+    }
+
+    /**
+     * Adds a placed file to the journal. Can be called from several threads at once.
+     *
+     * @param file The source file.
+     * @param size The size of the source file before it was placed.
+     * @param lastModified The last modified time of the source file before it was placed.
+     * @param destination Where the file was placed.
+     * @param checksum The checksum of the file, or null if it wasn't calculated.
+     */
+    public void record(File file, long size, long lastModified, String destination, byte[] checksum) {
+        var absolutePath = file.getAbsolutePath();
+        var entry = new JournalEntry(size, lastModified, destination, checksum == null ? new byte[0] : checksum);
+        if (entries.put(absolutePath, entry) != null) {
+            obsoleteEntries.incrementAndGet();
+        }
+
+        try {
+            log.append(out -> writeEntry(out, absolutePath, entry));
+            if (unflushedEntries.incrementAndGet() >= FLUSH_INTERVAL) {
+                unflushedEntries.set(0);
+                log.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to write organize journal entry for {}: {}", absolutePath, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of files in the journal.
+     *
+     * @return The number of journal entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    /**
+     * Writes any new entries to disk. If most of the file is made up of replaced entries it's rewritten.
+     *
+     * @throws IOException if an I/O error occurs while writing the journal file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        logger.info("Skipped {} files that were already organized", skippedFiles.get());
+        if (obsoleteEntries.get() > entries.size()) {
+            log.rewrite(() -> entries.entrySet().stream()
+                    .map(e -> (RecordLog.RecordWriter) out -> writeEntry(out, e.getKey(), e.getValue()))
+                    .iterator());
+            obsoleteEntries.set(0);
+        } else {
+            log.close();
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, String absolutePath, JournalEntry entry) throws IOException {
+        out.writeUTF(absolutePath);
+        out.writeLong(entry.size());
+        out.writeLong(entry.lastModified());
+        out.writeUTF(entry.destination());
+        out.writeByte(entry.checksum().length);
+        out.write(entry.checksum());
+    }
+
+    /**
+     * Where a file was placed, along with the file attributes the entry is valid for.
+     */
+    private record JournalEntry(long size, long lastModified, String destination, byte[] checksum) {
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The optional settings of an organize run, shared by DateOrganizer, ParallelDateOrganizer and
+ * DeduplicatingOrganizer. Built with a Builder, where anything that isn't set keeps its default.
+ */
+public final class OrganizeOptions {
+
+    // How files are put in the destination directory
+    private final TransferMode transferMode;
+
+    // Files placed by earlier runs, or null to handle every file
+    private final OrganizeJournal journal;
+
+    // Finds the files in the input directories
+    private final FileWalker fileWalker;
+
+    // Reads the date a file was taken from its metadata, or null to go by the modification date
+    private final Function<File, Optional<LocalDateTime>> captureDates;
+
+    // Patterns of dated folder names, or null to use the date format's pattern
+    private final List<String> inputPatterns;
+
+    // Template for the output directories, or null to use the date format's layout
+    private final String layout;
+
+    // Compares files whose names collide in the destination, or null to use MD5
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    private OrganizeOptions(Builder builder) {
+        this.transferMode = builder.transferMode;
+        this.journal = builder.journal;
+        this.fileWalker = builder.fileWalker != null ? builder.fileWalker : new FileWalker();
+        this.captureDates = builder.captureDates;
+        this.inputPatterns = builder.inputPatterns;
+        this.layout = builder.layout;
+        this.checksumFunction = builder.checksumFunction;
+    }
+
+    /**
+     * Returns a builder with every setting at its default.
+     *
+     * @return A new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns options with every setting at its default: files are copied, every file is handled, and folders are
+     * laid out by the date format.
+     *
+     * @return The default options.
+     */
+    public static OrganizeOptions defaults() {
+        return new Builder().build();
+    }
+
+    public TransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    public OrganizeJournal getJournal() {
+        return journal;
+    }
+
+    public FileWalker getFileWalker() {
+        return fileWalker;
+    }
+
+    public Function<File, Optional<LocalDateTime>> getCaptureDates() {
+        return captureDates;
+    }
+
+    public List<String> getInputPatterns() {
+        return inputPatterns;
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public Function<File, Optional<byte[]>> getChecksumFunction() {
+        return checksumFunction;
+    }
+
+    /**
+     * Collects the settings of an organize run.
+     */
+    public static final class Builder {
+
+        private TransferMode transferMode = TransferMode.COPY;
+        private OrganizeJournal journal;
+        private FileWalker fileWalker;
+        private Function<File, Optional<LocalDateTime>> captureDates;
+        private List<String> inputPatterns;
+        private String layout;
+        private Function<File, Optional<byte[]>> checksumFunction;
+
+        private Builder() {
+        }
+
+        /**
+         * @param transferMode How files are put in the destination directory. Defaults to COPY.
+         */
+        public Builder transferMode(TransferMode transferMode) {
+            this.transferMode = transferMode != null ? transferMode : TransferMode.COPY;
+            return this;
+        }
+
+        /**
+         * @param journal Files placed by earlier runs. Files that are placed are added to it. If null, every file is
+         * handled.
+         */
+        public Builder journal(OrganizeJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param fileWalker Finds the files in the input directories. If null, every file is walked on the calling
+         * thread.
+         */
+        public Builder fileWalker(FileWalker fileWalker) {
+            this.fileWalker = fileWalker;
+            return this;
+        }
+
+        /**
+         * @param captureDates Reads the date a file was taken from its metadata, for files whose folder name has no
+         * date. Called from several threads at once by ParallelDateOrganizer. If null, or a file has no date, the
+         * modification date is used.
+         */
+        public Builder captureDates(Function<File, Optional<LocalDateTime>> captureDates) {
+            this.captureDates = captureDates;
+            return this;
+        }
+
+        /**
+         * @param inputPatterns Patterns of dated folder names, see DatePathMatcher. If null or empty, the date
+         * format's pattern is used.
+         */
+        public Builder inputPatterns(List<String> inputPatterns) {
+            this.inputPatterns = inputPatterns;
+            return this;
+        }
+
+        /**
+         * @param layout Template for the output directories, see FolderTemplate. If null, dated folders keep the
+         * layout of the date format and other files go in year-month-day folders.
+         */
+        public Builder layout(String layout) {
+            this.layout = layout;
+            return this;
+        }
+
+        /**
+         * @param checksumFunction Compares a file with one that already has its name in the destination. Called
+         * from several threads at once by ParallelDateOrganizer. If null, MD5 is used.
+         */
+        public Builder checksumFunction(Function<File, Optional<byte[]>> checksumFunction) {
+            this.checksumFunction = checksumFunction;
+            return this;
+        }
+
+        public OrganizeOptions build() {
+            return new OrganizeOptions(this);
+        }
+    }
+}
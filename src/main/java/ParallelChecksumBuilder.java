@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Class that implements the IChecksumBuilder interface and hashes several files at once on a pool of worker threads.
+ * Results are recorded in the order the files were walked, so the checksum map has the same contents as the one
+ * built by ChecksumBuilder, including the order of the files in each list.
+ */
+public class ParallelChecksumBuilder implements IChecksumBuilder {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ParallelChecksumBuilder.class);
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Map to store the calculated checksums and their corresponding files
+    private final Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap = new ConcurrentHashMap<>();
+
+    // Function to calculate checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    /**
+     * Constructor for the ParallelChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     *                         The function is called from several threads at once.
+     * @param threads Number of worker threads used for hashing.
+     */
+    public ParallelChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads) {
+        this(directories, checksumFunction, threads, null);
+    }
+
+    /**
+     * Constructor for the ParallelChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     *                         The function is called from several threads at once.
+     * @param threads Number of worker threads used for hashing.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public ParallelChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                   FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.threads = threads;
+    }
+
+    /**
+     * Retrieves a map of checksums and their corresponding files.
+     *
+     * @return a Map where the key is a checksum (String) and the value is a List of SimpleEntry objects.
+     * Each SimpleEntry contains the directory name (String) and the corresponding File.
+     */
+    @Override
+    public Map<String, List<AbstractMap.SimpleEntry<String, File>>> getChecksumMap() {
+        return this.checksumMap;
+    }
+
+    /**
+     * Calculates checksums for all files in the directories, hashing up to the configured number of files at once.
+     *
+     * @throws IOException if an I/O error occurs during the checksum calculation.
+     */
+    @Override
+    public void calculateChecksums() throws IOException {
+        new OrderedHasher(this.checksumFunction, this.threads, this.fileWalker).hashDirectories(directories, this::handleFile);
+    }
+
+    /**
+     * Adds the checksum of a file to the checksum map.
+     *
+     * @param inputDirName The name of the directory being scanned.
+     * @param f The file the checksum was calculated for.
+     * @param checksumBytes The checksum, or empty if it couldn't be calculated.
+     */
+    private void handleFile(String inputDirName, File f, Optional<byte[]> checksumBytes) {
+        logger.debug("File: {}", f.getAbsolutePath());
+        if (checksumBytes.isPresent()) {
+            var checksum = ChecksumBuilder.toHexString(checksumBytes.get());
+            logger.debug("Checksum: {}", checksum);
+            checksumMap.computeIfAbsent(checksum, k -> new ArrayList<>()).add(new SimpleEntry<>(inputDirName, f));
+        }
+    }
+}
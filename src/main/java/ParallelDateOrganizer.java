@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Organizes the files from several input directories at once on a pool of worker threads.
+ * Implements the IFileOrganizer interface.
+ * <p>
+ * Each input directory gets its own DateOrganizer, and they all share one DestinationAllocator so files with the
+ * same name going to the same folder are given different paths and each destination directory is only created once.
+ */
+public class ParallelDateOrganizer implements IFileOrganizer {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ParallelDateOrganizer.class);
+
+    // Number of files each worker may have queued before the directory walk waits
+    private static final int QUEUED_PER_WORKER = 64;
+
+    // Input directories containing files to be organized
+    private final List<String> inputDirectories;
+
+    // One organizer for each input directory
+    private final List<DateOrganizer> organizers = new ArrayList<>();
+
+    // Number of worker threads
+    private final int threads;
+
+    // Counts the files handled, or null
+    private final ProgressReporter progress;
+
+    // Finds the files in the input directories
+    private final FileWalker fileWalker;
+
+    /**
+     * Constructor for the ParallelDateOrganizer class.
+     *
+     * @param inputDirectories Directories containing files to be organized.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param threads Number of worker threads.
+     * @param progress Counts the files handled. If null, nothing is counted.
+     */
+    public ParallelDateOrganizer(List<String> inputDirectories, String destinationDirectory, DateOrganizer.DateFormat dateFormat,
+                                 boolean previewMode, int threads, ProgressReporter progress) {
+        this(inputDirectories, destinationDirectory, dateFormat, previewMode, threads, progress, OrganizeOptions.defaults());
+    }
+
+    /**
+     * Constructor for the ParallelDateOrganizer class with optional settings such as the transfer mode, a journal or
+     * a layout template. The capture dates and checksum functions of the options are called from several threads at
+     * once.
+     *
+     * @param inputDirectories Directories containing files to be organized.
+     * @param destinationDirectory Directory where the organized files will be placed.
+     * @param threads Number of worker threads.
+     * @param progress Counts the files handled. If null, nothing is counted.
+     * @param options The optional settings of the run.
+     * @throws IllegalArgumentException if an input pattern or the layout isn't valid.
+     */
+    public ParallelDateOrganizer(List<String> inputDirectories, String destinationDirectory, DateOrganizer.DateFormat dateFormat,
+                                 boolean previewMode, int threads, ProgressReporter progress, OrganizeOptions options) {
+        if (inputDirectories == null || inputDirectories.isEmpty()) {
+            throw new IllegalArgumentException("Input directories must be provided");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.inputDirectories = inputDirectories;
+        this.threads = threads;
+        this.progress = progress;
+        this.fileWalker = options.getFileWalker();
+
+        var destinationAllocator = new DestinationAllocator(options.getChecksumFunction());
+        for (var inputDirectory : inputDirectories) {
+            organizers.add(new DateOrganizer(inputDirectory, destinationDirectory, dateFormat, previewMode, options,
+                    destinationAllocator));
+        }
+    }
+
+    /**
+     * Organizes the files from every input directory, returning once they have all been handled.
+     *
+     * @throws IOException if an I/O error occurs while walking the input directories, or a file couldn't be handled.
+     */
+    @Override
+    public void organizeFiles() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        var queueSize = this.threads * QUEUED_PER_WORKER;
+        var queuedFiles = new Semaphore(queueSize);
+        var failure = new AtomicReference<RuntimeException>();
+        Metrics.registerQueue("organize", () -> queueSize - queuedFiles.availablePermits());
+        try {
+            for (int i = 0; i < inputDirectories.size(); i++) {
+                var organizer = organizers.get(i);
+                logger.info("Iterating over files in directory: {}", inputDirectories.get(i));
+
+                this.fileWalker.walk(Paths.get(inputDirectories.get(i)), file -> {
+                    if (failure.get() != null) {
+                        throw new IOException("Failed to organize files", failure.get());
+                    }
+
+                    try {
+                        queuedFiles.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while organizing files", e);
+                    }
+                    executor.execute(() -> {
+                        try {
+                            // The size was read by the walk, before a move could take the file away
+                            var size = file.length();
+                            organizer.handleFile(file);
+                            if (progress != null) {
+                                progress.fileDone(size);
+                            }
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            queuedFiles.release();
+                        }
+                    });
+                });
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while organizing files", e);
+        } finally {
+            executor.shutdownNow();
+            Metrics.unregisterQueue("organize");
+        }
+
+        if (failure.get() != null) {
+            throw new IOException("Failed to organize files", failure.get());
+        }
+    }
+}
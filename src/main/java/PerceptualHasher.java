@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Calculates a perceptual hash of an image, which stays the same or nearly the same when the image is re-encoded
+ * at another quality or resized, unlike a checksum of its bytes.
+ * <p>
+ * The hash is a difference hash: the image is reduced to a grid of 9 by 8 grey levels, and each of the 64 bits
+ * records whether a cell is brighter than the cell to its right. Similar images give hashes that differ in only a
+ * few bits. Only the pixels needed for the grid are decoded, using the reader's source subsampling, so a large photo
+ * isn't decoded at full resolution just to be shrunk.
+ */
+public final class PerceptualHasher {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(PerceptualHasher.class);
+
+    // The grid the image is reduced to, one column wider than the hash so each bit compares two cells
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    // Pixels decoded for each grid cell in each direction, enough to average out noise and JPEG artifacts
+    private static final int SAMPLES_PER_CELL = 16;
+
+    /**
+     * The perceptual hash of an image, along with its full resolution.
+     *
+     * @param hash The 64 bit difference hash.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     */
+    public record ImageHash(long hash, int width, int height) {
+
+        /**
+         * Returns the number of pixels in the image.
+         *
+         * @return The width times the height.
+         */
+        public long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    private PerceptualHasher() {
+    }
+
+    /**
+     * Calculates the perceptual hash of an image file.
+     *
+     * @param file The image file.
+     * @return The hash, or empty if the file isn't an image that can be decoded.
+     */
+    public static Optional<ImageHash> hash(File file) {
+        try (var in = ImageIO.createImageInputStream(file)) {
+            var readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return Optional.empty();
+            }
+
+            var reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                var width = reader.getWidth(0);
+                var height = reader.getHeight(0);
+
+                var step = Math.max(1, Math.min(width / (GRID_WIDTH * SAMPLES_PER_CELL), height / (GRID_HEIGHT * SAMPLES_PER_CELL)));
+                var param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return Optional.of(new ImageHash(differenceHash(reader.read(0, param)), width, height));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.info("Caught exception during perceptual hash of {}: {}", file.getPath(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the number of bits two hashes differ in.
+     *
+     * @param a The first hash.
+     * @param b The second hash.
+     * @return The Hamming distance between the hashes.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Reduces an image to the grid of average grey levels and compares neighbouring cells.
+     *
+     * @param image The decoded image, at any resolution.
+     * @return The 64 bit difference hash.
+     */
+    static long differenceHash(BufferedImage image) {
+        var grid = new long[GRID_HEIGHT][GRID_WIDTH];
+        var width = image.getWidth();
+        var height = image.getHeight();
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            var y0 = cy * height / GRID_HEIGHT;
+            var y1 = Math.max(y0 + 1, (cy + 1) * height / GRID_HEIGHT);
+            for (int cx = 0; cx < GRID_WIDTH; cx++) {
+                var x0 = cx * width / GRID_WIDTH;
+                var x1 = Math.max(x0 + 1, (cx + 1) * width / GRID_WIDTH);
+
+                long sum = 0;
+                for (int y = y0; y < Math.min(y1, height); y++) {
+                    for (int x = x0; x < Math.min(x1, width); x++) {
+                        var rgb = image.getRGB(x, y);
+                        sum += 299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF);
+                    }
+                }
+                grid[cy][cx] = sum / ((long) (y1 - y0) * (x1 - x0));
+            }
+        }
+
+        long hash = 0;
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            for (int cx = 0; cx < GRID_WIDTH - 1; cx++) {
+                hash <<= 1;
+                if (grid[cy][cx] > grid[cy][cx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+}
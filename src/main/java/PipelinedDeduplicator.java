@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Deduplicates files in a single pass, copying each file as soon as its checksum shows it's the first of its kind
+ * instead of waiting for the whole library to be hashed.
+ * <p>
+ * The directories are walked and hashed by an OrderedHasher, whose bounded window of pending checksums keeps the
+ * walk from getting ahead of the hash workers. Results come back in walk order, so the first file seen for each
+ * checksum is the same file the two-phase deduplicate would copy. New files are handed to the DeduplicateFiles,
+ * whose CopyExecutor copies them on its own workers and makes hashing wait when the output disk can't keep up.
+ */
+public class PipelinedDeduplicator {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(PipelinedDeduplicator.class);
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Function to calculate checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Number of worker threads used for hashing
+    private final int hashThreads;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Copies the files, or only logs them in preview mode
+    private final DeduplicateFiles deduplicator;
+
+    // Checksums of the files that have been copied so far, and which of them more than one file has had
+    private final ChecksumSet seenChecksums = new ChecksumSet();
+
+    private long queuedFiles;
+    private long skippedFiles;
+
+    /**
+     * Constructor for the PipelinedDeduplicator class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param hashThreads Number of worker threads used for hashing.
+     * @param deduplicator Copies the first file of each checksum to the output directory. Give it a CopyExecutor
+     * so the copies don't hold up hashing.
+     */
+    public PipelinedDeduplicator(List<String> directories, Function<File, Optional<byte[]>> checksumFunction,
+                                 int hashThreads, DeduplicateFiles deduplicator) {
+        this(directories, checksumFunction, hashThreads, deduplicator, null);
+    }
+
+    /**
+     * Constructor for the PipelinedDeduplicator class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate checksum. If null, default checksum function is used.
+     * @param hashThreads Number of worker threads used for hashing.
+     * @param deduplicator Copies the first file of each checksum to the output directory. Give it a CopyExecutor
+     * so the copies don't hold up hashing.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public PipelinedDeduplicator(List<String> directories, Function<File, Optional<byte[]>> checksumFunction,
+                                 int hashThreads, DeduplicateFiles deduplicator, FileWalker fileWalker) {
+        if (hashThreads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.hashThreads = hashThreads;
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.deduplicator = Objects.requireNonNull(deduplicator);
+    }
+
+    /**
+     * Walks and hashes the files, queueing each new file for copying as soon as it's hashed.
+     *
+     * @throws IOException if an I/O error occurs while walking or hashing.
+     */
+    public void run() throws IOException {
+        new OrderedHasher(this.checksumFunction, this.hashThreads, this.fileWalker).hashDirectories(directories, this::handleFile);
+        logger.info("Queued {} files for copying, skipped {} duplicates", queuedFiles, skippedFiles);
+    }
+
+    public long getQueuedFiles() {
+        return queuedFiles;
+    }
+
+    public long getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * Queues the file for copying if it's the first with its checksum, otherwise logs it as skipped.
+     *
+     * @param inputDirName The name of the directory being scanned.
+     * @param file The file the checksum was calculated for.
+     * @param checksumBytes The checksum, or empty if it couldn't be calculated.
+     */
+    private void handleFile(String inputDirName, File file, Optional<byte[]> checksumBytes) {
+        if (checksumBytes.isEmpty()) {
+            return;
+        }
+
+        var previousFiles = seenChecksums.add(checksumBytes.get());
+        if (previousFiles == 0) {
+            deduplicator.copyFile(inputDirName, file, ChecksumBuilder.toHexString(checksumBytes.get()));
+            queuedFiles++;
+        } else {
+            if (previousFiles == 1) {
+                Metrics.addDuplicateGroup();
+            }
+            deduplicator.skipFile(file);
+            skippedFiles++;
+        }
+    }
+}
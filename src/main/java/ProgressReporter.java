@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Logs a single progress line at a fixed interval, with the files and bytes handled so far and the rate, in place of
+ * a line for every file. The time left is estimated when the caller already knows the totals; the input directories
+ * aren't walked a second time just to count them. Files can be counted from several threads at once.
+ */
+public class ProgressReporter implements Closeable {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(ProgressReporter.class);
+
+    // Describes the work being counted, for example "Hashed"
+    private final String action;
+
+    // Totals used for the estimate, or 0 if they aren't known
+    private final long totalFiles;
+    private final long totalBytes;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final long startTime = System.nanoTime();
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The files and bytes that will be handled.
+     */
+    public record Totals(long files, long bytes) {
+    }
+
+    /**
+     * Constructor for the ProgressReporter class. Starts logging straight away.
+     *
+     * @param action Describes the work being counted, for example "Hashed".
+     * @param totals The files and bytes that will be handled, or null if they aren't known.
+     * @param intervalMillis Time between progress lines.
+     */
+    public ProgressReporter(String action, Totals totals, long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Progress interval must be at least 1 ms");
+        }
+
+        this.action = action;
+        this.totalFiles = totals == null ? 0 : totals.files();
+        this.totalBytes = totals == null ? 0 : totals.bytes();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(() -> logger.info(formatProgress()), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts one file.
+     *
+     * @param size The size of the file.
+     */
+    public void fileDone(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * Wraps a checksum function so every file it's called for is counted.
+     *
+     * @param checksumFunction The function to wrap.
+     * @return The counting checksum function.
+     */
+    public Function<File, Optional<byte[]>> wrap(Function<File, Optional<byte[]>> checksumFunction) {
+        return f -> {
+            var checksum = checksumFunction.apply(f);
+            fileDone(f.length());
+            return checksum;
+        };
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Stops the progress lines and logs the final counts.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        logger.info(formatProgress());
+    }
+
+    /**
+     * Builds a progress line, for example "Hashed 1200/5000 files, 4.2 GB, 310 files/s, 95.1 MB/s, 00:03:12 left".
+     *
+     * @return The progress line.
+     */
+    String formatProgress() {
+        var seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+        var doneFiles = files.sum();
+        var doneBytes = bytes.sum();
+
+        var line = new StringBuilder(action).append(' ').append(doneFiles);
+        if (totalFiles > 0) {
+            line.append('/').append(totalFiles);
+        }
+        line.append(String.format(" files, %.1f GB, %.0f files/s, %.1f MB/s", doneBytes / 1e9, doneFiles / seconds, doneBytes / 1e6 / seconds));
+
+        // Estimate from bytes when there are any, since large files take longer than small ones
+        double fraction = 0;
+        if (totalBytes > 0) {
+            fraction = (double) doneBytes / totalBytes;
+        } else if (totalFiles > 0) {
+            fraction = (double) doneFiles / totalFiles;
+        }
+        if (fraction > 0 && fraction < 1) {
+            var remaining = (long) (seconds / fraction - seconds);
+            line.append(String.format(", %02d:%02d:%02d left", remaining / 3600, remaining / 60 % 60, remaining % 60));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of binary records that survives a crash part way through a write.
+ * <p>
+ * The file starts with a header naming what it holds, followed by records that are each stored as a length, the
+ * record bytes and a CRC32 of the record bytes. When the file is replayed, anything after the last intact record
+ * is truncated away, so a torn write from a previous run is discarded instead of corrupting the file.
+ * Rewriting the file goes through a temporary file and an atomic rename, so the old contents stay intact until the
+ * new ones are complete.
+ */
+class RecordLog implements Closeable {
+
+    /**
+     * Reads the fields of a single record.
+     */
+    interface RecordReader {
+        void read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Writes the fields of a single record.
+     */
+    interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(RecordLog.class);
+
+    // Marks the start of a record log file
+    private static final int MAGIC = 0x4D4F524C;
+
+    // Version of the record framing
+    private static final int VERSION = 1;
+
+    // Upper bound for a single record, anything larger means the length itself is corrupt
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    // Buffer size used when reading and appending records
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The file holding the records
+    private final Path file;
+
+    // Describes the contents of the file, a file with a different header is discarded
+    private final String header;
+
+    // Reused buffer the record is written into before it's framed
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    // Stream used to append records, opened on the first append
+    private DataOutputStream out;
+
+    /**
+     * Constructor for the RecordLog class.
+     *
+     * @param file The file holding the records.
+     * @param header Describes the contents of the file. A file written with a different header is discarded.
+     */
+    RecordLog(Path file, String header) {
+        this.file = file;
+        this.header = header;
+    }
+
+    /**
+     * Returns the file holding the records.
+     *
+     * @return The path of the file.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Reads every intact record in the file. Incomplete or corrupt records at the end of the file are truncated, and
+     * a file with a different header is started over. This should be called before any records are appended.
+     *
+     * @param reader Called once for each intact record.
+     * @return The number of records that were read.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    synchronized long replay(RecordReader reader) throws IOException {
+        Files.deleteIfExists(tempFile());
+
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            reset();
+            return 0;
+        }
+
+        var records = readRecords(reader);
+        if (records < 0) {
+            // The file has been closed by now, so it can be started over
+            reset();
+            return 0;
+        }
+        return records;
+    }
+
+    /**
+     * Reads the intact records of the file, and truncates anything after the last one.
+     *
+     * @param reader Called once for each intact record.
+     * @return The number of records that were read, or -1 if the file has a different or unreadable header.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    private long readRecords(RecordReader reader) throws IOException {
+        long records = 0;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            long validLength;
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !header.equals(in.readUTF())) {
+                    logger.warn("Discarding {}, it was written with a different format", file);
+                    return -1;
+                }
+            } catch (IOException e) {
+                logger.warn("Discarding {}, the header is unreadable", file);
+                return -1;
+            }
+            validLength = headerLength();
+
+            while (true) {
+                byte[] payload;
+                try {
+                    var length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                reader.read(new DataInputStream(new ByteArrayInputStream(payload)));
+                validLength += Integer.BYTES + payload.length + Integer.BYTES;
+                records++;
+            }
+
+            if (validLength < channel.size()) {
+                logger.warn("Discarding {} bytes of incomplete records from {}", channel.size() - validLength, file);
+                channel.truncate(validLength);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends a record to the end of the file. Records are buffered until flush or close is called.
+     *
+     * @param writer Writes the fields of the record.
+     * @throws IOException if an I/O error occurs while writing the record.
+     */
+    synchronized void append(RecordWriter writer) throws IOException {
+        if (out == null) {
+            if (!Files.exists(file)) {
+                reset();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), BUFFER_SIZE));
+        }
+        writeRecord(out, writer);
+    }
+
+    /**
+     * Writes any buffered records to the file.
+     *
+     * @throws IOException if an I/O error occurs while writing the records.
+     */
+    synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Replaces the contents of the file with the given records. The new contents are written to a temporary file
+     * which then replaces the old file, so a crash leaves either the old or the new contents.
+     *
+     * @param records The records to write.
+     * @throws IOException if an I/O error occurs while writing the records.
+     */
+    synchronized void rewrite(Iterable<RecordWriter> records) throws IOException {
+        close();
+
+        var temp = tempFile();
+        try (var fos = new FileOutputStream(temp.toFile())) {
+            var tempOut = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+            writeHeader(tempOut);
+            for (var record : records) {
+                writeRecord(tempOut, record);
+            }
+            tempOut.flush();
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Flushes and closes the file. Records can still be appended afterwards, which reopens the file.
+     *
+     * @throws IOException if an I/O error occurs while closing the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Creates an empty file containing only the header.
+     *
+     * @throws IOException if an I/O error occurs while writing the file.
+     */
+    private void reset() throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (var headerOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())))) {
+            writeHeader(headerOut);
+        }
+    }
+
+    private void writeHeader(DataOutputStream headerOut) throws IOException {
+        headerOut.writeInt(MAGIC);
+        headerOut.writeInt(VERSION);
+        headerOut.writeUTF(header);
+    }
+
+    private long headerLength() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(bytes));
+        return bytes.size();
+    }
+
+    private void writeRecord(DataOutputStream target, RecordWriter writer) throws IOException {
+        recordBytes.reset();
+        writer.write(recordOut);
+        recordOut.flush();
+
+        crc.reset();
+        crc.update(recordBytes.toByteArray());
+        target.writeInt(recordBytes.size());
+        recordBytes.writeTo(target);
+        target.writeInt((int) crc.getValue());
+    }
+
+    private Path tempFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Class that implements the IChecksumBuilder interface and avoids reading files that can't have a duplicate.
+ * Files are first grouped by size, files that share a size are compared by a checksum of their first and last
+ * blocks, and only files that still collide get a full checksum.
+ * <p>
+ * Groups of identical files are keyed by their full checksum, just like ChecksumBuilder. Files that were shown to
+ * be unique before a full checksum was needed are keyed by their size (and partial checksum), so those keys are
+ * unique but are not content checksums.
+ */
+public class SizeFilteredChecksumBuilder implements IChecksumBuilder {
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(SizeFilteredChecksumBuilder.class);
+
+    // Number of bytes hashed from each end of a file for the partial checksum
+    public static final int PARTIAL_BLOCK_SIZE = 64 * 1024;
+
+    // List of directories to scan for files
+    private final List<String> directories;
+
+    // Map to store the calculated checksums and their corresponding files
+    private final Map<String, List<AbstractMap.SimpleEntry<String, File>>> checksumMap = new HashMap<>();
+
+    // Function to calculate the full checksum
+    private final Function<File, Optional<byte[]>> checksumFunction;
+
+    // Finds the files in the directories
+    private final FileWalker fileWalker;
+
+    // Number of worker threads used for hashing
+    private final int threads;
+
+    /**
+     * Constructor for the SizeFilteredChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate the full checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     */
+    public SizeFilteredChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads) {
+        this(directories, checksumFunction, threads, null);
+    }
+
+    /**
+     * Constructor for the SizeFilteredChecksumBuilder class.
+     *
+     * @param directories List of directories to scan for files.
+     * @param checksumFunction Optional function to calculate the full checksum. If null, default checksum function is used.
+     * @param threads Number of worker threads used for hashing.
+     * @param fileWalker Finds the files in the directories. If null, every file is walked on the calling thread.
+     */
+    public SizeFilteredChecksumBuilder(List<String> directories, Function<File, Optional<byte[]>> checksumFunction, int threads,
+                                       FileWalker fileWalker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+
+        this.directories = Objects.requireNonNullElseGet(directories, ArrayList::new);
+        this.checksumFunction = Objects.requireNonNullElse(checksumFunction, ChecksumBuilder::defaultChecksumFunction);
+        this.fileWalker = Objects.requireNonNullElseGet(fileWalker, FileWalker::new);
+        this.threads = threads;
+    }
+
+    /**
+     * Retrieves a map of checksums and their corresponding files.
+     *
+     * @return a Map where the key is a checksum (String) and the value is a List of SimpleEntry objects.
+     * Each SimpleEntry contains the directory name (String) and the corresponding File.
+     */
+    @Override
+    public Map<String, List<AbstractMap.SimpleEntry<String, File>>> getChecksumMap() {
+        return this.checksumMap;
+    }
+
+    /**
+     * Calculates checksums for the files in the directories, reading only as much of each file as is needed to
+     * tell it apart from the others.
+     *
+     * @throws IOException if an I/O error occurs during the checksum calculation.
+     */
+    @Override
+    public void calculateChecksums() throws IOException {
+        var sizeGroups = groupBySize();
+
+        ExecutorService executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+        try {
+            for (var sizeGroup : sizeGroups.entrySet()) {
+                var size = sizeGroup.getKey();
+                var files = sizeGroup.getValue();
+
+                if (files.size() == 1) {
+                    // Nothing else has this size, so it can't be a duplicate
+                    addUnique("size:" + size, files.get(0));
+                } else if (size <= 2L * PARTIAL_BLOCK_SIZE) {
+                    // The partial checksum would read the whole file anyway
+                    addFullChecksums(executor, files);
+                } else {
+                    for (var partialGroup : groupByChecksum(executor, files, SizeFilteredChecksumBuilder::partialChecksum).entrySet()) {
+                        if (partialGroup.getValue().size() == 1) {
+                            addUnique("size:" + size + ":partial:" + partialGroup.getKey(), partialGroup.getValue().get(0));
+                        } else {
+                            addFullChecksums(executor, partialGroup.getValue());
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Walks the directories and groups the files by their size, keeping the order the files were walked in.
+     *
+     * @return a Map where the key is a file size and the value is the files with that size.
+     * @throws IOException if an I/O error occurs while walking the directories.
+     */
+    private Map<Long, List<SimpleEntry<String, File>>> groupBySize() throws IOException {
+        var sizeGroups = new LinkedHashMap<Long, List<SimpleEntry<String, File>>>();
+        for (String dirName : directories) {
+            logger.info("Iterating over files in directory: {}", dirName);
+            // The size was read along with the directory listing
+            this.fileWalker.walk(Paths.get(dirName), file ->
+                    sizeGroups.computeIfAbsent(file.length(), k -> new ArrayList<>()).add(new SimpleEntry<>(dirName, file)));
+        }
+        logger.info("Found {} distinct file sizes", sizeGroups.size());
+        return sizeGroups;
+    }
+
+    /**
+     * Adds a file that has no duplicate to the checksum map.
+     *
+     * @param key The unique key for the file.
+     * @param file The file and the input directory it came from.
+     */
+    private void addUnique(String key, SimpleEntry<String, File> file) {
+        logger.debug("File: {}", file.getValue().getAbsolutePath());
+        logger.debug("Unique: {}", key);
+        checksumMap.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+    }
+
+    /**
+     * Calculates the full checksum of each file and adds the files to the checksum map.
+     *
+     * @param executor The worker pool, or null to hash on the calling thread.
+     * @param files The files to hash.
+     * @throws IOException if the thread was interrupted or the checksum function failed.
+     */
+    private void addFullChecksums(ExecutorService executor, List<SimpleEntry<String, File>> files) throws IOException {
+        for (var group : groupByChecksum(executor, files, this.checksumFunction).entrySet()) {
+            for (var file : group.getValue()) {
+                logger.debug("File: {}", file.getValue().getAbsolutePath());
+                logger.debug("Checksum: {}", group.getKey());
+            }
+            checksumMap.computeIfAbsent(group.getKey(), k -> new ArrayList<>()).addAll(group.getValue());
+        }
+    }
+
+    /**
+     * Groups files by a checksum, keeping the order of the files. Files without a checksum are left out.
+     *
+     * @param executor The worker pool, or null to hash on the calling thread.
+     * @param files The files to hash.
+     * @param function The function used to calculate the checksum.
+     * @return a Map where the key is the checksum as a hexadecimal string and the value is the matching files.
+     * @throws IOException if the thread was interrupted or the checksum function failed.
+     */
+    private Map<String, List<SimpleEntry<String, File>>> groupByChecksum(ExecutorService executor,
+                                                                       List<SimpleEntry<String, File>> files,
+                                                                       Function<File, Optional<byte[]>> function) throws IOException {
+        var checksums = new ArrayList<Optional<byte[]>>(files.size());
+        if (executor == null) {
+            for (var file : files) {
+                checksums.add(function.apply(file.getValue()));
+            }
+        } else {
+            var tasks = new ArrayList<Callable<Optional<byte[]>>>(files.size());
+            for (var file : files) {
+                tasks.add(() -> function.apply(file.getValue()));
+            }
+            try {
+                for (Future<Optional<byte[]>> future : executor.invokeAll(tasks)) {
+                    checksums.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while calculating checksums", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to calculate checksum", e.getCause());
+            }
+        }
+
+        var groups = new LinkedHashMap<String, List<SimpleEntry<String, File>>>();
+        for (int i = 0; i < files.size(); i++) {
+            var checksum = checksums.get(i);
+            if (checksum.isPresent()) {
+                groups.computeIfAbsent(ChecksumBuilder.toHexString(checksum.get()), k -> new ArrayList<>()).add(files.get(i));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Calculates a checksum of the first and last blocks of a file.
+     *
+     * @param f The file for which the checksum is to be calculated.
+     * @return The calculated checksum as a byte array.
+     */
+    static Optional<byte[]> partialChecksum(File f) {
+        try (var channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            var md = MessageDigest.getInstance("MD5");
+            var buffer = ByteBuffer.allocate(PARTIAL_BLOCK_SIZE);
+            var size = channel.size();
+
+            readBlock(channel, buffer, 0);
+            md.update(buffer);
+
+            readBlock(channel, buffer, Math.max(0, size - PARTIAL_BLOCK_SIZE));
+            md.update(buffer);
+
+            return Optional.of(md.digest());
+        } catch (Exception e) {
+            logger.info("Caught exception during partial checksum: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads a block of a file into the buffer and flips the buffer so it can be hashed.
+     *
+     * @param channel The channel to read from.
+     * @param buffer The buffer to read into.
+     * @param position The position in the file to start reading at.
+     * @throws IOException if an I/O error occurs while reading.
+     */
+    private static void readBlock(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            var nread = channel.read(buffer, position + buffer.position());
+            if (nread < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+}
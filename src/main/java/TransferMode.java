@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How a file is put in its destination when organizing or deduplicating.
+ * <p>
+ * Anything but COPY avoids writing a second copy of the data when the source and destination are on the same file
+ * system. Hard links, moves and clones can't cross file systems, so those fall back to a copy (or a copy and delete
+ * for MOVE) when the destination is on another device.
+ */
+public enum TransferMode {
+    COPY,
+    MOVE,
+    HARDLINK,
+    SYMLINK,
+    CLONE;
+
+    // Logger for logging information and error messages
+    private static final Logger logger = LogManager.getLogger(TransferMode.class);
+
+    // Destination file systems cloning has failed on, so later files going there go straight to a copy
+    private static final Set<FileStore> cloneUnavailable = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Puts the source file at the target path. The target must not exist.
+     *
+     * @param source The file to transfer.
+     * @param target Where to put it.
+     * @throws IOException if the file couldn't be transferred, including when the target already exists.
+     */
+    public void transfer(Path source, Path target) throws IOException {
+        var begin = System.nanoTime();
+        switch (this) {
+            case COPY:
+                copy(source, target);
+                break;
+            case MOVE:
+                move(source, target);
+                break;
+            case HARDLINK:
+                link(source, target);
+                break;
+            case SYMLINK:
+                symlink(source, target);
+                break;
+            case CLONE:
+                clone(source, target);
+                break;
+        }
+        Metrics.record(Metrics.Stage.COPY, begin);
+    }
+
+    /**
+     * Copies the file, counting the bytes written.
+     */
+    private static void copy(Path source, Path target) throws IOException {
+        Files.copy(source, target);
+        Metrics.addBytesWritten(Files.size(target));
+    }
+
+    /**
+     * Renames the file, copying and deleting it if it's going to another file system. An atomic rename replaces an
+     * existing target on most systems, so the target is checked first.
+     */
+    private static void move(Path source, Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.debug("Can't rename {} to {}, copying it instead", source, target);
+            Files.move(source, target);
+            Metrics.addBytesWritten(Files.size(target));
+        }
+    }
+
+    /**
+     * Creates a hard link to the file, copying it if that isn't possible, for example on another file system.
+     */
+    private static void link(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Can't link {} to {}, copying it instead: {}", target, source, e.getMessage());
+            copy(source, target);
+        }
+    }
+
+    /**
+     * Creates a symbolic link to the absolute path of the file, copying it if links aren't supported.
+     */
+    private static void symlink(Path source, Path target) throws IOException {
+        try {
+            Files.createSymbolicLink(target, source.toAbsolutePath());
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Can't symlink {} to {}, copying it instead: {}", target, source, e.getMessage());
+            copy(source, target);
+        }
+    }
+
+    /**
+     * Makes a copy-on-write clone of the file with cp, which shares the data blocks on file systems like Btrfs, XFS
+     * and APFS. Java has no API for this. Copies the file if cloning fails, and stops trying to clone to the
+     * destination's file system after the first failure there.
+     * <p>
+     * The target is created before cp runs, so a file that appears at the target in the meantime isn't overwritten,
+     * and cp then writes into the empty file.
+     */
+    private static void clone(Path source, Path target) throws IOException {
+        Files.createFile(target);
+        try {
+            var store = Files.getFileStore(target);
+            if (!cloneUnavailable.contains(store) && runCp(source, target, store)) {
+                return;
+            }
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            Metrics.addBytesWritten(Files.size(target));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * Clones the file into the target with cp. Paths are passed after "--" so they're never read as options.
+     *
+     * @param store The file system of the target, where cloning stops being tried if cp fails.
+     * @return true if cp succeeded.
+     */
+    private static boolean runCp(Path source, Path target, FileStore store) throws IOException {
+        var macOs = System.getProperty("os.name", "").toLowerCase().startsWith("mac");
+        var command = macOs
+                ? new ProcessBuilder("cp", "-c", "--", source.toString(), target.toString())
+                : new ProcessBuilder("cp", "--reflink=always", "--", source.toString(), target.toString());
+        try {
+            var process = command.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (process.waitFor() == 0) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning " + source, e);
+        } catch (IOException e) {
+            logger.debug("Can't run cp: {}", e.getMessage());
+        }
+
+        if (cloneUnavailable.add(store)) {
+            logger.warn("Files can't be cloned to {} on {}, copying them instead", target.getParent(), store);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptureDateCacheTest {
+
+    private Path dir;
+    private Path cacheFile;
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private final Function<File, Optional<LocalDateTime>> dateFunction = f -> {
+        reads.incrementAndGet();
+        return f.getName().endsWith(".jpg") ? Optional.of(LocalDateTime.of(2018, 7, 1, 8, 15, 0)) : Optional.empty();
+    };
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("captureDateCacheTest");
+        cacheFile = dir.resolve("dates.cache");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void datesAreReadOncePerFile() throws IOException {
+        var photo = Files.write(dir.resolve("a.jpg"), new byte[10]).toFile();
+        var other = Files.write(dir.resolve("b.txt"), new byte[10]).toFile();
+
+        try (var cache = new CaptureDateCache(cacheFile)) {
+            var dates = cache.wrap(dateFunction);
+            assertEquals(Optional.of(LocalDateTime.of(2018, 7, 1, 8, 15, 0)), dates.apply(photo));
+            assertEquals(Optional.empty(), dates.apply(other));
+            assertEquals(Optional.of(LocalDateTime.of(2018, 7, 1, 8, 15, 0)), dates.apply(photo));
+            assertEquals(Optional.empty(), dates.apply(other));
+            assertEquals(2, reads.get());
+            assertEquals(2, cache.getHits());
+        }
+
+        // The dates, and the lack of one, survive reopening the cache
+        try (var cache = new CaptureDateCache(cacheFile)) {
+            var dates = cache.wrap(dateFunction);
+            assertEquals(Optional.of(LocalDateTime.of(2018, 7, 1, 8, 15, 0)), dates.apply(photo));
+            assertEquals(Optional.empty(), dates.apply(other));
+            assertEquals(2, reads.get());
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    void changedFilesAreReadAgain() throws IOException {
+        var photo = Files.write(dir.resolve("a.jpg"), new byte[10]);
+        try (var cache = new CaptureDateCache(cacheFile)) {
+            var dates = cache.wrap(dateFunction);
+            dates.apply(photo.toFile());
+            Files.setLastModifiedTime(photo, FileTime.fromMillis(photo.toFile().lastModified() - 60_000));
+            dates.apply(photo.toFile());
+            assertEquals(2, reads.get());
+            assertEquals(1, cache.size());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptureDateReaderTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("captureDateReaderTest");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(java.io.File::delete);
+        }
+    }
+
+    /**
+     * Builds a TIFF structure with the given date in the main image directory, or in an EXIF directory.
+     */
+    static byte[] tiff(ByteOrder order, String date, boolean inExifDirectory) {
+        var buffer = ByteBuffer.allocate(256).order(order);
+        buffer.put(order == ByteOrder.LITTLE_ENDIAN ? new byte[]{'I', 'I'} : new byte[]{'M', 'M'});
+        buffer.putShort((short) 42).putInt(8);
+
+        // Main image directory at 8, with one entry, pointing either to the date or to the EXIF directory at 26
+        buffer.putShort((short) 1);
+        if (inExifDirectory) {
+            buffer.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(26);
+        } else {
+            buffer.putShort((short) 0x0132).putShort((short) 2).putInt(20).putInt(26);
+        }
+        buffer.putInt(0);
+
+        if (inExifDirectory) {
+            // EXIF directory at 26, with an unrelated entry and the original date at 56
+            buffer.putShort((short) 2);
+            buffer.putShort((short) 0x829A).putShort((short) 5).putInt(1).putInt(0);
+            buffer.putShort((short) 0x9003).putShort((short) 2).putInt(20).putInt(56);
+            buffer.putInt(0);
+        }
+        buffer.put(date.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    static byte[] jpegWithExif(String date) throws IOException {
+        var exif = tiff(ByteOrder.LITTLE_ENDIAN, date, true);
+        var out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+
+        // A JFIF segment comes first, and is skipped
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xE0, 0, 16, 'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+        var length = 2 + 6 + exif.length;
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length, 'E', 'x', 'i', 'f', 0, 0});
+        out.write(exif);
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xDA, 0, 2});
+        out.write(new byte[4096]);
+        return out.toByteArray();
+    }
+
+    private static byte[] box(String type, byte[] body) {
+        return ByteBuffer.allocate(8 + body.length).putInt(8 + body.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(body).array();
+    }
+
+    static byte[] movie(long creationTime, boolean version1, boolean largeMediaBox) throws IOException {
+        var out = new ByteArrayOutputStream();
+        out.write(box("ftyp", "isom\0\0\0\0isommp41".getBytes(StandardCharsets.ISO_8859_1)));
+
+        // The media data comes before the movie box, and is skipped by its size
+        var media = new byte[100_000];
+        if (largeMediaBox) {
+            out.write(ByteBuffer.allocate(16).putInt(1).put("mdat".getBytes(StandardCharsets.ISO_8859_1)).putLong(16 + media.length).array());
+            out.write(media);
+        } else {
+            out.write(box("mdat", media));
+        }
+
+        var header = ByteBuffer.allocate(version1 ? 112 : 100);
+        if (version1) {
+            header.putInt(1 << 24).putLong(creationTime).putLong(creationTime);
+        } else {
+            header.putInt(0).putInt((int) creationTime).putInt((int) creationTime);
+        }
+        out.write(box("moov", concat(box("udta", new byte[20]), box("mvhd", header.array()))));
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        var result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private Optional<LocalDateTime> read(String name, byte[] contents) throws IOException {
+        return CaptureDateReader.read(Files.write(dir.resolve(name), contents).toFile());
+    }
+
+    @Test
+    void readsExifDateFromJpeg() throws IOException {
+        assertEquals(Optional.of(LocalDateTime.of(2019, 8, 3, 9, 30, 15)), read("a.jpg", jpegWithExif("2019:08:03 09:30:15")));
+    }
+
+    @Test
+    void readsDateFromTiff() throws IOException {
+        assertEquals(Optional.of(LocalDateTime.of(2021, 12, 24, 18, 0, 1)),
+                read("a.dng", tiff(ByteOrder.BIG_ENDIAN, "2021:12:24 18:00:01", false)));
+        assertEquals(Optional.of(LocalDateTime.of(2021, 12, 24, 18, 0, 1)),
+                read("b.dng", tiff(ByteOrder.LITTLE_ENDIAN, "2021:12:24 18:00:01", true)));
+    }
+
+    @Test
+    void readsCreationTimeFromMovies() throws IOException {
+        // 2020-05-17 10:20:30 UTC, in seconds since 1904
+        var creationTime = 1589710830L + 2_082_844_800L;
+        var expected = Optional.of(LocalDateTime.of(2020, 5, 17, 10, 20, 30));
+        assertEquals(expected, read("a.mp4", movie(creationTime, false, false)));
+        assertEquals(expected, read("b.mov", movie(creationTime, true, true)));
+        assertEquals(Optional.empty(), read("c.mp4", movie(0, false, false)));
+    }
+
+    @Test
+    void filesWithoutDatesHaveNone() throws IOException {
+        assertEquals(Optional.empty(), read("zero.jpg", jpegWithExif("0000:00:00 00:00:00")));
+        assertEquals(Optional.empty(), read("notes.txt", "just some text in a file".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Optional.empty(), read("empty.jpg", new byte[0]));
+        assertEquals(Optional.empty(), read("truncated.jpg", Arrays.copyOf(jpegWithExif("2019:08:03 09:30:15"), 40)));
+
+        var plain = dir.resolve("plain.jpg");
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "jpg", plain.toFile());
+        assertEquals(Optional.empty(), CaptureDateReader.read(plain.toFile()));
+    }
+
+    @Test
+    void parsesExifDates() {
+        assertEquals(Optional.of(LocalDateTime.of(2001, 2, 3, 4, 5, 6)), CaptureDateReader.parseExifDate("2001:02:03 04:05:06"));
+        assertEquals(Optional.empty(), CaptureDateReader.parseExifDate("    :  :     :  :  "));
+        assertEquals(Optional.empty(), CaptureDateReader.parseExifDate("2001:13:03 04:05:06"));
+        assertEquals(Optional.empty(), CaptureDateReader.parseExifDate("2001-02-03"));
+    }
+
+    @Test
+    void readsPastTheHeaderFromTheOpenFile() throws IOException {
+        // The movie box is after the media data, further on than the header reaches
+        var creationTime = 1589710830L + 2_082_844_800L;
+        var file = Files.write(dir.resolve("a.mp4"), movie(creationTime, false, false));
+        try (var channel = FileChannel.open(file)) {
+            var header = ByteBuffer.wrap(Files.readAllBytes(file), 0, ChecksumReader.HEADER_SIZE);
+            assertEquals(Optional.of(LocalDateTime.of(2020, 5, 17, 10, 20, 30)), CaptureDateReader.read(channel, header.slice()));
+        }
+
+        var jpeg = Files.write(dir.resolve("a.jpg"), jpegWithExif("2019:08:03 09:30:15"));
+        try (var channel = FileChannel.open(jpeg)) {
+            var header = ByteBuffer.wrap(Files.readAllBytes(jpeg));
+            assertEquals(Optional.of(LocalDateTime.of(2019, 8, 3, 9, 30, 15)), CaptureDateReader.read(channel, header));
+        }
+    }
+}
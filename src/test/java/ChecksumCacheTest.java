@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumCacheTest {
+
+    private Path dir;
+    private Path cacheFile;
+    private List<Path> files;
+
+    // Counts the files that were actually hashed
+    private AtomicInteger hashed;
+    private Function<File, Optional<byte[]>> countingChecksum;
+
+    private static final int fileToCreate = 20;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("checksumCacheTestDirectory");
+        cacheFile = Files.createTempFile("checksumCacheTest", ".cache");
+        Files.delete(cacheFile);
+        files = new ArrayList<>();
+        hashed = new AtomicInteger();
+        countingChecksum = f -> {
+            hashed.incrementAndGet();
+            return ChecksumBuilder.defaultChecksumFunction(f);
+        };
+
+        var rnd = new SecureRandom();
+        for (int j = 1; j <= fileToCreate; j++) {
+            var fileContents = new byte[4096];
+            rnd.nextBytes(fileContents);
+            files.add(Files.write(dir.resolve("file" + j), fileContents));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir);
+        Files.deleteIfExists(cacheFile);
+    }
+
+    private Map<String, List<AbstractMap.SimpleEntry<String, File>>> runWithCache() throws IOException {
+        try (var cache = new ChecksumCache(cacheFile, "MD5")) {
+            var builder = new ChecksumBuilder(List.of(dir.toString()), cache.wrap(countingChecksum));
+            builder.calculateChecksums();
+            return builder.getChecksumMap();
+        }
+    }
+
+    @Test
+    void secondRunUsesCache() throws IOException {
+        var first = runWithCache();
+        assertEquals(fileToCreate, hashed.get());
+
+        var second = runWithCache();
+        assertEquals(fileToCreate, hashed.get());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void changedFileIsHashedAgain() throws IOException {
+        runWithCache();
+
+        var changed = files.get(0);
+        Files.write(changed, new byte[]{1, 2, 3});
+        changed.toFile().setLastModified(changed.toFile().lastModified() + 2000);
+
+        var map = runWithCache();
+        assertEquals(fileToCreate + 1, hashed.get());
+        assertEquals(fileToCreate, map.size());
+    }
+
+    @Test
+    void recoversFromTornWrite() throws IOException {
+        runWithCache();
+
+        // Simulate a crash part way through writing an entry
+        Files.write(cacheFile, new byte[]{0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (var cache = new ChecksumCache(cacheFile, "MD5")) {
+            assertEquals(fileToCreate, cache.size());
+        }
+
+        runWithCache();
+        assertEquals(fileToCreate, hashed.get());
+    }
+
+    @Test
+    void differentAlgorithmDiscardsCache() throws IOException {
+        runWithCache();
+
+        try (var cache = new ChecksumCache(cacheFile, "SHA-256")) {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void invalidateRemovesCache() throws IOException {
+        runWithCache();
+        ChecksumCache.invalidate(cacheFile);
+
+        runWithCache();
+        assertEquals(fileToCreate * 2, hashed.get());
+    }
+
+    @Test
+    void compactRemovesMissingFiles() throws IOException {
+        runWithCache();
+        Files.delete(files.remove(0));
+
+        try (var cache = new ChecksumCache(cacheFile, "MD5")) {
+            cache.compact();
+            assertEquals(fileToCreate - 1, cache.size());
+        }
+
+        try (var cache = new ChecksumCache(cacheFile, "MD5")) {
+            assertEquals(fileToCreate - 1, cache.size());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumReaderTest {
+
+    private Path dir;
+    private List<Path> files;
+
+    // Sizes chosen around the buffer and segment boundaries used below
+    private static final int[] fileSizes = {0, 1, 4095, 4096, 4097, 3 * 4096 + 7, 64 * 1024};
+    private static final int bufferSize = 4096;
+    private static final long mappedSegmentSize = 8192;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("checksumReaderTestDirectory");
+        files = new ArrayList<>();
+
+        var rnd = new SecureRandom();
+        for (int size : fileSizes) {
+            var fileContents = new byte[size];
+            rnd.nextBytes(fileContents);
+            files.add(Files.write(dir.resolve("file" + size), fileContents));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void allReadModesMatchDefaultChecksum() {
+        for (var readMode : ChecksumReader.ReadMode.values()) {
+            var reader = new ChecksumReader(HashAlgorithm.MD5, readMode, bufferSize, 16 * 1024, mappedSegmentSize);
+            for (var file : files) {
+                var expected = ChecksumBuilder.defaultChecksumFunction(file.toFile());
+                var actual = reader.checksum(file.toFile());
+                assertTrue(actual.isPresent());
+                assertArrayEquals(expected.get(), actual.get());
+            }
+        }
+    }
+
+    @Test
+    void autoModeMapsLargeFiles() {
+        var reader = new ChecksumReader(HashAlgorithm.MD5, ChecksumReader.ReadMode.AUTO, bufferSize, 16 * 1024, mappedSegmentSize);
+        assertEquals(ChecksumReader.ReadMode.CHANNEL, reader.modeFor(16 * 1024 - 1));
+        assertEquals(ChecksumReader.ReadMode.MAPPED, reader.modeFor(16 * 1024));
+    }
+
+    @Test
+    void filesThatAreMovedAreNotMapped() {
+        assertEquals(ChecksumReader.ReadMode.CHANNEL, ChecksumReader.readModeFor(ChecksumReader.ReadMode.AUTO, TransferMode.MOVE));
+        assertEquals(ChecksumReader.ReadMode.CHANNEL, ChecksumReader.readModeFor(ChecksumReader.ReadMode.MAPPED, TransferMode.MOVE));
+        assertEquals(ChecksumReader.ReadMode.STREAM, ChecksumReader.readModeFor(ChecksumReader.ReadMode.STREAM, TransferMode.MOVE));
+        assertEquals(ChecksumReader.ReadMode.AUTO, ChecksumReader.readModeFor(ChecksumReader.ReadMode.AUTO, TransferMode.COPY));
+    }
+
+    @Test
+    void missingFileHasNoChecksum() {
+        var reader = new ChecksumReader(ChecksumReader.ReadMode.CHANNEL, bufferSize);
+        assertTrue(reader.checksum(new File(dir.toFile(), "missing")).isEmpty());
+    }
+
+    @Test
+    void testConstructorWithInvalidBufferSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ChecksumReader(ChecksumReader.ReadMode.CHANNEL, 0));
+    }
+
+    @Test
+    void usableAsChecksumFunction() throws IOException {
+        var serial = new ChecksumBuilder(List.of(dir.toString()), null);
+        serial.calculateChecksums();
+
+        var reader = new ChecksumReader(HashAlgorithm.MD5, ChecksumReader.ReadMode.AUTO, bufferSize, 16 * 1024, mappedSegmentSize);
+        var builder = new ChecksumBuilder(List.of(dir.toString()), reader::checksum);
+        builder.calculateChecksums();
+
+        assertEquals(serial.getChecksumMap(), builder.getChecksumMap());
+    }
+
+    @Test
+    void listenerGetsTheStartOfTheFileInEveryReadMode() throws IOException {
+        var bigContents = new byte[ChecksumReader.HEADER_SIZE + 5000];
+        new SecureRandom().nextBytes(bigContents);
+        files.add(Files.write(dir.resolve("big"), bigContents));
+        for (var readMode : ChecksumReader.ReadMode.values()) {
+            var reader = new ChecksumReader(HashAlgorithm.MD5, readMode, bufferSize, 16 * 1024, mappedSegmentSize);
+            for (var file : files) {
+                var contents = Files.readAllBytes(file);
+                var headers = new ArrayList<byte[]>();
+                var actual = reader.checksum(file.toFile(), (channel, header) -> {
+                    assertEquals(contents.length, channel.size());
+                    var bytes = new byte[header.remaining()];
+                    header.get(bytes);
+                    headers.add(bytes);
+                });
+
+                assertArrayEquals(ChecksumBuilder.defaultChecksumFunction(file.toFile()).get(), actual.get());
+                assertEquals(1, headers.size());
+
+                // Mapped files only pass on their first segment, which is smaller than the header here
+                var mapped = reader.modeFor(contents.length) == ChecksumReader.ReadMode.MAPPED;
+                var expectedLength = (int) Math.min(contents.length, mapped ? mappedSegmentSize : ChecksumReader.HEADER_SIZE);
+                assertArrayEquals(Arrays.copyOf(contents, expectedLength), headers.get(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumSetTest {
+
+    @Test
+    void countsMatchHashMap() {
+        var rnd = new Random(1);
+        var expected = new HashMap<String, Integer>();
+        var set = new ChecksumSet();
+        var digests = new ArrayList<byte[]>();
+
+        // Enough checksums to force the table to grow several times
+        for (int i = 0; i < 20_000; i++) {
+            byte[] digest;
+            if (!digests.isEmpty() && rnd.nextInt(4) == 0) {
+                digest = digests.get(rnd.nextInt(digests.size())).clone();
+            } else {
+                digest = new byte[16];
+                rnd.nextBytes(digest);
+                digests.add(digest);
+            }
+
+            var previous = expected.merge(HexFormat.of().formatHex(digest), 1, Integer::sum) - 1;
+            assertEquals(Math.min(previous, 2), set.add(digest));
+        }
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    void rejectsChecksumsOfADifferentLength() {
+        var set = new ChecksumSet();
+        set.add(new byte[20]);
+        assertThrows(IllegalArgumentException.class, () -> set.add(new byte[16]));
+        assertThrows(IllegalArgumentException.class, () -> new ChecksumSet().add(new byte[0]));
+    }
+}
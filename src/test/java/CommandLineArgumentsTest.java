@@ -22,6 +22,7 @@
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -108,4 +109,270 @@ public class CommandLineArgumentsTest {
         assertEquals(DateOrganizer.DateFormat.DD_MM_YYYY, cmdArgs.get().getDateFormat());
         assertTrue(cmdArgs.get().isPreview());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testThreads() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "-t", "8"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertEquals(8, cmdArgs.get().getThreads());
+        assertTrue(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testInvalidThreads() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "-t", "many"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertFalse(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testCacheOptions() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--cache", "checksums.cache", "--compact-cache"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertEquals("checksums.cache", cmdArgs.get().getCacheFile());
+        assertTrue(cmdArgs.get().isCompactCache());
+        assertFalse(cmdArgs.get().isClearCache());
+        assertTrue(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testClearCacheWithoutCacheFile() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--clear-cache"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertFalse(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testReadModeAndBufferSize() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--read-mode", "mmap", "--buffer-size", "4M"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertEquals(ChecksumReader.ReadMode.MAPPED, cmdArgs.get().getReadMode());
+        assertEquals(4 * 1024 * 1024, cmdArgs.get().getBufferSize());
+        assertTrue(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testHashAlgorithm() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--hash", "murmur3"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertEquals(HashAlgorithm.MURMUR3_128, cmdArgs.get().getHashAlgorithm());
+    }
+
+    @Test
+    void testBenchmarkWithoutOutputDir() {
+        String[] args = {"-a", "benchmark", "-i", "inputDir1"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+    }
+
+    @Test
+    void testExternalIndex() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--index", "external", "--spill-dir", "spill", "--run-size", "5000"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("external", cmdArgs.get().getIndex());
+        assertEquals("spill", cmdArgs.get().getSpillDir());
+        assertEquals(5000, cmdArgs.get().getRunSize());
+
+        String[] invalidArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--index", "external", "--run-size", "0"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testPipeline() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--pipeline"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertTrue(cmdArgs.get().isPipeline());
+
+        String[] sizeFirstArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--pipeline", "--size-first"};
+        assertFalse(CommandLineArguments.parse(sizeFirstArgs).get().isValid());
+    }
+
+    @Test
+    void testCopyThreads() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--copy-threads", "8", "--copies-per-device", "2"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals(8, cmdArgs.get().getCopyThreads());
+        assertEquals(2, cmdArgs.get().getCopiesPerDevice());
+
+        String[] invalidArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--copy-threads", "0"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testTransferMode() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--transfer", "hardlink"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertEquals(TransferMode.HARDLINK, cmdArgs.get().getTransferMode());
+
+        String[] defaultArgs = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir"};
+        assertEquals(TransferMode.COPY, CommandLineArguments.parse(defaultArgs).get().getTransferMode());
+    }
+
+    @Test
+    void testJournalOptions() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--journal", "journal.bin", "--clear-journal"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("journal.bin", cmdArgs.get().getJournalFile());
+        assertTrue(cmdArgs.get().isClearJournal());
+
+        String[] invalidArgs = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--clear-journal"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testLogProfile() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--log-profile", "perf"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("perf", cmdArgs.get().getLogProfile());
+
+        String[] invalidArgs = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--log-profile", "silent"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testMetricsFile() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--metrics-file", "metrics.jsonl", "--metrics-interval", "5"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("metrics.jsonl", cmdArgs.get().getMetricsFile());
+        assertEquals(5, cmdArgs.get().getMetricsInterval());
+
+        String[] invalidArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--metrics-interval", "0"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testCheckpoint() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--checkpoint", "run.checkpoint", "--resume"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("run.checkpoint", cmdArgs.get().getCheckpointFile());
+        assertTrue(cmdArgs.get().isResume());
+
+        // There's nothing to resume without a checkpoint file
+        String[] invalidArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--resume"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testWalkOptions() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--include", "*.jpg", "--include", "*.mp4", "--exclude", ".thumbnails", "--walk-threads", "4"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals(List.of("*.jpg", "*.mp4"), cmdArgs.get().getIncludes());
+        assertEquals(List.of(".thumbnails"), cmdArgs.get().getExcludes());
+        assertEquals(4, cmdArgs.get().getWalkThreads());
+
+        String[] invalidArgs = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--walk-threads", "0"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testCatalog() {
+        String[] args = {"-a", "catalog", "-i", "archiveDir", "--catalog", "archive.catalog"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("archive.catalog", cmdArgs.get().getCatalogFile());
+
+        String[] importArgs = {"-a", "deduplicate", "-i", "newDir", "-o", "archiveDir", "--catalog", "archive.catalog"};
+        assertTrue(CommandLineArguments.parse(importArgs).get().isValid());
+
+        // The catalog action needs a catalog, and files that are never hashed can't be looked up in one
+        String[] noCatalogArgs = {"-a", "catalog", "-i", "archiveDir"};
+        assertFalse(CommandLineArguments.parse(noCatalogArgs).get().isValid());
+        String[] sizeFirstArgs = {"-a", "deduplicate", "-i", "newDir", "-o", "archiveDir", "--catalog", "archive.catalog", "--size-first"};
+        assertFalse(CommandLineArguments.parse(sizeFirstArgs).get().isValid());
+    }
+
+    @Test
+    void testSimilar() {
+        String[] args = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--similar", "--max-distance", "8"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertTrue(cmdArgs.get().isSimilar());
+        assertEquals(8, cmdArgs.get().getMaxDistance());
+
+        String[] defaultArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir"};
+        assertEquals(NearDuplicateChecksumBuilder.DEFAULT_MAX_DISTANCE, CommandLineArguments.parse(defaultArgs).get().getMaxDistance());
+
+        String[] pipelineArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--similar", "--pipeline"};
+        assertFalse(CommandLineArguments.parse(pipelineArgs).get().isValid());
+        String[] distanceArgs = {"-a", "deduplicate", "-i", "inputDir1", "-o", "outputDir", "--similar", "--max-distance", "40"};
+        assertFalse(CommandLineArguments.parse(distanceArgs).get().isValid());
+    }
+
+    @Test
+    void testReadDates() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--read-dates", "--date-cache", "dates.cache"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertTrue(cmdArgs.get().isReadDates());
+        assertEquals("dates.cache", cmdArgs.get().getDateCacheFile());
+
+        // There's nothing to cache without reading dates
+        String[] invalidArgs = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--date-cache", "dates.cache"};
+        assertFalse(CommandLineArguments.parse(invalidArgs).get().isValid());
+    }
+
+    @Test
+    void testDedupeAndOrganize() {
+        String[] args = {"-a", "dedupe-and-organize", "-i", "inputDir1", "-i", "inputDir2", "-o", "outputDir", "--date-cache", "dates.cache"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("dedupe-and-organize", cmdArgs.get().getAction());
+        assertEquals("dates.cache", cmdArgs.get().getDateCacheFile());
+
+        String[] noOutput = {"-a", "dedupe-and-organize", "-i", "inputDir1"};
+        assertFalse(CommandLineArguments.parse(noOutput).get().isValid());
+
+        // Files are only organized once every group of duplicates is known
+        String[] pipeline = {"-a", "dedupe-and-organize", "-i", "inputDir1", "-o", "outputDir", "--pipeline"};
+        assertFalse(CommandLineArguments.parse(pipeline).get().isValid());
+
+        // The dates read while hashing are held in memory, which defeats an external index
+        String[] external = {"-a", "dedupe-and-organize", "-i", "inputDir1", "-o", "outputDir", "--index", "external"};
+        assertFalse(CommandLineArguments.parse(external).get().isValid());
+    }
+
+    @Test
+    void testLayout() {
+        String[] args = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--layout", "{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]",
+                "--input-pattern", "{yyyy}{MM}{dd}", "--input-pattern", "{yyyy}-{MM}-{dd} {desc}"};
+        Optional<CommandLineArguments> cmdArgs = CommandLineArguments.parse(args);
+        assertTrue(cmdArgs.isPresent());
+        assertTrue(cmdArgs.get().isValid());
+        assertEquals("{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]", cmdArgs.get().getLayout());
+        assertEquals(List.of("{yyyy}{MM}{dd}", "{yyyy}-{MM}-{dd} {desc}"), cmdArgs.get().getInputPatterns());
+
+        String[] badLayout = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--layout", "{yyyy}/{camera}"};
+        assertFalse(CommandLineArguments.parse(badLayout).get().isValid());
+
+        String[] badPattern = {"-a", "organize", "-i", "inputDir1", "-o", "outputDir", "--input-pattern", "{yyyy}-{MM}"};
+        assertFalse(CommandLineArguments.parse(badPattern).get().isValid());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactChecksumIndexTest {
+
+    private static Map<String, List<SimpleEntry<String, File>>> toMap(CompactChecksumIndex index) {
+        var map = new HashMap<String, List<SimpleEntry<String, File>>>();
+        index.forEachGroup(map::put);
+        return map;
+    }
+
+    @Test
+    void groupsMatchHashMap() {
+        var rnd = new Random(1);
+        var expected = new HashMap<String, List<SimpleEntry<String, File>>>();
+        var index = new CompactChecksumIndex(16);
+        var digests = new ArrayList<byte[]>();
+
+        // Enough files to force the table and record arrays to grow several times
+        for (int i = 0; i < 20_000; i++) {
+            byte[] digest;
+            if (!digests.isEmpty() && rnd.nextInt(4) == 0) {
+                digest = digests.get(rnd.nextInt(digests.size()));
+            } else {
+                digest = new byte[16];
+                rnd.nextBytes(digest);
+                digests.add(digest);
+            }
+
+            var inputDir = "input" + (i % 3);
+            var file = new File(inputDir + File.separator + "dir" + (i / 50), "file " + i + ".jpg");
+            index.add(digest, inputDir, file);
+            expected.computeIfAbsent(ChecksumBuilder.toHexString(digest), k -> new ArrayList<>()).add(new SimpleEntry<>(inputDir, file));
+        }
+
+        assertEquals(20_000, index.size());
+        assertEquals(expected.size(), index.groupCount());
+        assertEquals(expected, toMap(index));
+    }
+
+    @Test
+    void sameParentUnderDifferentInputDirs() {
+        var index = new CompactChecksumIndex(16);
+        var digest = new byte[16];
+        index.add(digest, "a", new File("a/b", "x"));
+        index.add(digest, "a/b", new File("a/b", "x"));
+
+        var files = toMap(index).get(ChecksumBuilder.toHexString(digest));
+        assertEquals(List.of(new SimpleEntry<>("a", new File("a/b", "x")), new SimpleEntry<>("a/b", new File("a/b", "x"))), files);
+    }
+
+    @Test
+    void digestsThatArentMultiplesOfEightBytes() {
+        var index = new CompactChecksumIndex(20);
+        var digest = new byte[20];
+        new Random(2).nextBytes(digest);
+        index.add(digest, "in", new File("in", "\u00fcn\u00efc\u00f6d\u00e9 name.jpg"));
+
+        var map = toMap(index);
+        assertEquals(List.of(new SimpleEntry<>("in", new File("in", "\u00fcn\u00efc\u00f6d\u00e9 name.jpg"))), map.get(ChecksumBuilder.toHexString(digest)));
+    }
+
+    @Test
+    void rejectsWrongDigestLength() {
+        var index = new CompactChecksumIndex(16);
+        assertThrows(IllegalArgumentException.class, () -> index.add(new byte[32], "in", new File("in", "x")));
+    }
+
+    @Test
+    void builderMatchesChecksumBuilderAndDeduplicates() throws IOException {
+        var dir = Files.createTempDirectory("compactChecksumBuilderTestDirectory");
+        var outputDir = Files.createTempDirectory("compactChecksumBuilderTestOutput");
+        try {
+            var rnd = new SecureRandom();
+            var duplicate = new byte[2048];
+            rnd.nextBytes(duplicate);
+            for (int i = 0; i < 30; i++) {
+                var contents = duplicate;
+                if (i % 3 != 0) {
+                    contents = new byte[1024];
+                    rnd.nextBytes(contents);
+                }
+                Files.write(dir.resolve("file" + i), contents);
+            }
+
+            var serial = new ChecksumBuilder(List.of(dir.toString()), null);
+            serial.calculateChecksums();
+
+            var compact = new CompactChecksumBuilder(List.of(dir.toString()), null, 2);
+            compact.calculateChecksums();
+
+            var groups = new HashMap<String, List<SimpleEntry<String, File>>>();
+            compact.forEachChecksumGroup(groups::put);
+            assertEquals(serial.getChecksumMap(), groups);
+
+            new DeduplicateFiles(outputDir.toString(), false).copyAndDeduplicateFiles(compact);
+            assertEquals(serial.getChecksumMap().size(), outputDir.toFile().listFiles().length);
+        } finally {
+            for (var root : List.of(dir, outputDir)) {
+                Files.walk(root).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CopyExecutorTest {
+
+    private Path inputDir;
+    private Path outputDir;
+    private List<Path> files;
+
+    private static final int fileToCreate = 30;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createTempDirectory("copyExecutorTestInput");
+        outputDir = Files.createTempDirectory("copyExecutorTestOutput");
+        files = new ArrayList<>();
+
+        var rnd = new SecureRandom();
+        for (int j = 1; j <= fileToCreate; j++) {
+            Path file = Files.createTempFile(inputDir, "file" + j, ".jpg");
+            var fileContents = new byte[j * 1024];
+            rnd.nextBytes(fileContents);
+            Files.write(file, fileContents);
+            files.add(file);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var root : List.of(inputDir, outputDir)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void copiesEveryFile() throws IOException {
+        var copyExecutor = new CopyExecutor(4, 2);
+        var expectedBytes = 0L;
+        for (var file : files) {
+            copyExecutor.copy(file.toString(), outputDir.resolve(file.getFileName()).toString());
+            expectedBytes += Files.size(file);
+        }
+        copyExecutor.close();
+
+        assertEquals(fileToCreate, copyExecutor.getCopiedFiles());
+        assertEquals(expectedBytes, copyExecutor.getCopiedBytes());
+        assertTrue(copyExecutor.getFailures().isEmpty());
+        for (var file : files) {
+            assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(outputDir.resolve(file.getFileName())));
+        }
+    }
+
+    @Test
+    void collectsFailures() throws IOException {
+        // The destination already exists for the first file, and the directory is missing for the second
+        var existing = outputDir.resolve(files.get(0).getFileName());
+        Files.createFile(existing);
+        var missingDirectory = outputDir.resolve("missing").resolve(files.get(1).getFileName());
+
+        var copyExecutor = new CopyExecutor(2, 1);
+        copyExecutor.copy(files.get(0).toString(), existing.toString());
+        copyExecutor.copy(files.get(1).toString(), missingDirectory.toString());
+        copyExecutor.copy(files.get(2).toString(), outputDir.resolve(files.get(2).getFileName()).toString());
+        copyExecutor.close();
+
+        assertEquals(1, copyExecutor.getCopiedFiles());
+        var failed = new HashSet<String>();
+        copyExecutor.getFailures().forEach(failure -> failed.add(failure.source()));
+        assertEquals(Set.of(files.get(0).toString(), files.get(1).toString()), failed);
+    }
+
+    @Test
+    void oneCopyAtATimeOnADevice() throws IOException {
+        var running = new AtomicInteger();
+        var mostRunning = new AtomicInteger();
+        var copyExecutor = new CopyExecutor(4, 1);
+        for (var file : files) {
+            copyExecutor.copy(file.toString(), outputDir.resolve(file.getFileName()).toString(), () -> {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        copyExecutor.close();
+
+        assertEquals(fileToCreate, copyExecutor.getCopiedFiles());
+        assertEquals(1, mostRunning.get());
+    }
+
+    @Test
+    void testConstructorWithInvalidConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new CopyExecutor(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CopyExecutor(1, 0));
+    }
+}
@@ -33,6 +33,7 @@ import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -535,4 +536,56 @@ public class DateOrganizerTest {
         }
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void captureDateIsUsedBeforeModificationDate() throws IOException {
+        var undated = Files.write(inputDir.resolve("IMG_0001.jpg"), new byte[100]);
+        var notPhoto = Files.write(inputDir.resolve("notes.txt"), new byte[10]);
+        var modified = LocalDateTime.of(2024, 6, 1, 12, 0);
+        Files.setLastModifiedTime(undated, java.nio.file.attribute.FileTime.from(modified.toInstant(ZoneOffset.UTC)));
+        Files.setLastModifiedTime(notPhoto, java.nio.file.attribute.FileTime.from(modified.toInstant(ZoneOffset.UTC)));
+
+        Function<File, Optional<LocalDateTime>> captureDates = f ->
+                f.getName().endsWith(".jpg") ? Optional.of(LocalDateTime.of(2019, 8, 3, 9, 30)) : Optional.empty();
+        new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                OrganizeOptions.builder().captureDates(captureDates).build()).organizeFiles();
+
+        Assertions.assertTrue(Files.exists(outputDir.resolve("2019-08-03").resolve("IMG_0001.jpg")));
+        Assertions.assertTrue(Files.exists(outputDir.resolve("2024-06-01").resolve("notes.txt")));
+    }
+
+    @Test
+    void progressCountsEveryFileHandled() throws IOException {
+        var dated = Files.createDirectories(inputDir.resolve("2024-01-10 Birthday"));
+        Files.write(dated.resolve("cake.jpg"), new byte[100]);
+        Files.write(dated.resolve("candles.jpg"), new byte[300]);
+
+        try (var progress = new ProgressReporter("Organized", null, 60_000)) {
+            new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false)
+                    .organizeFiles(progress);
+
+            Assertions.assertEquals(2, progress.getFiles());
+            Assertions.assertEquals(400, progress.getBytes());
+        }
+    }
+
+    @Test
+    void layoutAndInputPatternsArrangeTheDestination() throws IOException {
+        var dated = Files.createDirectories(inputDir.resolve("2024-01-10 Birthday"));
+        Files.write(dated.resolve("cake.jpg"), new byte[100]);
+        var compact = Files.createDirectories(inputDir.resolve("IMG_20230704"));
+        Files.write(compact.resolve("fireworks.jpg"), new byte[100]);
+        var undated = Files.write(inputDir.resolve("notes.txt"), new byte[10]);
+        Files.setLastModifiedTime(undated, java.nio.file.attribute.FileTime.from(LocalDateTime.of(2024, 6, 1, 12, 0).toInstant(ZoneOffset.UTC)));
+
+        new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                OrganizeOptions.builder()
+                        .inputPatterns(List.of("{yyyy}-{MM}-{dd} {desc}", "IMG_{yyyy}{MM}{dd}"))
+                        .layout("{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]")
+                        .build()).organizeFiles();
+
+        Assertions.assertTrue(Files.exists(outputDir.resolve(Path.of("2024", "01", "2024-01-10 Birthday", "cake.jpg"))));
+        Assertions.assertTrue(Files.exists(outputDir.resolve(Path.of("2023", "07", "2023-07-04", "fireworks.jpg"))));
+        Assertions.assertTrue(Files.exists(outputDir.resolve(Path.of("2024", "06", "2024-06-01", "notes.txt"))));
+    }
+}
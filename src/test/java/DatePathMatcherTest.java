@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatePathMatcherTest {
+
+    private static final String destination = File.separator + "out";
+
+    private static String path(String... parts) {
+        return String.join(File.separator, parts);
+    }
+
+    /**
+     * The output directory the date format's regular expression gives for a file, the way DateOrganizer worked it
+     * out before DatePathMatcher.
+     */
+    private static String regexOutputDirectory(DateOrganizer.DateFormat dateFormat, String filePath) {
+        var matcher = dateFormat.getPattern().matcher(new File(filePath).getParent());
+        if (!matcher.find()) {
+            return null;
+        }
+        var date = dateFormat == DateOrganizer.DateFormat.YYYY_MM_DD
+                ? matcher.group(dateFormat.getYearGroup()) + "-" + matcher.group(dateFormat.getMonthGroup()) + "-" + matcher.group(dateFormat.getDayGroup())
+                : matcher.group(dateFormat.getDayGroup()) + "-" + matcher.group(dateFormat.getMonthGroup()) + "-" + matcher.group(dateFormat.getYearGroup());
+        return destination + File.separator + date + " " + matcher.group(dateFormat.getDescriptionGroup());
+    }
+
+    @Test
+    void matchesTheSameFoldersAsTheRegularExpression() {
+        var parents = List.of(
+                path("in", "2024-01-10 Birthday"),
+                path("in", "2024-01-10 Birthday, Anna's party", "raw"),
+                path("in", "photos", "2024-01-10"),
+                path("in", "2024-01-10 "),
+                path("in", "12024-01-10 Too many digits"),
+                path("in", "2024-1-10 Short month"),
+                path("in", "2024-01-10_Underscore"),
+                path("in", "2024-01-10 Stops-at the dash"),
+                path("in", "10-01-2024 Day first"),
+                path("in", "2023-12-31 One", "2024-01-01 Two"),
+                path("in", "no date here"),
+                path("2024-01-10 At the root"));
+        for (var dateFormat : DateOrganizer.DateFormat.values()) {
+            var matcher = new DatePathMatcher(dateFormat, destination);
+            for (var parent : parents) {
+                var filePath = path(parent, "IMG_0001.jpg");
+                assertEquals(regexOutputDirectory(dateFormat, filePath), matcher.outputDirectory(filePath), filePath);
+            }
+        }
+    }
+
+    @Test
+    void matchesRandomPathsLikeTheRegularExpression() {
+        var rnd = new Random(42);
+        var alphabet = "0123456789-- ab,'_" + File.separator;
+        for (var dateFormat : DateOrganizer.DateFormat.values()) {
+            var matcher = new DatePathMatcher(dateFormat, destination);
+            for (int i = 0; i < 20000; i++) {
+                var parent = new StringBuilder("in").append(File.separator);
+                var length = rnd.nextInt(30);
+                for (int j = 0; j < length; j++) {
+                    parent.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+                }
+                var filePath = new File(parent + File.separator + "f.jpg").getPath();
+                assertEquals(regexOutputDirectory(dateFormat, filePath), matcher.outputDirectory(filePath), filePath);
+            }
+        }
+    }
+
+    @Test
+    void filesInTheSameDirectoryShareTheResult() {
+        var matcher = new DatePathMatcher(DateOrganizer.DateFormat.YYYY_MM_DD, destination);
+        var first = matcher.outputDirectory(path("in", "2024-01-10 Birthday", "a.jpg"));
+        assertEquals(destination + File.separator + "2024-01-10 Birthday", first);
+        assertSame(first, matcher.outputDirectory(path("in", "2024-01-10 Birthday", "b.jpg")));
+
+        // Going back to a directory seen before still finds its result
+        assertNull(matcher.outputDirectory(path("in", "other", "c.jpg")));
+        assertSame(first, matcher.outputDirectory(path("in", "2024-01-10 Birthday", "d.jpg")));
+
+        // A directory whose path starts like the last one isn't mistaken for it
+        assertEquals(destination + File.separator + "2024-01-10 Birthdax", matcher.outputDirectory(path("in", "2024-01-10 Birthdax", "e.jpg")));
+        assertEquals(destination + File.separator + "2024-01-10 Birthday", matcher.outputDirectory(path("in", "2024-01-10 Birthday", "2024-01-11", "f.jpg")));
+        assertNull(matcher.outputDirectory(path("in", "2024", "g.jpg")));
+    }
+
+    @Test
+    void fileWithoutParentHasNoDate() {
+        var matcher = new DatePathMatcher(DateOrganizer.DateFormat.YYYY_MM_DD, destination);
+        assertNull(matcher.outputDirectory("2024-01-10 Birthday.jpg"));
+    }
+
+    @Test
+    void patternsAreMatchedTogether() {
+        var template = FolderTemplate.compile("{yyyy}/{MM}/{dd}[ {desc}]");
+        var matcher = new DatePathMatcher(List.of("{yyyy}{MM}{dd}", "{dd}.{MM}.{yyyy} {desc}"), template, destination);
+
+        assertEquals(path(destination, "2023", "07", "04"), matcher.outputDirectory(path("in", "IMG_20230704", "a.jpg")));
+        assertEquals(path(destination, "1982", "03", "15 Vacation"), matcher.outputDirectory(path("in", "15.03.1982 Vacation", "a.jpg")));
+
+        // The first match in the path wins, whichever pattern it is
+        assertEquals(path(destination, "2001", "02", "03 Trip"), matcher.outputDirectory(path("in", "03.02.2001 Trip", "20230704", "a.jpg")));
+        assertNull(matcher.outputDirectory(path("in", "2023-07-04", "a.jpg")));
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        var template = FolderTemplate.compile("{yyyy}");
+        assertThrows(IllegalArgumentException.class, () -> new DatePathMatcher(List.of(), template, destination));
+        assertThrows(IllegalArgumentException.class, () -> new DatePathMatcher(List.of("{yyyy}-{MM}"), template, destination));
+        assertThrows(IllegalArgumentException.class, () -> new DatePathMatcher(List.of("{yyyy}{MM}{dd}{desc} x"), template, destination));
+        assertThrows(IllegalArgumentException.class, () -> new DatePathMatcher(List.of("{yyyy}{MM}{dd}{hh}"), template, destination));
+        assertThrows(IllegalArgumentException.class, () -> new DatePathMatcher(List.of("{yyyy}{MM}{dd"), template, destination));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicateCheckpointTest {
+
+    private Path inputDir;
+    private Path checkpointFile;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createTempDirectory("deduplicateCheckpointTest-inputdir");
+        checkpointFile = Files.createTempFile("deduplicateCheckpointTest", ".checkpoint");
+        Files.delete(checkpointFile);
+        file = Files.write(inputDir.resolve("a.jpg"), new byte[1000]).toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(inputDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private DeduplicateCheckpoint open(String outputDir) throws IOException {
+        return new DeduplicateCheckpoint(checkpointFile, outputDir, "MD5");
+    }
+
+    @Test
+    void copiedGroupsSurviveReopening() throws IOException {
+        try (var checkpoint = open("out")) {
+            assertFalse(checkpoint.isResumed());
+            assertFalse(checkpoint.isCopied("abc", file));
+            checkpoint.recordCopied("abc", file, file.length(), file.lastModified());
+        }
+
+        try (var checkpoint = open("out")) {
+            assertTrue(checkpoint.isResumed());
+            assertTrue(checkpoint.isCopied("abc", file));
+            assertFalse(checkpoint.isCopied("def", file));
+            assertEquals(1, checkpoint.getSkippedGroups());
+        }
+    }
+
+    @Test
+    void changedFileIsCopiedAgain() throws IOException {
+        try (var checkpoint = open("out")) {
+            checkpoint.recordCopied("abc", file, file.length(), file.lastModified());
+        }
+        Files.write(file.toPath(), new byte[2000]);
+
+        try (var checkpoint = open("out")) {
+            assertFalse(checkpoint.isCopied("abc", file));
+        }
+    }
+
+    @Test
+    void otherFileInGroupIsCopiedAgain() throws IOException {
+        var other = Files.write(inputDir.resolve("b.jpg"), new byte[1000]).toFile();
+        try (var checkpoint = open("out")) {
+            checkpoint.recordCopied("abc", file, file.length(), file.lastModified());
+            assertFalse(checkpoint.isCopied("abc", other));
+        }
+    }
+
+    @Test
+    void checkpointForAnotherOutputIsDiscarded() throws IOException {
+        try (var checkpoint = open("out")) {
+            checkpoint.recordCopied("abc", file, file.length(), file.lastModified());
+        }
+
+        try (var checkpoint = open("elsewhere")) {
+            assertFalse(checkpoint.isResumed());
+            assertEquals(0, checkpoint.size());
+        }
+    }
+
+    @Test
+    void invalidateStartsOver() throws IOException {
+        try (var checkpoint = open("out")) {
+            checkpoint.recordCopied("abc", file, file.length(), file.lastModified());
+        }
+        DeduplicateCheckpoint.invalidate(checkpointFile);
+
+        try (var checkpoint = open("out")) {
+            assertEquals(0, checkpoint.size());
+        }
+    }
+}
@@ -150,9 +150,140 @@ public class DeduplicateFilesTest {
         Assertions.assertEquals(0, countFilesInDirectory(this.outputDir));
     }
 
+    @Test
+    void resumedRunSkipsCopiedGroups() throws IOException {
+        var checkpointFile = Files.createTempFile("deduplicatetest-checkpoint", ".bin");
+        try {
+            // Copying takes the files out of the map, so the second run gets its own
+            var map = checksumBuilderNoDuplicates.getChecksumMap();
+            var secondMap = new HashMap<String, List<AbstractMap.SimpleEntry<String, File>>>();
+            map.forEach((checksum, group) -> secondMap.put(checksum, new ArrayList<>(group)));
+
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().checkpoint(checkpoint).build()).copyAndDeduplicateFiles(map);
+                Assertions.assertEquals(map.size(), checkpoint.size());
+            }
+
+            // A group that was recorded isn't copied again, even if its copy has gone
+            var copied = this.outputDir.toFile().listFiles()[0];
+            Assertions.assertTrue(copied.delete());
+
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                Assertions.assertTrue(checkpoint.isResumed());
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().checkpoint(checkpoint).build()).copyAndDeduplicateFiles(secondMap);
+                Assertions.assertEquals(map.size(), checkpoint.getSkippedGroups());
+            }
+            Assertions.assertEquals(map.size() - 1, countFilesInDirectory(this.outputDir));
+        } finally {
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    @Test
+    void resumedRunReplacesInterruptedCopies() throws IOException {
+        var checkpointFile = Files.createTempFile("deduplicatetest-checkpoint", ".bin");
+        try {
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                checkpoint.recordCopied("other", files.get(0).toFile(), 0, 0);
+            }
+
+            // One copy finished before the run died but wasn't recorded, another was cut off
+            var map = checksumBuilderNoDuplicates.getChecksumMap();
+            var groups = map.values().iterator();
+            var finishedSource = groups.next().get(0).getValue().toPath();
+            var interruptedSource = groups.next().get(0).getValue().toPath();
+            var finished = this.outputDir.resolve(finishedSource.getFileName());
+            var interrupted = this.outputDir.resolve(interruptedSource.getFileName());
+            var finishedContents = Files.readAllBytes(finishedSource);
+            Files.write(finished, finishedContents);
+            Files.write(interrupted, Arrays.copyOf(Files.readAllBytes(interruptedSource), 10));
+
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().checkpoint(checkpoint).build()).copyAndDeduplicateFiles(map);
+                Assertions.assertEquals(map.size() + 1, checkpoint.size());
+            }
+
+            Assertions.assertEquals(map.size(), countFilesInDirectory(this.outputDir));
+            Assertions.assertArrayEquals(finishedContents, Files.readAllBytes(finished));
+            Assertions.assertArrayEquals(Files.readAllBytes(interruptedSource), Files.readAllBytes(interrupted));
+        } finally {
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    @Test
+    void resumedRunLeavesOtherGroupsCopiesAlone() throws IOException {
+        var checkpointFile = Files.createTempFile("deduplicatetest-checkpoint", ".bin");
+        var inputDirs = List.of(Files.createTempDirectory("deduplicatetest-input1"), Files.createTempDirectory("deduplicatetest-input2"));
+        try {
+            // Both input directories have a file at the same relative path, with different contents
+            var first = Files.write(inputDirs.get(0).resolve("IMG_0001.jpg"), new byte[] {1, 2, 3, 4});
+            var second = Files.write(inputDirs.get(1).resolve("IMG_0001.jpg"), new byte[] {5, 6, 7, 8, 9});
+            var dirs = List.of(inputDirs.get(0).toString(), inputDirs.get(1).toString());
+            var builder = new ChecksumBuilder(dirs, null);
+            builder.calculateChecksums();
+            var firstKey = ChecksumBuilder.toHexString(ChecksumBuilder.defaultChecksumFunction(first.toFile()).get());
+
+            // The first group was copied and recorded before the run died, and an unrelated file was already there
+            var copied = this.outputDir.resolve("IMG_0001.jpg");
+            Files.write(copied, Files.readAllBytes(first));
+            var unrelated = Files.write(this.outputDir.resolve("notes.txt"), new byte[] {42});
+            Files.write(inputDirs.get(0).resolve("notes.txt"), new byte[] {1});
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                checkpoint.recordCopied(firstKey, first.toFile(), Files.size(first), first.toFile().lastModified());
+            }
+
+            try (var checkpoint = new DeduplicateCheckpoint(checkpointFile, this.outputDir.toString(), "MD5")) {
+                var map = builder.getChecksumMap();
+                map.put("notes", new ArrayList<>(List.of(new AbstractMap.SimpleEntry<>(inputDirs.get(0).toString(),
+                        inputDirs.get(0).resolve("notes.txt").toFile()))));
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().checkpoint(checkpoint).build()).copyAndDeduplicateFiles(map);
+            }
+
+            Assertions.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(copied));
+            Assertions.assertArrayEquals(new byte[] {42}, Files.readAllBytes(unrelated));
+            Assertions.assertTrue(Files.exists(second));
+        } finally {
+            Files.deleteIfExists(checkpointFile);
+            for (var dir : inputDirs) {
+                try (var paths = Files.walk(dir)) {
+                    paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+                }
+            }
+        }
+    }
+
     private int countFilesInDirectory(Path outputDir) {
         return (int) Arrays.stream(outputDir.toFile().listFiles()).filter(File::isFile).count();
     }
 
 
-}
\ No newline at end of file
+
+    @Test
+    void importSkipsFilesInTheCatalog() throws IOException {
+        var catalogFile = Files.createTempFile("deduplicatetest-catalog", ".bin");
+        Files.delete(catalogFile);
+        try {
+            var map = checksumBuilderNoDuplicates.getChecksumMap();
+            var secondMap = new HashMap<String, List<AbstractMap.SimpleEntry<String, File>>>();
+            map.forEach((checksum, group) -> secondMap.put(checksum, new ArrayList<>(group)));
+
+            try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().catalog(catalog).build()).copyAndDeduplicateFiles(map);
+                Assertions.assertEquals(map.size(), catalog.size());
+            }
+
+            // Files already in the archive aren't imported again, even when the archive is somewhere else
+            try (var paths = Files.list(this.outputDir)) {
+                paths.map(Path::toFile).forEach(File::delete);
+            }
+            try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+                new DeduplicateFiles(this.outputDir.toString(), false, DeduplicateOptions.builder().catalog(catalog).build()).copyAndDeduplicateFiles(secondMap);
+                Assertions.assertEquals(map.size(), catalog.getFound());
+            }
+            Assertions.assertEquals(0, countFilesInDirectory(this.outputDir));
+        } finally {
+            MediaCatalog.invalidate(catalogFile);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicatingOrganizerTest {
+
+    private Path inputDir1;
+    private Path inputDir2;
+    private Path outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir1 = Files.createTempDirectory("deduplicatingOrganizerTest-inputdir1");
+        inputDir2 = Files.createTempDirectory("deduplicatingOrganizerTest-inputdir2");
+        outputDir = Files.createTempDirectory("deduplicatingOrganizerTest-outputdir");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var root : List.of(inputDir1, inputDir2, outputDir)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private List<String> inputDirs() {
+        return List.of(inputDir1.toString(), inputDir2.toString());
+    }
+
+    @Test
+    void organizesOneCopyOfEachFileByTheDateItWasTaken() throws IOException {
+        var photo = CaptureDateReaderTest.jpegWithExif("2019:08:03 09:30:15");
+        Files.write(inputDir1.resolve("IMG_0001.jpg"), photo);
+        Files.write(inputDir2.resolve("copy of IMG_0001.jpg"), photo);
+        Files.write(inputDir2.resolve("clip.mp4"), CaptureDateReaderTest.movie(1589710830L + 2_082_844_800L, false, false));
+        var undated = Files.write(inputDir2.resolve("notes.txt"), new byte[10]);
+        Files.setLastModifiedTime(undated, FileTime.from(LocalDateTime.of(2024, 6, 1, 12, 0).toInstant(ZoneOffset.UTC)));
+
+        var reader = new FusedMediaReader(new ChecksumReader(ChecksumReader.ReadMode.CHANNEL, 4096), f -> {
+            throw new AssertionError("Read again: " + f);
+        });
+        var builder = new ChecksumBuilder(inputDirs(), reader::checksum);
+        new DeduplicatingOrganizer(builder, inputDirs(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                OrganizeOptions.builder().captureDates(reader::captureDate).build()).organizeFiles();
+
+        // Only one of the two photos is placed, whichever was found first
+        try (var photos = Files.list(outputDir.resolve("2019-08-03"))) {
+            assertEquals(1, photos.count());
+        }
+        assertTrue(Files.exists(outputDir.resolve("2020-05-17").resolve("clip.mp4")));
+        assertTrue(Files.exists(outputDir.resolve("2024-06-01").resolve("notes.txt")));
+
+        // Every date came from the read that hashed the file
+        assertEquals(3, reader.getFusedReads());
+        assertEquals(0, reader.getSeparateReads());
+    }
+
+    @Test
+    void filesThatWerentHashedAreReadSeparately() throws IOException {
+        var tiff = Files.write(inputDir1.resolve("a.dng"), CaptureDateReaderTest.tiff(ByteOrder.BIG_ENDIAN, "2021:12:24 18:00:01", false));
+
+        // A cached checksum means the file isn't read while hashing
+        var reader = new FusedMediaReader(new ChecksumReader(ChecksumReader.ReadMode.CHANNEL, 4096), null);
+        var builder = new ChecksumBuilder(List.of(inputDir1.toString()), f -> Optional.of(new byte[16]));
+        new DeduplicatingOrganizer(builder, List.of(inputDir1.toString()), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD,
+                false, OrganizeOptions.builder().captureDates(reader::captureDate).build()).organizeFiles();
+
+        assertTrue(Files.exists(outputDir.resolve("2021-12-24").resolve(tiff.getFileName())));
+        assertEquals(0, reader.getFusedReads());
+        assertEquals(1, reader.getSeparateReads());
+    }
+
+    @Test
+    void datesThatArentAskedForAreDiscarded() throws IOException {
+        var photo = CaptureDateReaderTest.jpegWithExif("2019:08:03 09:30:15");
+        Files.write(inputDir1.resolve("IMG_0001.jpg"), photo);
+        Files.write(inputDir2.resolve("copy of IMG_0001.jpg"), photo);
+
+        // A file in a dated folder is organized by the folder's date
+        var dated = Files.createDirectory(inputDir1.resolve("2018-01-02 Trip"));
+        Files.write(dated.resolve("IMG_0002.jpg"), CaptureDateReaderTest.jpegWithExif("2017:05:06 07:08:09"));
+
+        var reader = new FusedMediaReader(new ChecksumReader(ChecksumReader.ReadMode.CHANNEL, 4096), null);
+        var builder = new ChecksumBuilder(inputDirs(), reader::checksum);
+        new DeduplicatingOrganizer(builder, inputDirs(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                OrganizeOptions.builder().captureDates(reader::captureDate).build(), reader::discard).organizeFiles();
+
+        assertTrue(Files.exists(outputDir.resolve("2018-01-02 Trip").resolve("IMG_0002.jpg")));
+        assertEquals(0, reader.getHeldDates());
+    }
+
+    @Test
+    void testConstructorWithoutInputDirectories() {
+        assertThrows(IllegalArgumentException.class, () -> new DeduplicatingOrganizer(null, List.of(), outputDir.toString(),
+                DateOrganizer.DateFormat.YYYY_MM_DD, false, OrganizeOptions.defaults()));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DestinationAllocatorTest {
+
+    private Path inputDir;
+    private Path outputDir;
+
+    // Counts the files that were actually hashed
+    private AtomicInteger hashed;
+    private Function<File, Optional<byte[]>> countingChecksum;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createTempDirectory("destinationAllocatorTest-inputdir");
+        outputDir = Files.createTempDirectory("destinationAllocatorTest-outputdir");
+        hashed = new AtomicInteger();
+        countingChecksum = f -> {
+            hashed.incrementAndGet();
+            return ChecksumBuilder.defaultChecksumFunction(f);
+        };
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var root : List.of(inputDir, outputDir)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private File createFile(Path dir, String name, byte[] contents) throws IOException {
+        Files.createDirectories(dir);
+        return Files.write(dir.resolve(name), contents).toFile();
+    }
+
+    private static byte[] randomBytes(int length) {
+        var bytes = new byte[length];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    void numberedName() {
+        assertEquals("photo (1).jpg", DestinationAllocator.numberedName("photo.jpg", 1));
+        assertEquals("archive.tar (2).gz", DestinationAllocator.numberedName("archive.tar.gz", 2));
+        assertEquals("README (3)", DestinationAllocator.numberedName("README", 3));
+        assertEquals(".hidden (1)", DestinationAllocator.numberedName(".hidden", 1));
+    }
+
+    @Test
+    void identicalFileIsSkipped() throws IOException {
+        var contents = randomBytes(4096);
+        var existing = createFile(outputDir, "photo.jpg", contents);
+        var file = createFile(inputDir, "photo.jpg", contents);
+
+        var allocation = new DestinationAllocator(countingChecksum).allocate(outputDir.toString(), file);
+        assertTrue(allocation.identical());
+        assertEquals(existing.getPath(), allocation.path());
+    }
+
+    @Test
+    void conflictsGetSequentialNames() throws IOException {
+        createFile(outputDir, "photo.jpg", randomBytes(4096));
+        createFile(outputDir, "photo (1).jpg", randomBytes(4096));
+        var file = createFile(inputDir, "photo.jpg", randomBytes(4096));
+
+        var allocation = new DestinationAllocator(countingChecksum).allocate(outputDir.toString(), file);
+        assertFalse(allocation.identical());
+        assertEquals(outputDir.resolve("photo (2).jpg").toString(), allocation.path());
+    }
+
+    @Test
+    void differentSizeIsNotHashed() throws IOException {
+        createFile(outputDir, "photo.jpg", randomBytes(4096));
+        var file = createFile(inputDir, "photo.jpg", randomBytes(1024));
+
+        var allocation = new DestinationAllocator(countingChecksum).allocate(outputDir.toString(), file);
+        assertEquals(outputDir.resolve("photo (1).jpg").toString(), allocation.path());
+        assertEquals(0, hashed.get());
+    }
+
+    @Test
+    void targetChecksumsAreCached() throws IOException {
+        createFile(outputDir, "photo.jpg", randomBytes(4096));
+        var allocator = new DestinationAllocator(countingChecksum);
+
+        // Each new file is hashed once, and each target the first time it's compared: the existing file and the
+        // first four new files. Without the cache the fifth file alone would hash five targets.
+        for (int i = 0; i < 5; i++) {
+            var file = createFile(inputDir.resolve("dir" + i), "photo.jpg", randomBytes(4096));
+            allocator.allocate(outputDir.toString(), file);
+        }
+        assertEquals(5 + 5, hashed.get());
+    }
+
+    @Test
+    void fileReservedInThisRunIsCompared() throws IOException {
+        var contents = randomBytes(4096);
+        var first = createFile(inputDir.resolve("a"), "photo.jpg", contents);
+        var second = createFile(inputDir.resolve("b"), "photo.jpg", contents);
+
+        // Nothing has been written yet, the second file is compared with the first one's source
+        var allocator = new DestinationAllocator(countingChecksum);
+        assertFalse(allocator.allocate(outputDir.toString(), first).identical());
+        assertTrue(allocator.allocate(outputDir.toString(), second).identical());
+    }
+
+    @Test
+    void releasedNameIsHandedOutAgain() throws IOException {
+        var contents = randomBytes(4096);
+        var first = createFile(inputDir.resolve("a"), "photo.jpg", contents);
+        var second = createFile(inputDir.resolve("b"), "photo.jpg", contents);
+        var existing = createFile(outputDir, "notes.txt", randomBytes(10));
+
+        // The first file couldn't be copied, so the second one isn't identical to anything that was written
+        var allocator = new DestinationAllocator(countingChecksum);
+        var allocation = allocator.allocate(outputDir.toString(), first);
+        allocator.release(allocation.path());
+        var again = allocator.allocate(outputDir.toString(), second);
+        assertFalse(again.identical());
+        assertEquals(allocation.path(), again.path());
+
+        // A file that was already there keeps its name
+        allocator.release(existing.getPath());
+        var note = createFile(inputDir, "notes.txt", randomBytes(10));
+        assertEquals(outputDir.resolve("notes (1).txt").toString(), allocator.allocate(outputDir.toString(), note).path());
+    }
+
+    @Test
+    void repeatedOrganizeDoesNotGrowOutput() throws IOException {
+        createFile(inputDir.resolve("2024-01-10 Description"), "photo.jpg", randomBytes(4096));
+        createFile(inputDir.resolve("2024-01-10 Other").resolve("2024-01-10 Description"), "photo.jpg", randomBytes(4096));
+
+        for (int run = 0; run < 3; run++) {
+            new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false).organizeFiles();
+        }
+
+        try (var paths = Files.walk(outputDir)) {
+            assertEquals(2, paths.filter(Files::isRegularFile).count());
+        }
+    }
+}
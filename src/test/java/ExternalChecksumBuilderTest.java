@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.AbstractMap.SimpleEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalChecksumBuilderTest {
+
+    private List<String> directories;
+    private List<Path> files;
+    private Path spillRoot;
+
+    private static final int fileToCreate = 50;
+    private static final int directoriesToCreate = 2;
+    private static final int threads = 4;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directories = new ArrayList<>();
+        files = new ArrayList<>();
+        spillRoot = Files.createTempDirectory("externalChecksumBuilderTestSpill");
+
+        // Create test directories with a mix of unique and duplicate files
+        var rnd = new SecureRandom();
+        var duplicateContents = new byte[4 * 1024];
+        rnd.nextBytes(duplicateContents);
+        for (int i = 1; i <= directoriesToCreate; i++) {
+            Path dir = Files.createTempDirectory("externalChecksumBuilderTestDirectory" + i);
+            directories.add(dir.toString());
+
+            for (int j = 1; j <= fileToCreate; j++) {
+                Path file = Files.createTempFile(dir, "file" + j, ".txt");
+                if (j % 5 == 0) {
+                    Files.write(file, duplicateContents);
+                } else {
+                    var fileContents = new byte[i * 1024];
+                    rnd.nextBytes(fileContents);
+                    Files.write(file, fileContents);
+                }
+                files.add(file);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        // Delete test directories and files
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        for (String dir : directories) {
+            Files.deleteIfExists(Paths.get(dir));
+        }
+        Files.deleteIfExists(spillRoot);
+    }
+
+    private Map<String, List<SimpleEntry<String, File>>> serialMap() throws IOException {
+        var serial = new ChecksumBuilder(directories, null);
+        serial.calculateChecksums();
+        return serial.getChecksumMap();
+    }
+
+    @Test
+    void matchesSerialChecksumMap() throws IOException {
+        try (var external = new ExternalChecksumBuilder(directories, null, threads, spillRoot, 7)) {
+            external.calculateChecksums();
+
+            // Same keys and the same files in the same order for every key
+            var groups = new HashMap<String, List<SimpleEntry<String, File>>>();
+            external.forEachChecksumGroup(groups::put);
+            assertEquals(serialMap(), groups);
+        }
+    }
+
+    @Test
+    void mergesInSeveralPasses() throws IOException {
+        // One file per run gives more runs than can be merged at once
+        try (var external = new ExternalChecksumBuilder(directories, null, 1, spillRoot, 1)) {
+            external.calculateChecksums();
+            assertEquals(serialMap(), external.getChecksumMap());
+        }
+    }
+
+    @Test
+    void groupsCanBeReadMoreThanOnce() throws IOException {
+        try (var external = new ExternalChecksumBuilder(directories, null, threads, spillRoot, 10)) {
+            external.calculateChecksums();
+
+            var first = new ArrayList<String>();
+            var second = new ArrayList<String>();
+            external.forEachChecksumGroup((checksum, group) -> first.add(checksum));
+            external.forEachChecksumGroup((checksum, group) -> second.add(checksum));
+            assertEquals(first, second);
+            assertEquals(files.size() - fileToCreate / 5 * directoriesToCreate + 1, first.size());
+        }
+    }
+
+    @Test
+    void closeDeletesRuns() throws IOException {
+        var external = new ExternalChecksumBuilder(directories, null, threads, spillRoot, 10);
+        external.calculateChecksums();
+        try (var contents = Files.list(spillRoot)) {
+            assertEquals(1, contents.count());
+        }
+
+        external.close();
+        try (var contents = Files.list(spillRoot)) {
+            assertEquals(0, contents.count());
+        }
+    }
+
+    @Test
+    void skipsFilesWithoutChecksum() throws IOException {
+        try (var external = new ExternalChecksumBuilder(directories, (File f) -> Optional.empty(), threads, spillRoot, 10)) {
+            external.calculateChecksums();
+            assertTrue(external.getChecksumMap().isEmpty());
+        }
+    }
+
+    @Test
+    void testConstructorWithInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ExternalChecksumBuilder(directories, null, 0, spillRoot, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExternalChecksumBuilder(directories, null, threads, spillRoot, 0));
+    }
+}
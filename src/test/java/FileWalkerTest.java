@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileWalkerTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("fileWalkerTest");
+        for (var sub : List.of("2024-01-10 Party", "2024-02-11 Beach/raw", "2024-03-12 Hike", ".thumbnails")) {
+            var subDir = Files.createDirectories(dir.resolve(sub));
+            for (int i = 0; i < 5; i++) {
+                Files.write(subDir.resolve("img" + i + ".jpg"), new byte[100 + i]);
+                Files.write(subDir.resolve("img" + i + ".xmp"), new byte[10]);
+            }
+        }
+        Files.write(dir.resolve("top.jpg"), new byte[50]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private List<File> walk(FileWalker fileWalker) throws IOException {
+        var files = new ArrayList<File>();
+        fileWalker.walk(dir, files::add);
+        return files;
+    }
+
+    private static List<String> paths(List<File> files) {
+        return files.stream().map(File::getPath).toList();
+    }
+
+    @Test
+    void findsFilesInTheSameOrderAsFilesWalk() throws IOException {
+        List<String> expected;
+        try (var paths = Files.walk(dir)) {
+            expected = paths.filter(path -> !Files.isDirectory(path)).map(Path::toString).toList();
+        }
+
+        assertEquals(expected, paths(walk(new FileWalker())));
+    }
+
+    @Test
+    void parallelWalkKeepsTheOrder() throws IOException {
+        assertEquals(paths(walk(new FileWalker())), paths(walk(new FileWalker(List.of(), List.of(), 4))));
+    }
+
+    @Test
+    void parallelWalkKeepsTheOrderOfDeepTrees() throws IOException {
+        var deep = dir.resolve("deep");
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                var subDir = Files.createDirectories(deep.resolve("a" + i).resolve("b" + j).resolve("c"));
+                Files.write(subDir.resolve("img.jpg"), new byte[i * 4 + j]);
+                Files.write(subDir.getParent().resolve("img.jpg"), new byte[1]);
+            }
+        }
+
+        var sequential = paths(walk(new FileWalker()));
+        assertEquals(sequential, paths(walk(new FileWalker(List.of(), List.of(), 3))));
+        assertEquals(sequential, paths(walk(new FileWalker(List.of(), List.of(), 16))));
+        assertFalse(Metrics.getQueueDepths().containsKey("walk"));
+    }
+
+    @Test
+    void parallelWalkKeepsTheOrderWhenListingsAreHeldBack() throws IOException {
+        // Far more directories than the walk lists ahead of the handler with two threads
+        var wide = dir.resolve("wide");
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 10; j++) {
+                var subDir = Files.createDirectories(wide.resolve("d" + i).resolve("e" + j));
+                Files.write(subDir.resolve("img.jpg"), new byte[1]);
+            }
+        }
+
+        assertEquals(paths(walk(new FileWalker())), paths(walk(new FileWalker(List.of(), List.of(), 2))));
+    }
+
+    @Test
+    void linksToDirectoriesAreNotFollowed() throws IOException {
+        Files.createSymbolicLink(dir.resolve("party link"), dir.resolve("2024-01-10 Party"));
+        Files.createSymbolicLink(dir.resolve("2024-02-11 Beach").resolve("loop"), dir);
+        Files.createSymbolicLink(dir.resolve("top link.jpg"), dir.resolve("top.jpg"));
+        List<String> expected;
+        try (var paths = Files.walk(dir)) {
+            expected = paths.filter(path -> !Files.isDirectory(path)).map(Path::toString).toList();
+        }
+
+        assertTrue(expected.contains(dir.resolve("top link.jpg").toString()));
+        assertEquals(expected, paths(walk(new FileWalker())));
+        assertEquals(expected, paths(walk(new FileWalker(List.of(), List.of(), 4))));
+    }
+
+    @Test
+    void filesCarryTheirAttributes() throws IOException {
+        var file = walk(new FileWalker()).stream().filter(f -> f.getName().equals("top.jpg")).findFirst().orElseThrow();
+        assertEquals(50, file.length());
+        assertEquals(new File(file.getPath()).lastModified(), file.lastModified());
+        assertFalse(file.isDirectory());
+        assertTrue(file.isFile());
+
+        // The attributes come from the walk, but exists() doesn't, so a moved file is noticed
+        Files.delete(file.toPath());
+        assertEquals(50, file.length());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void includesMatchFileNames() throws IOException {
+        var files = walk(new FileWalker(List.of("*.jpg"), List.of(), 1));
+        assertEquals(21, files.size());
+        assertTrue(files.stream().allMatch(f -> f.getName().endsWith(".jpg")));
+    }
+
+    @Test
+    void includesWithASlashMatchRelativePaths() throws IOException {
+        var files = walk(new FileWalker(List.of("2024-02-11 Beach/**"), List.of(), 1));
+        assertEquals(10, files.size());
+        assertTrue(files.stream().allMatch(f -> f.getPath().contains("raw")));
+    }
+
+    @Test
+    void excludesSkipFilesAndDirectories() throws IOException {
+        var files = walk(new FileWalker(List.of(), List.of("*.xmp", ".thumbnails"), 2));
+        assertEquals(16, files.size());
+        assertTrue(files.stream().noneMatch(f -> f.getName().endsWith(".xmp") || f.getPath().contains(".thumbnails")));
+    }
+
+    @Test
+    void walkIsTimed() throws IOException {
+        Metrics.reset();
+        walk(new FileWalker());
+        assertTrue(Metrics.getLatency(Metrics.Stage.WALK).count() >= 41);
+    }
+
+    @Test
+    void missingDirectoryFails() {
+        assertThrows(IOException.class, () -> new FileWalker().walk(dir.resolve("missing"), f -> {}));
+        assertThrows(IOException.class, () -> new FileWalker(List.of(), List.of(), 3).walk(dir.resolve("missing"), f -> {}));
+    }
+
+    @Test
+    void handlerFailureStopsTheWalk() {
+        var handled = new ArrayList<File>();
+        assertThrows(IOException.class, () -> new FileWalker(List.of(), List.of(), 2).walk(dir, f -> {
+            handled.add(f);
+            throw new IOException("stop");
+        }));
+        assertEquals(1, handled.size());
+    }
+
+    @Test
+    void rejectsInvalidThreadCount() {
+        assertThrows(IllegalArgumentException.class, () -> new FileWalker(List.of(), List.of(), 0));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FolderTemplateTest {
+
+    private static final String destination = File.separator + "out";
+
+    private static String path(String... parts) {
+        return destination + File.separator + String.join(File.separator, parts);
+    }
+
+    @Test
+    void rendersFieldsAndSubfolders() {
+        var template = FolderTemplate.compile("{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]");
+        assertEquals(path("2024", "01", "2024-01-10 Birthday"), template.render(destination, 2024, 1, 10, "Birthday"));
+        assertEquals(path("1999", "12", "1999-12-31"), template.render(destination, 1999, 12, 31, null));
+    }
+
+    @Test
+    void keepsTheLayoutsOfTheDateFormats() {
+        var yearFirst = FolderTemplate.compile(DateOrganizer.DateFormat.YYYY_MM_DD.getTemplate());
+        assertEquals(path("2024-01-10 Birthday"), yearFirst.render(destination, 2024, 1, 10, "Birthday"));
+        assertEquals(path("2024-01-10 "), yearFirst.render(destination, 2024, 1, 10, ""));
+        assertEquals(path("2024-01-10"), yearFirst.render(destination, 2024, 1, 10, null));
+
+        var dayFirst = FolderTemplate.compile(DateOrganizer.DateFormat.DD_MM_YYYY.getTemplate());
+        assertEquals(path("15-03-1982 Vacation Photos"), dayFirst.render(destination, 1982, 3, 15, "Vacation Photos"));
+    }
+
+    @Test
+    void padsNumbers() {
+        var template = FolderTemplate.compile("{yyyy} {yy} {MM} {dd}");
+        assertEquals(path("0987 87 02 03"), template.render(destination, 987, 2, 3, null));
+        assertEquals(path("2005 05 11 30"), template.render(destination, 2005, 11, 30, null));
+    }
+
+    @Test
+    void descriptionOutsideOptionalPartIsLeftEmpty() {
+        var template = FolderTemplate.compile("{desc}/{yyyy}");
+        assertEquals(path("Party", "2024"), template.render(destination, 2024, 1, 10, "Party"));
+        assertEquals(path("2024"), template.render(destination, 2024, 1, 10, null));
+    }
+
+    @Test
+    void noDescriptionLeavesNoSpaceBehind() {
+        var template = FolderTemplate.compile("{yyyy}/{MM}/{yyyy-MM-dd} {desc}");
+        assertEquals(path("2024", "01", "2024-01-10 Party"), template.render(destination, 2024, 1, 10, "Party"));
+        assertEquals(path("2024", "01", "2024-01-10"), template.render(destination, 2024, 1, 10, null));
+    }
+
+    @Test
+    void rejectsInvalidTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile(""));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile(null));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("{yyyy"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("yyyy}"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("{yyyy}[ {desc}"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("{yyyy}]"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("[[{desc}]]"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("{yyy}"));
+        assertThrows(IllegalArgumentException.class, () -> FolderTemplate.compile("{camera}"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashBenchmarkTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("hashBenchmarkTestDirectory");
+        Files.write(dir.resolve("small"), new byte[100]);
+        Files.write(Files.createDirectory(dir.resolve("sub")).resolve("large"), new byte[200 * 1024]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("sub").resolve("large"));
+        Files.deleteIfExists(dir.resolve("sub"));
+        Files.deleteIfExists(dir.resolve("small"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    void measuresEveryAlgorithmOverEveryFile() throws IOException {
+        var results = new HashBenchmark(List.of(dir.toString()), ChecksumReader.ReadMode.CHANNEL, 4096).run();
+
+        assertEquals(HashAlgorithm.values().length, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            var result = results.get(i);
+            assertEquals(HashAlgorithm.values()[i], result.algorithm());
+            assertEquals(2, result.files());
+            assertEquals(100 + 200 * 1024, result.bytes());
+            assertTrue(result.nanos() > 0);
+        }
+    }
+
+    @Test
+    void emptyDirectoryMeasuresNothing() throws IOException {
+        var empty = Files.createDirectory(dir.resolve("empty"));
+        try {
+            for (var result : new HashBenchmark(List.of(empty.toString()), ChecksumReader.ReadMode.CHANNEL, 4096).run()) {
+                assertEquals(0, result.files());
+                assertEquals(0.0, result.megabytesPerSecond());
+            }
+        } finally {
+            Files.delete(empty);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MediaCatalogTest {
+
+    private Path catalogFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        catalogFile = Files.createTempFile("mediaCatalogTest", ".catalog");
+        Files.delete(catalogFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        MediaCatalog.invalidate(catalogFile);
+    }
+
+    private static List<byte[]> randomDigests(int count, long seed) {
+        var random = new Random(seed);
+        var digests = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            var digest = new byte[16];
+            random.nextBytes(digest);
+            digests.add(digest);
+        }
+        return digests;
+    }
+
+    @Test
+    void addedChecksumsAreFound() throws IOException {
+        var digests = randomDigests(100, 1);
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            for (var digest : digests) {
+                assertFalse(catalog.contains(digest));
+                assertTrue(catalog.add(digest));
+            }
+            assertFalse(catalog.add(digests.get(0)));
+            assertTrue(catalog.contains(digests.get(0).clone()));
+            assertEquals(100, catalog.size());
+        }
+    }
+
+    @Test
+    void checksumsAreMergedIntoTheSortedFile() throws IOException {
+        var first = randomDigests(5000, 1);
+        var second = randomDigests(5000, 2);
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            first.forEach(catalog::add);
+        }
+        assertFalse(Files.exists(catalogFile.resolveSibling(catalogFile.getFileName() + ".added")));
+
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            assertEquals(5000, catalog.size());
+            second.forEach(catalog::add);
+        }
+
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            assertEquals(10000, catalog.size());
+            for (var digest : first) {
+                assertTrue(catalog.contains(digest));
+            }
+            for (var digest : second) {
+                assertTrue(catalog.contains(digest));
+            }
+            for (var digest : randomDigests(1000, 3)) {
+                assertFalse(catalog.contains(digest));
+            }
+
+            // The Bloom filter answers most of the misses without a search
+            assertTrue(catalog.getBloomRejects() > 900);
+            assertEquals(10000, catalog.getFound());
+        }
+    }
+
+    @Test
+    void checksumsAddedBeforeACrashAreKept() throws IOException {
+        var digests = randomDigests(2000, 1);
+        var catalog = new MediaCatalog(catalogFile, "MD5");
+        digests.forEach(catalog::add);
+
+        // The catalog isn't closed, but entries are written to the log as they're added
+        try (var reopened = new MediaCatalog(catalogFile, "MD5")) {
+            assertTrue(reopened.size() >= 1000);
+            assertTrue(reopened.contains(digests.get(0)));
+        }
+    }
+
+    @Test
+    void fewAddedChecksumsAreKeptInTheLog() throws IOException {
+        var log = catalogFile.resolveSibling(catalogFile.getFileName() + ".added");
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            randomDigests(1000, 1).forEach(catalog::add);
+        }
+        var merged = Files.getLastModifiedTime(catalogFile);
+
+        // Fewer than an eighth of the catalog don't rewrite it
+        var few = randomDigests(100, 2);
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            few.forEach(catalog::add);
+        }
+        assertTrue(Files.exists(log));
+        assertEquals(merged, Files.getLastModifiedTime(catalogFile));
+
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            assertEquals(1100, catalog.size());
+            assertTrue(catalog.contains(few.get(0)));
+            randomDigests(100, 3).forEach(catalog::add);
+        }
+        assertFalse(Files.exists(log));
+
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            assertEquals(1200, catalog.size());
+            assertTrue(catalog.contains(few.get(0)));
+        }
+    }
+
+    @Test
+    void pendingCatalogIsInstalledOnTheNextRun() throws IOException {
+        var first = randomDigests(1000, 1);
+        var second = randomDigests(1000, 2);
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            first.forEach(catalog::add);
+        }
+        var old = Files.readAllBytes(catalogFile);
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            second.forEach(catalog::add);
+        }
+
+        // As if the merged catalog couldn't replace the old one while it was mapped
+        Files.move(catalogFile, catalogFile.resolveSibling(catalogFile.getFileName() + ".pending"));
+        Files.write(catalogFile, old);
+
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            assertEquals(2000, catalog.size());
+            assertTrue(catalog.contains(second.get(0)));
+        }
+        assertFalse(Files.exists(catalogFile.resolveSibling(catalogFile.getFileName() + ".pending")));
+    }
+
+    @Test
+    void catalogForADifferentAlgorithmIsDiscarded() throws IOException {
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            randomDigests(10, 1).forEach(catalog::add);
+        }
+        try (var catalog = new MediaCatalog(catalogFile, "SHA-256")) {
+            assertEquals(0, catalog.size());
+        }
+    }
+
+    @Test
+    void rejectsChecksumsOfADifferentLength() throws IOException {
+        try (var catalog = new MediaCatalog(catalogFile, "MD5")) {
+            catalog.add(new byte[16]);
+            assertThrows(IllegalArgumentException.class, () -> catalog.add(new byte[32]));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsReporterTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("metricsReporterTest", ".jsonl");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void writesALineOfJsonOnClose() throws IOException {
+        new MetricsReporter(file, 60_000).close();
+
+        var lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"time\":"), lines.get(0));
+    }
+
+    @Test
+    void appendsAtEachInterval() throws IOException, InterruptedException {
+        Files.writeString(file, "{}\n");
+        var reporter = new MetricsReporter(file, 10);
+        try {
+            Thread.sleep(100);
+        } finally {
+            reporter.close();
+        }
+
+        var lines = Files.readAllLines(file);
+        assertEquals("{}", lines.get(0));
+        assertTrue(lines.size() > 2, "Expected several lines, got " + lines.size());
+    }
+
+    @Test
+    void rejectsInvalidInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new MetricsReporter(file, 0));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Metrics.reset();
+        dir = Files.createTempDirectory("metricsTest");
+        Files.createDirectories(dir.resolve("sub"));
+        Files.write(dir.resolve("a.jpg"), new byte[1000]);
+        Files.write(dir.resolve("sub").resolve("b.jpg"), new byte[3000]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Metrics.reset();
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void wrapTimesHashesAndCountsBytesRead() {
+        var checksumFunction = Metrics.wrap(ChecksumBuilder::defaultChecksumFunction);
+        checksumFunction.apply(dir.resolve("a.jpg").toFile());
+        checksumFunction.apply(dir.resolve("sub").resolve("b.jpg").toFile());
+
+        assertEquals(2, Metrics.getLatency(Metrics.Stage.HASH).count());
+        assertEquals(4000, Metrics.getBytesRead());
+    }
+
+    @Test
+    void copyCountsBytesWritten() throws IOException {
+        TransferMode.COPY.transfer(dir.resolve("a.jpg"), dir.resolve("c.jpg"));
+
+        assertEquals(1, Metrics.getLatency(Metrics.Stage.COPY).count());
+        assertEquals(1000, Metrics.getBytesWritten());
+    }
+
+    @Test
+    void percentilesFallInPowerOfTwoBuckets() {
+        var histogram = new Metrics.Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.count());
+        assertEquals(1023, histogram.percentile(0.5));
+        assertEquals(1023, histogram.percentile(0.99));
+        assertEquals(1_000_000, histogram.percentile(1.0));
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(0, new Metrics.Histogram().percentile(0.5));
+    }
+
+    @Test
+    void jsonHasCountersQueuesAndStages() {
+        Metrics.addDuplicateGroup();
+        Metrics.addDuplicateFile();
+        Metrics.addDuplicateFile();
+        Metrics.registerQueue("copy", () -> 7);
+
+        var json = Metrics.toJson();
+        assertTrue(json.startsWith("{\"time\":\""), json);
+        assertTrue(json.contains("\"duplicateGroups\":1,\"duplicateFiles\":2"), json);
+        assertTrue(json.contains("\"queues\":{\"copy\":7}"), json);
+        assertTrue(json.contains("\"walk\":{\"count\":0,"), json);
+        assertTrue(json.endsWith("}}"), json);
+        assertFalse(json.contains("\n"));
+
+        Metrics.unregisterQueue("copy");
+        assertTrue(Metrics.toJson().contains("\"queues\":{}"));
+    }
+
+    @Test
+    void deduplicationCountsDuplicateGroups() {
+        var checksumBuilder = new ChecksumBuilder(List.of(dir.toString()), f -> Optional.of(new byte[]{1}));
+        assertDoesNotThrow(checksumBuilder::calculateChecksums);
+        new DeduplicateFiles(dir.resolve("out").toString(), true).copyAndDeduplicateFiles(checksumBuilder.getChecksumMap());
+
+        assertEquals(1, Metrics.getDuplicateGroups());
+        assertEquals(1, Metrics.getDuplicateFiles());
+    }
+
+    @Test
+    void registersMBeans() throws Exception {
+        Metrics.registerMBeans();
+        Metrics.registerMBeans();
+        Metrics.addBytesRead(42);
+
+        var server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(42L, server.getAttribute(new ObjectName("MediaOrganizer:type=Run"), "BytesRead"));
+        assertEquals(0L, server.getAttribute(new ObjectName("MediaOrganizer:type=Stage,name=hash"), "Count"));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Murmur3DigestTest {
+
+    private static String hex(String input) {
+        return ChecksumBuilder.toHexString(new Murmur3Digest().digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void knownValues() {
+        assertEquals("00000000000000000000000000000000", hex(""));
+        assertEquals("029bbd41b3a7d8cb191dae486a901e5b", hex("hello"));
+        assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", hex("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    void incrementalUpdatesMatchSingleUpdate() {
+        var rnd = new Random(42);
+        var data = new byte[10_000];
+        rnd.nextBytes(data);
+        var expected = new Murmur3Digest().digest(data);
+
+        // Uneven chunk sizes so blocks are split across updates
+        var chunked = new Murmur3Digest();
+        for (int offset = 0; offset < data.length; ) {
+            var len = Math.min(1 + rnd.nextInt(40), data.length - offset);
+            chunked.update(data, offset, len);
+            offset += len;
+        }
+        assertArrayEquals(expected, chunked.digest());
+
+        var bytewise = new Murmur3Digest();
+        for (byte b : data) {
+            bytewise.update(b);
+        }
+        assertArrayEquals(expected, bytewise.digest());
+    }
+
+    @Test
+    void directBufferUpdatesMatchArrayUpdates() {
+        var rnd = new Random(7);
+        var data = new byte[4099];
+        rnd.nextBytes(data);
+        var expected = new Murmur3Digest().digest(data);
+
+        var digest = new Murmur3Digest();
+        digest.update(data, 0, 5);
+        var buffer = ByteBuffer.allocateDirect(data.length - 5);
+        buffer.put(data, 5, data.length - 5).flip();
+        digest.update(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(expected, digest.digest());
+    }
+
+    @Test
+    void digestResets() {
+        var digest = new Murmur3Digest();
+        var first = digest.digest("hello".getBytes(StandardCharsets.UTF_8));
+        var second = digest.digest("hello".getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void algorithmsHaveExpectedLengths() throws NoSuchAlgorithmException {
+        assertEquals(16, HashAlgorithm.MD5.newDigest().getDigestLength());
+        assertEquals(32, HashAlgorithm.SHA_256.newDigest().getDigestLength());
+        assertEquals(16, HashAlgorithm.MURMUR3_128.newDigest().getDigestLength());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearDuplicateChecksumBuilderTest {
+
+    private Path inputDir;
+    private Path outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createTempDirectory("nearDuplicateTest-inputdir");
+        outputDir = Files.createTempDirectory("nearDuplicateTest-outputdir");
+
+        var image = PerceptualHasherTest.createImage(1, 1200, 900);
+        ImageIO.write(PerceptualHasherTest.scale(image, 600, 450), "jpg", inputDir.resolve("a-small.jpg").toFile());
+        ImageIO.write(image, "png", inputDir.resolve("b-large.png").toFile());
+        ImageIO.write(PerceptualHasherTest.createImage(2, 1200, 900), "png", inputDir.resolve("c-other.png").toFile());
+        Files.writeString(inputDir.resolve("d-clip.mp4"), "same bytes");
+        Files.writeString(inputDir.resolve("e-clip.mp4"), "same bytes");
+        Files.writeString(inputDir.resolve("f-broken.jpg"), "not an image");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var dir : List.of(inputDir, outputDir)) {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static List<String> names(List<AbstractMap.SimpleEntry<String, File>> group) {
+        var names = group.stream().map(entry -> entry.getValue().getName()).toList();
+
+        // Identical files are in walk order, which depends on the file system
+        return names.get(0).endsWith(".mp4") ? names.stream().sorted().toList() : names;
+    }
+
+    @Test
+    void similarImagesAreGroupedLargestFirst() throws IOException {
+        for (var threads : List.of(1, 3)) {
+            var builder = new NearDuplicateChecksumBuilder(List.of(inputDir.toString()), null, threads, 5, null);
+            builder.calculateChecksums();
+            var groups = builder.getChecksumMap().values().stream().map(NearDuplicateChecksumBuilderTest::names).toList();
+
+            assertEquals(4, groups.size());
+            assertTrue(groups.contains(List.of("b-large.png", "a-small.jpg")));
+            assertTrue(groups.contains(List.of("c-other.png")));
+            assertTrue(groups.contains(List.of("d-clip.mp4", "e-clip.mp4")));
+            assertTrue(groups.contains(List.of("f-broken.jpg")));
+        }
+    }
+
+    @Test
+    void deduplicateKeepsTheHighestResolution() throws IOException {
+        var builder = new NearDuplicateChecksumBuilder(List.of(inputDir.toString()), null, 1, 5, null);
+        builder.calculateChecksums();
+        new DeduplicateFiles(outputDir.toString(), false).copyAndDeduplicateFiles(builder);
+
+        try (var paths = Files.list(outputDir)) {
+            var names = paths.map(path -> path.getFileName().toString()).sorted().toList();
+            assertEquals(4, names.size());
+            assertEquals(List.of("b-large.png", "c-other.png"), names.subList(0, 2));
+            assertEquals("f-broken.jpg", names.get(3));
+        }
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateChecksumBuilder(List.of(), null, 0, 5, null));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateChecksumBuilder(List.of(), null, 1, 64, null));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearDuplicateIndexTest {
+
+    private static long flipBits(long hash, int bits, Random random) {
+        var flipped = new HashSet<Integer>();
+        while (flipped.size() < bits) {
+            flipped.add(random.nextInt(64));
+        }
+        for (var bit : flipped) {
+            hash ^= 1L << bit;
+        }
+        return hash;
+    }
+
+    @Test
+    void hashesWithinTheDistanceAreGrouped() {
+        var random = new Random(1);
+        var index = new NearDuplicateIndex(5);
+
+        var originals = new ArrayList<Integer>();
+        var copies = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            var hash = random.nextLong();
+            originals.add(index.add(hash));
+            copies.add(index.add(flipBits(hash, 1 + i % 5, random)));
+        }
+
+        var groups = new HashSet<Integer>();
+        for (int i = 0; i < originals.size(); i++) {
+            assertEquals(index.group(originals.get(i)), index.group(copies.get(i)));
+            groups.add(index.group(originals.get(i)));
+        }
+
+        // Random hashes are around 32 bits apart, so none of the originals are grouped with each other
+        assertEquals(1000, groups.size());
+        assertEquals(2000, index.size());
+    }
+
+    @Test
+    void hashesFurtherApartAreNotGrouped() {
+        var random = new Random(2);
+        var index = new NearDuplicateIndex(3);
+        for (int i = 0; i < 100; i++) {
+            var hash = random.nextLong();
+            var original = index.add(hash);
+            var copy = index.add(flipBits(hash, 8, random));
+            assertNotEquals(index.group(original), index.group(copy));
+        }
+    }
+
+    @Test
+    void identicalHashesAreGrouped() {
+        var index = new NearDuplicateIndex(0);
+        var first = index.add(0);
+        index.add(42);
+        var second = index.add(0);
+        assertEquals(index.group(first), index.group(second));
+        assertEquals(first, index.group(second));
+    }
+
+    @Test
+    void rejectsInvalidDistance() {
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(-1));
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(32));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrganizeJournalTest {
+
+    private Path inputDir;
+    private Path outputDir;
+    private Path journalFile;
+    private List<Path> files;
+
+    private static final int fileToCreate = 20;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = Files.createTempDirectory("organizeJournalTest-inputdir");
+        outputDir = Files.createTempDirectory("organizeJournalTest-outputdir");
+        journalFile = Files.createTempFile("organizeJournalTest", ".journal");
+        Files.delete(journalFile);
+        files = new ArrayList<>();
+
+        var eventDir = Files.createDirectories(inputDir.resolve("2024-01-10 Description"));
+        var rnd = new SecureRandom();
+        for (int j = 1; j <= fileToCreate; j++) {
+            var fileContents = new byte[4096];
+            rnd.nextBytes(fileContents);
+            files.add(Files.write(eventDir.resolve("file" + j + ".jpg"), fileContents));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (var root : List.of(inputDir, outputDir)) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        Files.deleteIfExists(journalFile);
+    }
+
+    private long runWithJournal() throws IOException {
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD)) {
+            var organizer = new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                    OrganizeOptions.builder().journal(journal).build());
+            organizer.organizeFiles();
+            return journal.getSkippedFiles();
+        }
+    }
+
+    private long countOutputFiles() throws IOException {
+        try (var paths = Files.walk(outputDir)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void secondRunSkipsOrganizedFiles() throws IOException {
+        assertEquals(0, runWithJournal());
+        assertEquals(fileToCreate, countOutputFiles());
+
+        // Without the journal every file would be copied again under a new name
+        assertEquals(fileToCreate, runWithJournal());
+        assertEquals(fileToCreate, countOutputFiles());
+    }
+
+    @Test
+    void newAndChangedFilesAreOrganized() throws IOException {
+        runWithJournal();
+
+        var changed = files.get(0).toFile();
+        Files.write(changed.toPath(), new byte[]{1, 2, 3});
+        changed.setLastModified(changed.lastModified() + 2000);
+        Files.write(inputDir.resolve("2024-01-10 Description").resolve("new.jpg"), new byte[]{4, 5, 6});
+
+        assertEquals(fileToCreate - 1, runWithJournal());
+        assertEquals(fileToCreate + 2, countOutputFiles());
+    }
+
+    @Test
+    void recordsDestination() throws IOException {
+        runWithJournal();
+
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD)) {
+            assertEquals(fileToCreate, journal.size());
+            var expected = outputDir + File.separator + "2024-01-10 Description" + File.separator + files.get(0).getFileName();
+            assertEquals(Optional.of(expected), journal.getDestination(files.get(0).toFile()));
+        }
+    }
+
+    @Test
+    void journalForAnotherDestinationIsDiscarded() throws IOException {
+        runWithJournal();
+
+        try (var journal = new OrganizeJournal(journalFile, outputDir.resolve("other").toString(), DateOrganizer.DateFormat.YYYY_MM_DD)) {
+            assertEquals(0, journal.size());
+            assertFalse(journal.isOrganized(files.get(0).toFile()));
+        }
+    }
+
+    @Test
+    void journalForAnotherLayoutIsDiscarded() throws IOException {
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, null, "{yyyy}/{yyyy-MM-dd}[ {desc}]")) {
+            new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                    OrganizeOptions.builder().journal(journal).layout("{yyyy}/{yyyy-MM-dd}[ {desc}]").build()).organizeFiles();
+            assertEquals(fileToCreate, journal.size());
+        }
+
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, null, "{yyyy}/{MM}/{yyyy-MM-dd}[ {desc}]")) {
+            assertEquals(0, journal.size());
+        }
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, List.of("{yyyy}{MM}{dd}"), null)) {
+            assertEquals(0, journal.size());
+        }
+    }
+
+    @Test
+    void previewModeRecordsNothing() throws IOException {
+        try (var journal = new OrganizeJournal(journalFile, outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD)) {
+            new DateOrganizer(inputDir.toString(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, true,
+                    OrganizeOptions.builder().journal(journal).build()).organizeFiles();
+            assertEquals(0, journal.size());
+        }
+    }
+}
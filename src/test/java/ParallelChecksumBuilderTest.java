@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelChecksumBuilderTest {
+
+    private List<String> directories;
+    private List<Path> files;
+
+    private static final int fileToCreate = 50;
+    private static final int directoriesToCreate = 2;
+    private static final int threads = 4;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directories = new ArrayList<>();
+        files = new ArrayList<>();
+
+        // Create test directories with a mix of unique and duplicate files
+        var rnd = new SecureRandom();
+        var duplicateContents = new byte[64 * 1024];
+        rnd.nextBytes(duplicateContents);
+        for (int i = 1; i <= directoriesToCreate; i++) {
+            Path dir = Files.createTempDirectory("parallelChecksumBuilderTestDirectory" + i);
+            directories.add(dir.toString());
+
+            for (int j = 1; j <= fileToCreate; j++) {
+                Path file = Files.createTempFile(dir, "file" + j, ".txt");
+                if (j % 5 == 0) {
+                    Files.write(file, duplicateContents);
+                } else {
+                    var fileContents = new byte[i * 1024];
+                    rnd.nextBytes(fileContents);
+                    Files.write(file, fileContents);
+                }
+                files.add(file);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        // Delete test directories and files
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        for (String dir : directories) {
+            Files.deleteIfExists(Paths.get(dir));
+        }
+    }
+
+    @Test
+    void matchesSerialChecksumMap() throws IOException {
+        var serial = new ChecksumBuilder(directories, null);
+        serial.calculateChecksums();
+
+        var parallel = new ParallelChecksumBuilder(directories, null, threads);
+        parallel.calculateChecksums();
+
+        // Same keys and the same files in the same order for every key
+        assertEquals(serial.getChecksumMap(), parallel.getChecksumMap());
+    }
+
+    @Test
+    void groupsDuplicates() throws IOException {
+        var parallel = new ParallelChecksumBuilder(directories, null, threads);
+        parallel.calculateChecksums();
+
+        var duplicates = fileToCreate / 5 * directoriesToCreate;
+        var map = parallel.getChecksumMap();
+        assertEquals(files.size() - duplicates + 1, map.size());
+        assertTrue(map.values().stream().anyMatch(list -> list.size() == duplicates));
+    }
+
+    @Test
+    void skipsFilesWithoutChecksum() throws IOException {
+        var parallel = new ParallelChecksumBuilder(directories, (File f) -> Optional.empty(), threads);
+        parallel.calculateChecksums();
+        assertTrue(parallel.getChecksumMap().isEmpty());
+    }
+
+    @Test
+    void testConstructorWithNullDirectories() {
+        var parallel = new ParallelChecksumBuilder(null, null, threads);
+        assertNotNull(parallel.getChecksumMap());
+        assertTrue(parallel.getChecksumMap().isEmpty());
+    }
+
+    @Test
+    void testConstructorWithInvalidThreads() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelChecksumBuilder(directories, null, 0));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelDateOrganizerTest {
+
+    private List<Path> inputDirs;
+    private Path outputDir;
+
+    private static final int directoriesToCreate = 4;
+    private static final int fileToCreate = 25;
+    private static final int threads = 8;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDirs = new ArrayList<>();
+        outputDir = Files.createTempDirectory("parallelOrganizerTest-outputdir");
+
+        // Every input directory has the same event folder and file names, with different contents
+        var rnd = new SecureRandom();
+        for (int i = 1; i <= directoriesToCreate; i++) {
+            var inputDir = Files.createTempDirectory("parallelOrganizerTest-inputdir" + i);
+            inputDirs.add(inputDir);
+
+            var eventDir = Files.createDirectories(inputDir.resolve("2024-01-10 Description"));
+            for (int j = 1; j <= fileToCreate; j++) {
+                var fileContents = new byte[1024];
+                rnd.nextBytes(fileContents);
+                Files.write(eventDir.resolve("TestFile" + j + ".jpg"), fileContents);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        var roots = new ArrayList<>(inputDirs);
+        roots.add(outputDir);
+        for (var root : roots) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private List<String> inputDirNames() {
+        var names = new ArrayList<String>();
+        inputDirs.forEach(dir -> names.add(dir.toString()));
+        return names;
+    }
+
+    @Test
+    void keepsEveryFileWhenNamesCollide() throws IOException {
+        var organizer = new ParallelDateOrganizer(inputDirNames(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false, threads, null);
+        organizer.organizeFiles();
+
+        // No file overwrote or was dropped in favour of another with the same name
+        var expected = new HashSet<String>();
+        for (var inputDir : inputDirs) {
+            try (var paths = Files.walk(inputDir)) {
+                paths.filter(Files::isRegularFile).forEach(path -> expected.add(Arrays.toString(readAllBytes(path))));
+            }
+        }
+
+        var organized = new HashSet<String>();
+        var outputEventDir = outputDir.resolve("2024-01-10 Description");
+        try (var paths = Files.list(outputEventDir)) {
+            paths.forEach(path -> organized.add(Arrays.toString(readAllBytes(path))));
+        }
+        assertEquals(directoriesToCreate * fileToCreate, organized.size());
+        assertEquals(expected, organized);
+
+        // Each name was used once, and the other copies were renamed
+        for (int j = 1; j <= fileToCreate; j++) {
+            assertTrue(Files.exists(outputEventDir.resolve("TestFile" + j + ".jpg")));
+        }
+    }
+
+    @Test
+    void namesThatCollideAreComparedWithTheGivenChecksum() throws IOException {
+        var checksums = new AtomicInteger();
+        var organizer = new ParallelDateOrganizer(inputDirNames(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false,
+                threads, null, OrganizeOptions.builder().checksumFunction(f -> {
+                    checksums.incrementAndGet();
+                    return ChecksumBuilder.defaultChecksumFunction(f);
+                }).build());
+        organizer.organizeFiles();
+
+        // Every copy after the first of each name was compared with the files already using it
+        assertTrue(checksums.get() > 0);
+        try (var paths = Files.list(outputDir.resolve("2024-01-10 Description"))) {
+            assertEquals(directoriesToCreate * fileToCreate, paths.count());
+        }
+    }
+
+    @Test
+    void previewModeCopiesNothing() throws IOException {
+        var organizer = new ParallelDateOrganizer(inputDirNames(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, true, threads, null);
+        organizer.organizeFiles();
+
+        try (var paths = Files.list(outputDir)) {
+            assertEquals(0, paths.count());
+        }
+    }
+
+    @Test
+    void testConstructorWithInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDateOrganizer(List.of(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false, threads, null));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDateOrganizer(inputDirNames(), outputDir.toString(), DateOrganizer.DateFormat.YYYY_MM_DD, false, 0, null));
+    }
+
+    private static byte[] readAllBytes(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
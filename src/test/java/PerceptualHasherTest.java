@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerceptualHasherTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("perceptualHasherTest");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Draws a photo-like image of soft shapes on a gradient, which is the same for the same seed.
+     */
+    static BufferedImage createImage(long seed, int width, int height) {
+        var random = new Random(seed);
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt()), width, height, new Color(random.nextInt())));
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt()));
+            g.fillOval(random.nextInt(width), random.nextInt(height), width / 4 + random.nextInt(width / 3), height / 4 + random.nextInt(height / 3));
+        }
+        g.dispose();
+        return image;
+    }
+
+    static BufferedImage scale(BufferedImage image, int width, int height) {
+        var scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private File write(BufferedImage image, String name, String format) throws IOException {
+        var file = dir.resolve(name).toFile();
+        assertTrue(ImageIO.write(image, format, file));
+        return file;
+    }
+
+    @Test
+    void reencodedAndResizedCopiesHashTheSame() throws IOException {
+        var image = createImage(1, 1600, 1200);
+        var original = PerceptualHasher.hash(write(image, "original.png", "png")).orElseThrow();
+        var smaller = PerceptualHasher.hash(write(scale(image, 400, 300), "smaller.jpg", "jpg")).orElseThrow();
+        var other = PerceptualHasher.hash(write(createImage(2, 1600, 1200), "other.png", "png")).orElseThrow();
+
+        assertEquals(1600, original.width());
+        assertEquals(1200, original.height());
+        assertEquals(400 * 300, smaller.pixels());
+        assertTrue(PerceptualHasher.distance(original.hash(), smaller.hash()) <= 3);
+        assertTrue(PerceptualHasher.distance(original.hash(), other.hash()) > 10);
+    }
+
+    @Test
+    void subsampledDecodeMatchesTheFullImage() throws IOException {
+        var image = createImage(3, 2000, 1500);
+        var hash = PerceptualHasher.hash(write(image, "large.png", "png")).orElseThrow();
+        assertTrue(PerceptualHasher.distance(PerceptualHasher.differenceHash(image), hash.hash()) <= 2);
+    }
+
+    @Test
+    void filesThatArentImagesHaveNoHash() throws IOException {
+        var file = Files.writeString(dir.resolve("notes.jpg"), "not an image").toFile();
+        assertTrue(PerceptualHasher.hash(file).isEmpty());
+        assertTrue(PerceptualHasher.hash(dir.resolve("missing.jpg").toFile()).isEmpty());
+    }
+
+    @Test
+    void distanceCountsDifferentBits() {
+        assertEquals(0, PerceptualHasher.distance(42, 42));
+        assertEquals(64, PerceptualHasher.distance(0, -1));
+        assertEquals(List.of(1, 2), List.of(PerceptualHasher.distance(0, 8), PerceptualHasher.distance(3, 0)));
+    }
+}
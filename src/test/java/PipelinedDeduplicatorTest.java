@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedDeduplicatorTest {
+
+    private List<String> directories;
+    private Path expectedOutputDir;
+    private Path outputDir;
+
+    private static final int fileToCreate = 40;
+    private static final int directoriesToCreate = 2;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directories = new ArrayList<>();
+
+        // Create test directories with subdirectories and a mix of unique and duplicate files
+        var rnd = new SecureRandom();
+        var duplicateContents = new byte[8 * 1024];
+        rnd.nextBytes(duplicateContents);
+        for (int i = 1; i <= directoriesToCreate; i++) {
+            Path dir = Files.createTempDirectory("pipelinedDeduplicatorTestDirectory" + i);
+            directories.add(dir.toString());
+
+            for (int j = 1; j <= fileToCreate; j++) {
+                Path subDir = dir.resolve("event" + (j % 4));
+                Files.createDirectories(subDir);
+
+                Path file = Files.createTempFile(subDir, "file" + j, ".jpg");
+                if (j % 3 == 0) {
+                    Files.write(file, duplicateContents);
+                } else {
+                    var fileContents = new byte[i * 1024 + j];
+                    rnd.nextBytes(fileContents);
+                    Files.write(file, fileContents);
+                }
+            }
+        }
+
+        expectedOutputDir = Files.createTempDirectory("pipelinedDeduplicatorTestExpected");
+        outputDir = Files.createTempDirectory("pipelinedDeduplicatorTestOutput");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        // Delete the input and output directories
+        var roots = new ArrayList<Path>(List.of(expectedOutputDir, outputDir));
+        directories.forEach(dir -> roots.add(Paths.get(dir)));
+        for (var root : roots) {
+            try (var paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static Map<String, Long> listFiles(Path root) throws IOException {
+        var files = new TreeMap<String, Long>();
+        try (var paths = Files.walk(root)) {
+            for (var path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                files.put(root.relativize(path).toString(), Files.size(path));
+            }
+        }
+        return files;
+    }
+
+    @Test
+    void matchesTwoPhaseDeduplicate() throws IOException {
+        var builder = new ChecksumBuilder(directories, null);
+        builder.calculateChecksums();
+        new DeduplicateFiles(expectedOutputDir.toString(), false).copyAndDeduplicateFiles(builder);
+
+        PipelinedDeduplicator pipeline;
+        try (var copyExecutor = new CopyExecutor(2, 2)) {
+            pipeline = new PipelinedDeduplicator(directories, null, 4, new DeduplicateFiles(outputDir.toString(), false,
+                    DeduplicateOptions.builder().copyExecutor(copyExecutor).build()));
+            pipeline.run();
+        }
+
+        // The same files copied to the same places
+        var expected = listFiles(expectedOutputDir);
+        assertEquals(expected, listFiles(outputDir));
+        assertEquals(expected.size(), pipeline.getQueuedFiles());
+        assertEquals(fileToCreate * directoriesToCreate - expected.size(), pipeline.getSkippedFiles());
+    }
+
+    @Test
+    void previewModeCopiesNothing() throws IOException {
+        var pipeline = new PipelinedDeduplicator(directories, null, 1, new DeduplicateFiles(outputDir.toString(), true));
+        pipeline.run();
+
+        assertTrue(pipeline.getQueuedFiles() > 0);
+        assertTrue(listFiles(outputDir).isEmpty());
+    }
+
+    @Test
+    void testConstructorWithInvalidThreads() {
+        var deduplicator = new DeduplicateFiles(outputDir.toString(), true);
+        assertThrows(IllegalArgumentException.class, () -> new PipelinedDeduplicator(directories, null, 0, deduplicator));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProgressReporterTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("progressReporterTest");
+        Files.createDirectories(dir.resolve("sub"));
+        Files.write(dir.resolve("a.jpg"), new byte[1000]);
+        Files.write(dir.resolve("sub").resolve("b.jpg"), new byte[3000]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void wrapCountsEveryFile() throws IOException {
+        try (var progress = new ProgressReporter("Hashed", null, 60_000)) {
+            var checksumFunction = progress.wrap(ChecksumBuilder::defaultChecksumFunction);
+            checksumFunction.apply(dir.resolve("a.jpg").toFile());
+            checksumFunction.apply(dir.resolve("sub").resolve("b.jpg").toFile());
+
+            assertEquals(2, progress.getFiles());
+            assertEquals(4000, progress.getBytes());
+        }
+    }
+
+    @Test
+    void progressLineShowsTotalsAndTimeLeft() {
+        try (var progress = new ProgressReporter("Hashed", new ProgressReporter.Totals(2, 4000), 60_000)) {
+            progress.fileDone(1000);
+            var line = progress.formatProgress();
+            assertTrue(line.startsWith("Hashed 1/2 files"), line);
+            assertTrue(line.endsWith(" left"), line);
+        }
+    }
+
+    @Test
+    void noTimeLeftWithoutTotals() {
+        try (var progress = new ProgressReporter("Organized", null, 60_000)) {
+            progress.fileDone(1000);
+            var line = progress.formatProgress();
+            assertTrue(line.startsWith("Organized 1 files"), line);
+            assertFalse(line.contains("left"), line);
+        }
+    }
+
+    @Test
+    void testConstructorWithInvalidInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new ProgressReporter("Hashed", null, 0));
+    }
+}
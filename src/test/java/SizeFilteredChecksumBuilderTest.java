@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SizeFilteredChecksumBuilderTest {
+
+    private Path dir;
+    private List<Path> files;
+
+    // Files that were passed to the full checksum function
+    private Collection<File> hashedFiles;
+
+    private Function<File, Optional<byte[]>> countingChecksum;
+
+    private static final int largeSize = 4 * SizeFilteredChecksumBuilder.PARTIAL_BLOCK_SIZE;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("sizeFilteredChecksumBuilderTestDirectory");
+        files = new ArrayList<>();
+        hashedFiles = new ConcurrentLinkedQueue<>();
+        countingChecksum = f -> {
+            hashedFiles.add(f);
+            return ChecksumBuilder.defaultChecksumFunction(f);
+        };
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private Path createFile(String name, byte[] contents) throws IOException {
+        var file = Files.write(dir.resolve(name), contents);
+        files.add(file);
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        var contents = new byte[size];
+        new SecureRandom().nextBytes(contents);
+        return contents;
+    }
+
+    @Test
+    void uniqueSizesAreNotHashed() throws IOException {
+        for (int i = 1; i <= 10; i++) {
+            createFile("file" + i, randomBytes(i * 1024));
+        }
+
+        var builder = new SizeFilteredChecksumBuilder(List.of(dir.toString()), countingChecksum, 1);
+        builder.calculateChecksums();
+
+        assertEquals(10, builder.getChecksumMap().size());
+        assertTrue(hashedFiles.isEmpty());
+    }
+
+    @Test
+    void partialChecksumSeparatesLargeFiles() throws IOException {
+        // Same size, different first and last blocks
+        createFile("a", randomBytes(largeSize));
+        createFile("b", randomBytes(largeSize));
+
+        var builder = new SizeFilteredChecksumBuilder(List.of(dir.toString()), countingChecksum, 1);
+        builder.calculateChecksums();
+
+        assertEquals(2, builder.getChecksumMap().size());
+        assertTrue(hashedFiles.isEmpty());
+    }
+
+    @Test
+    void differenceInTheMiddleNeedsFullChecksum() throws IOException {
+        var contents = randomBytes(largeSize);
+        createFile("a", contents);
+        contents[largeSize / 2]++;
+        createFile("b", contents);
+
+        var builder = new SizeFilteredChecksumBuilder(List.of(dir.toString()), countingChecksum, 1);
+        builder.calculateChecksums();
+
+        assertEquals(2, builder.getChecksumMap().size());
+        assertEquals(2, hashedFiles.size());
+    }
+
+    @Test
+    void duplicatesMatchSerialChecksumMap() throws IOException {
+        var large = randomBytes(largeSize);
+        var small = randomBytes(1024);
+        for (int i = 1; i <= 5; i++) {
+            createFile("large" + i, large);
+            createFile("small" + i, small);
+            createFile("unique" + i, randomBytes(i * 100));
+        }
+
+        var serial = new ChecksumBuilder(List.of(dir.toString()), null);
+        serial.calculateChecksums();
+
+        var builder = new SizeFilteredChecksumBuilder(List.of(dir.toString()), countingChecksum, 4);
+        builder.calculateChecksums();
+
+        var map = builder.getChecksumMap();
+        assertEquals(serial.getChecksumMap().size(), map.size());
+        assertEquals(10, hashedFiles.size());
+
+        // Every group of duplicates is keyed by its full checksum, with the files in the same order
+        for (var kvp : serial.getChecksumMap().entrySet()) {
+            if (kvp.getValue().size() > 1) {
+                assertEquals(kvp.getValue(), map.get(kvp.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void testConstructorWithNullDirectories() {
+        var builder = new SizeFilteredChecksumBuilder(null, null, 1);
+        assertNotNull(builder.getChecksumMap());
+        assertTrue(builder.getChecksumMap().isEmpty());
+    }
+}
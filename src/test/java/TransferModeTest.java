@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) [2024] [SonoranTech]
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.SecureRandom;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferModeTest {
+
+    private Path dir;
+    private Path source;
+    private byte[] contents;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("transferModeTest");
+        source = dir.resolve("source.jpg");
+        contents = new byte[64 * 1024];
+        new SecureRandom().nextBytes(contents);
+        Files.write(source, contents);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void copy() throws IOException {
+        var target = dir.resolve("target.jpg");
+        TransferMode.COPY.transfer(source, target);
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        assertFalse(Files.isSameFile(source, target));
+    }
+
+    @Test
+    void move() throws IOException {
+        var target = dir.resolve("target.jpg");
+        TransferMode.MOVE.transfer(source, target);
+        assertArrayEquals(contents, Files.readAllBytes(target));
+        assertFalse(Files.exists(source));
+    }
+
+    @Test
+    void hardLink() throws IOException {
+        var target = dir.resolve("target.jpg");
+        TransferMode.HARDLINK.transfer(source, target);
+        assertTrue(Files.exists(source));
+        assertFalse(Files.isSymbolicLink(target));
+        assertTrue(Files.isSameFile(source, target));
+    }
+
+    @Test
+    void symbolicLink() throws IOException {
+        var target = dir.resolve("target.jpg");
+        TransferMode.SYMLINK.transfer(source, target);
+        assertTrue(Files.isSymbolicLink(target));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+    }
+
+    @Test
+    void cloneOrCopy() throws IOException {
+        // Whether or not the file system can clone, the target ends up with the same contents
+        var target = dir.resolve("target.jpg");
+        TransferMode.CLONE.transfer(source, target);
+        assertTrue(Files.exists(source));
+        assertArrayEquals(contents, Files.readAllBytes(target));
+    }
+
+    @Test
+    void existingTargetIsNotReplaced() throws IOException {
+        for (var mode : TransferMode.values()) {
+            var target = dir.resolve("existing-" + mode + ".jpg");
+            Files.write(target, new byte[] {1});
+            assertThrows(FileAlreadyExistsException.class, () -> mode.transfer(source, target));
+            assertArrayEquals(new byte[] {1}, Files.readAllBytes(target));
+        }
+    }
+}